@@ -0,0 +1,116 @@
+package com.github.nahom.ip4a.bench;
+
+import com.github.nahom.ip4a.core.BoxBlurOp;
+import com.github.nahom.ip4a.core.ConvolveOp;
+import com.github.nahom.ip4a.core.HsvOps;
+import com.github.nahom.ip4a.core.Kernels;
+import com.github.nahom.ip4a.core.NoiseOps;
+import com.github.nahom.ip4a.core.PointOps;
+import com.github.nahom.ip4a.core.RasterOp;
+import com.github.nahom.ip4a.core.Transforms;
+
+/**
+ * The IP4A filters and transforms by name, built on the raster core with the
+ * parameters every benchmark uses. {@link LegacyFilters} runs the same names and parameters through
+ * the original per-pixel code.
+ */
+final class BenchmarkFilters {
+
+    static final int BRIGHTNESS = 40;
+    static final double CONTRAST = 50;
+    static final double GAMMA_RED = 1.8, GAMMA_GREEN = 1.2, GAMMA_BLUE = 0.8;
+    static final double FILTER_RED = 0.9, FILTER_GREEN = 0.8, FILTER_BLUE = 0.7;
+    static final int SEPIA_DEPTH = 50;
+    static final double SEPIA_RED = 2.2, SEPIA_GREEN = 0.0, SEPIA_BLUE = 0.0;
+    static final int COLOR_DEPTH = 64;
+    static final int BOOST_TYPE = 1;
+    static final float BOOST_PERCENT = 0.5f;
+    static final int SHADING_COLOR = 0xFF00FF7F;
+    static final int HSV_LEVEL = 2;
+    static final double SHARPEN_WEIGHT = 11;
+    static final double SMOOTH_VALUE = 1;
+    static final long NOISE_SEED = 42;
+    static final float LARGE_BLUR_RADIUS = 50;
+    static final double ROTATE_DEGREES = 30;
+    static final int SHRINK_FACTOR = 3;
+    static final int[] THUMBNAIL_SIDES = {1024, 320, 96};
+
+    private BenchmarkFilters(){
+    }
+
+    static RasterOp create(String name){
+        if("invert".equals(name)){
+            return PointOps.invert();
+        }else if("grayscale".equals(name)){
+            return PointOps.grayscale();
+        }else if("correctGamma".equals(name)){
+            return PointOps.correctGamma(GAMMA_RED, GAMMA_GREEN, GAMMA_BLUE);
+        }else if("filterColor".equals(name)){
+            return PointOps.filterColor(FILTER_RED, FILTER_GREEN, FILTER_BLUE);
+        }else if("sepiaToning".equals(name)){
+            return PointOps.sepiaToning(SEPIA_DEPTH, SEPIA_RED, SEPIA_GREEN, SEPIA_BLUE);
+        }else if("decreaseColorDepth".equals(name)){
+            return PointOps.decreaseColorDepth(COLOR_DEPTH);
+        }else if("createContrast".equals(name)){
+            return PointOps.createContrast(CONTRAST);
+        }else if("doBrightness".equals(name)){
+            return PointOps.doBrightness(BRIGHTNESS);
+        }else if("boostIntensity".equals(name)){
+            return PointOps.boostIntensity(BOOST_TYPE, BOOST_PERCENT);
+        }else if("applyShadingFilter".equals(name)){
+            return PointOps.applyShadingFilter(SHADING_COLOR);
+        }else if("applyHueFilter".equals(name)){
+            return HsvOps.hue(HSV_LEVEL);
+        }else if("applySaturationFilter".equals(name)){
+            return HsvOps.saturation(HSV_LEVEL);
+        }else if("applyGaussianBlur".equals(name)){
+            return new ConvolveOp(Kernels.gaussianBlur());
+        }else if("largeGaussianBlur".equals(name)){
+            return BoxBlurOp.ofRadius(LARGE_BLUR_RADIUS);
+        }else if("sharpen".equals(name)){
+            return new ConvolveOp(Kernels.sharpen(SHARPEN_WEIGHT));
+        }else if("applyMeanRemoval".equals(name)){
+            return new ConvolveOp(Kernels.meanRemoval());
+        }else if("smooth".equals(name)){
+            return new ConvolveOp(Kernels.smooth(SMOOTH_VALUE));
+        }else if("emboss".equals(name)){
+            return new ConvolveOp(Kernels.emboss());
+        }else if("engrave".equals(name)){
+            return new ConvolveOp(Kernels.engrave());
+        }else if("applySnowEffect".equals(name)){
+            return NoiseOps.snow(NOISE_SEED);
+        }else if("applyFleaEffect".equals(name)){
+            return NoiseOps.flea(NOISE_SEED);
+        }
+        throw new IllegalArgumentException("unknown filter " + name);
+    }
+
+    /**
+     * @return a side shrunk by {@link #SHRINK_FACTOR}, rounded up like the box downscale
+     */
+    static int shrunk(int side){
+        return (side + SHRINK_FACTOR - 1) / SHRINK_FACTOR;
+    }
+
+    /**
+     * @return the EXIF orientation a transform name stands for
+     */
+    static int orientation(String name){
+        if("flipHorizontal".equals(name)){
+            return Transforms.ORIENTATION_FLIP_HORIZONTAL;
+        }else if("rotate180".equals(name)){
+            return Transforms.ORIENTATION_ROTATE_180;
+        }else if("flipVertical".equals(name)){
+            return Transforms.ORIENTATION_FLIP_VERTICAL;
+        }else if("transpose".equals(name)){
+            return Transforms.ORIENTATION_TRANSPOSE;
+        }else if("rotate90".equals(name)){
+            return Transforms.ORIENTATION_ROTATE_90;
+        }else if("transverse".equals(name)){
+            return Transforms.ORIENTATION_TRANSVERSE;
+        }else if("rotate270".equals(name)){
+            return Transforms.ORIENTATION_ROTATE_270;
+        }
+        throw new IllegalArgumentException("unknown transform " + name);
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.nahom.ip4a.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so every result comes with
+ * gc.alloc.rate.norm (bytes allocated per operation). Accepts the usual JMH
+ * command line, e.g. {@code -p size=1920x1080 -p filter=sharpen FilterBenchmark}.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain(){
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
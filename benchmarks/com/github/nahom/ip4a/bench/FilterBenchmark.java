@@ -0,0 +1,68 @@
+package com.github.nahom.ip4a.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.RasterOp;
+import com.github.nahom.ip4a.core.TileExecutor;
+
+/**
+ * Every raster filter on the current engine, from thumbnail to 24 MP, on one
+ * thread and on the default parallel executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FilterBenchmark {
+
+    @Param({"160x120", "640x480", "1920x1080", "4000x3000", "6000x4000"})
+    public String size;
+
+    @Param({"invert", "grayscale", "correctGamma", "filterColor", "sepiaToning", "decreaseColorDepth",
+            "createContrast", "doBrightness", "boostIntensity", "applyShadingFilter",
+            "applyHueFilter", "applySaturationFilter",
+            "applyGaussianBlur", "largeGaussianBlur", "sharpen", "applyMeanRemoval", "smooth", "emboss", "engrave",
+            "applySnowEffect", "applyFleaEffect"})
+    public String filter;
+
+    @Param({"serial", "parallel"})
+    public String execution;
+
+    private IntRaster src;
+    private IntRaster dst;
+    private RasterOp op;
+    private TileExecutor executor;
+    private double megapixels;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = SyntheticImages.create(size);
+        dst = new IntRaster(src.getWidth(), src.getHeight());
+        op = BenchmarkFilters.create(filter);
+        executor = "serial".equals(execution) ? TileExecutor.serial() : TileExecutor.getDefault();
+        megapixels = SyntheticImages.megapixels(src);
+    }
+
+    @Benchmark
+    public IntRaster filter(MegapixelCounter counter){
+        executor.apply(op, src, dst);
+        counter.megapixels += megapixels;
+        return dst;
+    }
+}
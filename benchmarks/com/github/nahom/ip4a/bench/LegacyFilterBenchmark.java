@@ -0,0 +1,57 @@
+package com.github.nahom.ip4a.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nahom.ip4a.core.IntRaster;
+
+/**
+ * Baseline for {@link FilterBenchmark}: the same filters, sizes and parameters
+ * through the original per-pixel implementations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LegacyFilterBenchmark {
+
+    @Param({"160x120", "640x480", "1920x1080", "4000x3000", "6000x4000"})
+    public String size;
+
+    @Param({"invert", "grayscale", "correctGamma", "filterColor", "sepiaToning", "decreaseColorDepth",
+            "createContrast", "doBrightness", "boostIntensity", "applyShadingFilter",
+            "applyHueFilter", "applySaturationFilter",
+            "applyGaussianBlur", "sharpen", "applyMeanRemoval", "smooth", "emboss", "engrave",
+            "applySnowEffect", "applyFleaEffect"})
+    public String filter;
+
+    private IntRaster src;
+    private double megapixels;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = SyntheticImages.create(size);
+        megapixels = SyntheticImages.megapixels(src);
+    }
+
+    @Benchmark
+    public IntRaster filter(MegapixelCounter counter){
+        IntRaster output = LegacyFilters.apply(filter, src);
+        counter.megapixels += megapixels;
+        return output;
+    }
+}
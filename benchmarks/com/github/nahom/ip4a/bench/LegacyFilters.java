@@ -0,0 +1,575 @@
+package com.github.nahom.ip4a.bench;
+
+import com.github.nahom.ip4a.core.IntRaster;
+
+import java.util.Random;
+
+/**
+ * The original IP4A 1.0 filters, kept as benchmark baselines. The loops, the
+ * arithmetic and the allocation of a fresh output per call are unchanged;
+ * Bitmap.getPixel/setPixel became IntRaster.getPixel/setPixel and the
+ * android.graphics.Color helpers became the shifts they stand for, so they run on
+ * a plain JVM. Real devices add a JNI round trip per pixel on top of this.
+ */
+final class LegacyFilters {
+
+    private static final int COLOR_MAX = 0xFF;
+
+    private LegacyFilters(){
+    }
+
+    static IntRaster apply(String name, IntRaster src){
+        if("invert".equals(name)){
+            return invert(src);
+        }else if("grayscale".equals(name)){
+            return grayscale(src);
+        }else if("correctGamma".equals(name)){
+            return correctGamma(src, BenchmarkFilters.GAMMA_RED, BenchmarkFilters.GAMMA_GREEN, BenchmarkFilters.GAMMA_BLUE);
+        }else if("filterColor".equals(name)){
+            return filterColor(src, BenchmarkFilters.FILTER_RED, BenchmarkFilters.FILTER_GREEN, BenchmarkFilters.FILTER_BLUE);
+        }else if("sepiaToning".equals(name)){
+            return sepiaToning(src, BenchmarkFilters.SEPIA_DEPTH,
+                    BenchmarkFilters.SEPIA_RED, BenchmarkFilters.SEPIA_GREEN, BenchmarkFilters.SEPIA_BLUE);
+        }else if("decreaseColorDepth".equals(name)){
+            return decreaseColorDepth(src, BenchmarkFilters.COLOR_DEPTH);
+        }else if("createContrast".equals(name)){
+            return createContrast(src, BenchmarkFilters.CONTRAST);
+        }else if("doBrightness".equals(name)){
+            return doBrightness(src, BenchmarkFilters.BRIGHTNESS);
+        }else if("boostIntensity".equals(name)){
+            return boostIntensity(src, BenchmarkFilters.BOOST_TYPE, BenchmarkFilters.BOOST_PERCENT);
+        }else if("applyShadingFilter".equals(name)){
+            return applyShadingFilter(src, BenchmarkFilters.SHADING_COLOR);
+        }else if("applyHueFilter".equals(name)){
+            return applyHueFilter(src, BenchmarkFilters.HSV_LEVEL);
+        }else if("applySaturationFilter".equals(name)){
+            return applySaturationFilter(src, BenchmarkFilters.HSV_LEVEL);
+        }else if("applyGaussianBlur".equals(name)){
+            return convolve(src, new double[][]{{1, 2, 1}, {2, 4, 2}, {1, 2, 1}}, 16, 0);
+        }else if("sharpen".equals(name)){
+            double weight = BenchmarkFilters.SHARPEN_WEIGHT;
+            return convolve(src, new double[][]{{0, -2, 0}, {-2, weight, -2}, {0, -2, 0}}, weight - 8, 1);
+        }else if("applyMeanRemoval".equals(name)){
+            return convolve(src, new double[][]{{-1, -1, -1}, {-1, 9, -1}, {-1, -1, -1}}, 1, 0);
+        }else if("smooth".equals(name)){
+            double value = BenchmarkFilters.SMOOTH_VALUE;
+            return convolve(src, new double[][]{{1, 1, 1}, {1, value, 1}, {1, 1, 1}}, value + 8, 1);
+        }else if("emboss".equals(name)){
+            return convolve(src, new double[][]{{-1, 0, -1}, {0, 4, 0}, {-1, 0, -1}}, 1, 127);
+        }else if("engrave".equals(name)){
+            return convolve(src, new double[][]{{-2, 0, 0}, {0, 2, 0}, {0, 0, 0}}, 1, 95);
+        }else if("applySnowEffect".equals(name)){
+            return applySnowEffect(src);
+        }else if("applyFleaEffect".equals(name)){
+            return applyFleaEffect(src);
+        }
+        throw new IllegalArgumentException("unknown filter " + name);
+    }
+
+    private static int alpha(int color){
+        return color >>> 24;
+    }
+
+    private static int red(int color){
+        return (color >> 16) & 0xFF;
+    }
+
+    private static int green(int color){
+        return (color >> 8) & 0xFF;
+    }
+
+    private static int blue(int color){
+        return color & 0xFF;
+    }
+
+    private static int argb(int alpha, int red, int green, int blue){
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    private static IntRaster convolve(IntRaster src, double[][] matrix, double factor, double offset){
+        final int SIZE = 3;
+        int width = src.getWidth();
+        int height = src.getHeight();
+        IntRaster result = new IntRaster(width, height);
+
+        int A, R, G, B;
+        int sumR, sumG, sumB;
+        int[][] pixels = new int[SIZE][SIZE];
+
+        for (int y = 0; y < height - 2; ++y){
+            for(int x = 0; x < width - 2; ++x){
+
+                for(int i = 0; i < SIZE; ++i){
+                    for(int j = 0; j < SIZE; ++j){
+                        pixels[i][j] = src.getPixel(x + i, y + j);
+                    }
+                }
+
+                A = alpha(pixels[1][1]);
+
+                sumR = sumG = sumB = 0;
+
+                for(int i = 0; i < SIZE; ++i){
+                    for(int j = 0; j < SIZE; ++j){
+                        sumR += (red(pixels[i][j]) * matrix[i][j]);
+                        sumG += (green(pixels[i][j]) * matrix[i][j]);
+                        sumB += (blue(pixels[i][j]) * matrix[i][j]);
+                    }
+                }
+
+                R = (int)(sumR / factor + offset);
+                if(R < 0){
+                    R = 0;
+                }else if(R > 255){
+                    R = 255;
+                }
+
+                G = (int)(sumG / factor + offset);
+                if(R < 0){
+                    R = 0;
+                }else if(R > 255){
+                    R = 255;
+                }
+
+                B = (int)(sumB / factor + offset);
+                if(B < 0){
+                    B = 0;
+                }else if(B > 255){
+                    B = 255;
+                }
+
+                result.setPixel(x + 1, y + 1, argb(A, R, G, B));
+            }
+        }
+
+        return result;
+    }
+
+    static IntRaster invert(IntRaster src){
+        IntRaster output = new IntRaster(src.getWidth(), src.getHeight());
+        int A, R, G, B;
+        int pixelColor;
+        int height = src.getHeight();
+        int width = src.getWidth();
+
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                pixelColor = src.getPixel(x, y);
+                A = alpha(pixelColor);
+                R = 255 - red(pixelColor);
+                G = 255 - green(pixelColor);
+                B = 255 - blue(pixelColor);
+                output.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+
+        return output;
+    }
+
+    static IntRaster grayscale(IntRaster src){
+        final double GS_RED = 0.299;
+        final double GS_GREEN = 0.587;
+        final double GS_BLUE = 0.114;
+
+        IntRaster output = new IntRaster(src.getWidth(), src.getHeight());
+
+        int A, R, G, B, pixel;
+
+        int height = src.getHeight();
+        int width = src.getWidth();
+
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                pixel = src.getPixel(x, y);
+                A = alpha(pixel);
+                R = red(pixel);
+                G = green(pixel);
+                B = blue(pixel);
+
+                R = G = B = (int)(GS_RED * R + GS_GREEN * G + GS_BLUE * B);
+                output.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+
+        return output;
+    }
+
+    static IntRaster correctGamma(IntRaster src, double red, double green, double blue){
+        IntRaster bmOut = new IntRaster(src.getWidth(), src.getHeight());
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int A, R, G, B;
+        int pixel;
+        final int    MAX_SIZE = 256;
+        final double MAX_VALUE_DBL = 255.0;
+        final int    MAX_VALUE_INT = 255;
+        final double REVERSE = 1.0;
+
+        int[] gammaR = new int[MAX_SIZE];
+        int[] gammaG = new int[MAX_SIZE];
+        int[] gammaB = new int[MAX_SIZE];
+
+        for(int i = 0; i < MAX_SIZE; ++i) {
+            gammaR[i] = (int)Math.min(MAX_VALUE_INT,
+                    (int)((MAX_VALUE_DBL * Math.pow(i / MAX_VALUE_DBL, REVERSE / red)) + 0.5));
+            gammaG[i] = (int)Math.min(MAX_VALUE_INT,
+                    (int)((MAX_VALUE_DBL * Math.pow(i / MAX_VALUE_DBL, REVERSE / green)) + 0.5));
+            gammaB[i] = (int)Math.min(MAX_VALUE_INT,
+                    (int)((MAX_VALUE_DBL * Math.pow(i / MAX_VALUE_DBL, REVERSE / blue)) + 0.5));
+        }
+
+        for(int x = 0; x < width; ++x) {
+            for(int y = 0; y < height; ++y) {
+                pixel = src.getPixel(x, y);
+                A = alpha(pixel);
+                R = gammaR[red(pixel)];
+                G = gammaG[green(pixel)];
+                B = gammaB[blue(pixel)];
+                bmOut.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+
+        return bmOut;
+    }
+
+    static IntRaster filterColor(IntRaster src, double red, double green, double blue){
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        IntRaster output = new IntRaster(width, height);
+        int A, R, G, B, pixel;
+
+        for(int x = 0; x < width; ++x){
+            for (int y = 0; y < height; ++y){
+                pixel = src.getPixel(x, y);
+                A = alpha(pixel);
+                R = (int)(red(pixel) * red);
+                G = (int)(green(pixel) * green);
+                B = (int)(blue(pixel) * blue);
+
+                output.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+        return output;
+    }
+
+    static IntRaster sepiaToning(IntRaster src, int depth, double red, double green, double blue){
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        IntRaster output = new IntRaster(width, height);
+        final double GS_RED = 0.3;
+        final double GS_GREEN = 0.59;
+        final double GS_BLUE = 0.11;
+
+        int A, R, G, B, pixel;
+
+        for (int x = 0; x < width; ++x){
+            for (int y = 0; y < height; ++y){
+                pixel = src.getPixel(x, y);
+                A = alpha(pixel);
+                R = red(pixel);
+                G = green(pixel);
+                B = blue(pixel);
+                B = G = R = (int)(GS_RED * R + GS_GREEN * G + GS_BLUE * B);
+
+                R += (depth * red);
+                if(R > 255) {R = 255;}
+
+                G += (depth * green);
+                if(G > 255) {G = 255;}
+
+                B += (depth * blue);
+                if(B > 255){B = 255;}
+
+                output.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+        return output;
+    }
+
+    static IntRaster decreaseColorDepth(IntRaster src, int bitOffset){
+        int width = src.getWidth();
+        int height = src.getHeight();
+        IntRaster output = new IntRaster(width, height);
+
+        int A, R, G, B, pixel;
+
+        for(int x = 0; x < width; ++x){
+            for(int y = 0; y < height; ++y){
+                pixel = src.getPixel(x, y);
+                A = alpha(pixel);
+                R = red(pixel);
+                G = green(pixel);
+                B = blue(pixel);
+
+                R = ((R + (bitOffset/2))-((R+(bitOffset/2))%bitOffset)-1);
+                if(R < 0){R = 0;}
+                G = ((G + (bitOffset/2))-((G+(bitOffset/2))%bitOffset)-1);
+                if(G < 0){G=0;}
+                B = ((B + (bitOffset/2))-((B+(bitOffset/2))%bitOffset)-1);
+                if(B < 0){B = 0;}
+
+                output.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+        return output;
+    }
+
+    static IntRaster createContrast(IntRaster src, double value){
+        int width = src.getWidth();
+        int height = src.getHeight();
+        IntRaster output = new IntRaster(width, height);
+
+        int A, R, G, B, pixel;
+
+        double contrast = Math.pow((100 + value) / 100, 2);
+
+
+        for(int x = 0; x < width; ++x){
+            for(int y = 0; y < height; ++y){
+                pixel = src.getPixel(x, y);
+                A = alpha(pixel);
+                R = red(pixel);
+                R = (int)(((((R / 255.0) - 0.5) * contrast) + 0.5) * 255.0);
+                if(R < 0) { R = 0; }
+                else if(R > 255) { R = 255; }
+
+                G = red(pixel);
+                G = (int)(((((G / 255.0) - 0.5) * contrast) + 0.5) * 255.0);
+                if(G < 0) { G = 0; }
+                else if(G > 255) { G = 255; }
+
+                B = red(pixel);
+                B = (int)(((((B / 255.0) - 0.5) * contrast) + 0.5) * 255.0);
+                if(B < 0) { B = 0; }
+                else if(B > 255) { B = 255; }
+
+                output.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+        return output;
+    }
+
+    static IntRaster doBrightness(IntRaster src, int value){
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        IntRaster output = new IntRaster(width, height);
+
+        int A, R, G, B, pixel;
+
+        for(int x = 0; x < width; ++x){
+            for(int y = 0; y < height; ++y){
+                pixel = src.getPixel(x, y);
+                A = alpha(pixel);
+                R = red(pixel);
+                G = green(pixel);
+                B = blue(pixel);
+
+                R += value;
+                if(R > 255){
+                    R = 255;
+                } else if(R < 0){
+                    R = 0;
+                }
+
+                G += value;
+                if(G > 255){
+                    G = 255;
+                } else if(G < 0){
+                    G = 0;
+                }
+
+                B += value;
+                if(B > 255){
+                    B = 255;
+                }else if(B < 0){
+                    B = 0;
+                }
+
+                output.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+        return output;
+    }
+
+    static IntRaster boostIntensity(IntRaster src, int type, float percent){
+        int width = src.getWidth();
+        int height = src.getHeight();
+        IntRaster output = new IntRaster(width, height);
+
+        int A, R, G, B, pixel;
+
+        for(int x = 0; x < width; ++x){
+            for(int y = 0; y < height; ++y){
+                pixel = src.getPixel(x, y);
+                A = alpha(pixel);
+                R = red(pixel);
+                G = green(pixel);
+                B = blue(pixel);
+                if(type == 1){
+                    R = (int)(R * (1 + percent));
+                    if(R > 255) R = 255;
+                } else if(type == 2){
+                    G = (int)(G * (1 + percent));
+                    if(G > 255) G = 255;
+                } else if(type == 3){
+                    B = (int)(B * (1 + percent));
+                    if(B > 255) B = 255;
+                }
+                output.setPixel(x, y, argb(A, R, G, B));
+            }
+        }
+
+        return output;
+    }
+
+    static IntRaster applyHueFilter(IntRaster source, int level) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = source.copy().getPixels();
+        float[] HSV = new float[3];
+
+        int index = 0;
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                index = y * width + x;
+                colorToHSV(pixels[index], HSV);
+                HSV[0] *= level;
+                HSV[0] = (float) Math.max(0.0, Math.min(HSV[0], 360.0));
+                pixels[index] |= HSVToColor(HSV);
+            }
+        }
+        return new IntRaster(pixels, width, height);
+    }
+
+    static IntRaster applySaturationFilter(IntRaster source, int level) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = source.copy().getPixels();
+        float[] HSV = new float[3];
+
+        int index = 0;
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                index = y * width + x;
+                colorToHSV(pixels[index], HSV);
+                HSV[1] *= level;
+                HSV[1] = (float) Math.max(0.0, Math.min(HSV[1], 1.0));
+                pixels[index] |= HSVToColor(HSV);
+            }
+        }
+        return new IntRaster(pixels, width, height);
+    }
+
+    static IntRaster applyShadingFilter(IntRaster source, int shadingColor) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = source.copy().getPixels();
+
+        int index = 0;
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                index = y * width + x;
+                pixels[index] &= shadingColor;
+            }
+        }
+        return new IntRaster(pixels, width, height);
+    }
+
+    static IntRaster applySnowEffect(IntRaster source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = source.copy().getPixels();
+        Random random = new Random();
+
+        int R, G, B, index = 0, thresHold = 50;
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                index = y * width + x;
+                R = red(pixels[index]);
+                G = green(pixels[index]);
+                B = blue(pixels[index]);
+                thresHold = random.nextInt(255);
+                if(R > thresHold && G > thresHold && B > thresHold) {
+                    pixels[index] = argb(COLOR_MAX, COLOR_MAX, COLOR_MAX, COLOR_MAX);
+                }
+            }
+        }
+        return new IntRaster(pixels, width, height);
+    }
+
+    static IntRaster applyFleaEffect(IntRaster source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = source.copy().getPixels();
+        Random random = new Random();
+
+        int index = 0;
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                index = y * width + x;
+                int randColor = argb(COLOR_MAX, random.nextInt(COLOR_MAX),
+                        random.nextInt(COLOR_MAX), random.nextInt(COLOR_MAX));
+                pixels[index] |= randColor;
+            }
+        }
+        return new IntRaster(pixels, width, height);
+    }
+
+    // what Color.colorToHSV does natively
+    private static void colorToHSV(int color, float[] hsv){
+        int r = red(color), g = green(color), b = blue(color);
+        int min = Math.min(r, Math.min(g, b));
+        int max = Math.max(r, Math.max(g, b));
+        int delta = max - min;
+        float v = max / 255f;
+        if(delta == 0){
+            hsv[0] = 0;
+            hsv[1] = 0;
+            hsv[2] = v;
+            return;
+        }
+        float s = (float) delta / max;
+        float h;
+        if(r == max){
+            h = (float)(g - b) / delta;
+        }else if(g == max){
+            h = 2 + (float)(b - r) / delta;
+        }else{
+            h = 4 + (float)(r - g) / delta;
+        }
+        h *= 60;
+        if(h < 0){
+            h += 360;
+        }
+        hsv[0] = h;
+        hsv[1] = s;
+        hsv[2] = v;
+    }
+
+    // what Color.HSVToColor does natively
+    private static int HSVToColor(float[] hsv){
+        float s = Math.max(0, Math.min(1, hsv[1]));
+        float v = Math.max(0, Math.min(1, hsv[2]));
+        int vb = (int) Math.floor(v * 255 + 0.5f);
+        if(Math.abs(s) <= 1f / 4096){
+            return argb(COLOR_MAX, vb, vb, vb);
+        }
+        float hx = (hsv[0] < 0 || hsv[0] >= 360f) ? 0 : hsv[0] / 60;
+        float w = (float) Math.floor(hx);
+        float f = hx - w;
+        int p = (int) Math.floor((1 - s) * v * 255 + 0.5f);
+        int q = (int) Math.floor((1 - (s * f)) * v * 255 + 0.5f);
+        int t = (int) Math.floor((1 - (s * (1 - f))) * v * 255 + 0.5f);
+        switch((int) w){
+            case 0: return argb(COLOR_MAX, vb, t, p);
+            case 1: return argb(COLOR_MAX, q, vb, p);
+            case 2: return argb(COLOR_MAX, p, vb, t);
+            case 3: return argb(COLOR_MAX, p, q, vb);
+            case 4: return argb(COLOR_MAX, t, p, vb);
+            default: return argb(COLOR_MAX, vb, p, q);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.nahom.ip4a.bench;
+
+import java.util.Arrays;
+
+import com.github.nahom.ip4a.core.IntRaster;
+
+/**
+ * The box downscale ProgressiveRenderer built its proxies with before
+ * {@link com.github.nahom.ip4a.core.Resample}: per-channel sums and a division per
+ * channel and output pixel, into a fresh raster.
+ */
+final class LegacyResample {
+
+    private LegacyResample(){
+    }
+
+    /**
+     * Averages factor x factor blocks; blocks cut off by the right or bottom edge
+     * average the pixels they have.
+     */
+    static IntRaster boxDownscale(IntRaster src, int factor){
+        int width = (src.getWidth() + factor - 1) / factor;
+        int height = (src.getHeight() + factor - 1) / factor;
+        IntRaster dst = new IntRaster(width, height);
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        int[] sums = new int[width * 4];
+        for(int y = 0; y < height; ++y){
+            Arrays.fill(sums, 0);
+            int rowEnd = Math.min(src.getHeight(), (y + 1) * factor);
+            for(int sy = y * factor; sy < rowEnd; ++sy){
+                int pos = src.index(0, sy);
+                for(int sx = 0; sx < src.getWidth(); ++sx){
+                    int pixel = in[pos + sx];
+                    int i = (sx / factor) * 4;
+                    sums[i] += pixel >>> 24;
+                    sums[i + 1] += (pixel >> 16) & 0xFF;
+                    sums[i + 2] += (pixel >> 8) & 0xFF;
+                    sums[i + 3] += pixel & 0xFF;
+                }
+            }
+            int rows = rowEnd - y * factor;
+            for(int x = 0; x < width; ++x){
+                int count = rows * (Math.min(src.getWidth(), (x + 1) * factor) - x * factor);
+                int half = count / 2;
+                int i = x * 4;
+                out[dst.index(x, y)] = ((sums[i] + half) / count) << 24 | ((sums[i + 1] + half) / count) << 16
+                        | ((sums[i + 2] + half) / count) << 8 | ((sums[i + 3] + half) / count);
+            }
+        }
+        return dst;
+    }
+}
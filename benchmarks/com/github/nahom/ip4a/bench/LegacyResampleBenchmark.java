@@ -0,0 +1,55 @@
+package com.github.nahom.ip4a.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nahom.ip4a.core.IntRaster;
+
+/**
+ * Baseline for the half and resize cases of {@link ResampleBenchmark}: the same
+ * output sizes through {@link LegacyResample}'s per-channel box average.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LegacyResampleBenchmark {
+
+    @Param({"640x480", "1920x1080", "4000x3000", "6000x4000"})
+    public String size;
+
+    @Param({"half", "resize"})
+    public String operation;
+
+    private IntRaster src;
+    private int factor;
+    private double megapixels;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = SyntheticImages.create(size);
+        factor = "half".equals(operation) ? 2 : BenchmarkFilters.SHRINK_FACTOR;
+        megapixels = SyntheticImages.megapixels(src);
+    }
+
+    @Benchmark
+    public IntRaster resample(MegapixelCounter counter){
+        IntRaster output = LegacyResample.boxDownscale(src, factor);
+        counter.megapixels += megapixels;
+        return output;
+    }
+}
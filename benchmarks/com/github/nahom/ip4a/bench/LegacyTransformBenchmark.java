@@ -0,0 +1,56 @@
+package com.github.nahom.ip4a.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nahom.ip4a.core.IntRaster;
+
+/**
+ * Baseline for {@link TransformBenchmark}: the EXIF orientations through
+ * {@link LegacyTransforms}, one pixel at a time into a fresh raster. Free rotation
+ * has no baseline; IP4A 1.0 handed it to android.graphics.Matrix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LegacyTransformBenchmark {
+
+    @Param({"640x480", "1920x1080", "4000x3000", "6000x4000", "3000x3000"})
+    public String size;
+
+    @Param({"flipHorizontal", "rotate180", "flipVertical", "transpose", "rotate90", "transverse", "rotate270"})
+    public String transform;
+
+    private IntRaster src;
+    private int orientation;
+    private double megapixels;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = SyntheticImages.create(size);
+        orientation = BenchmarkFilters.orientation(transform);
+        megapixels = SyntheticImages.megapixels(src);
+    }
+
+    @Benchmark
+    public IntRaster transform(MegapixelCounter counter){
+        IntRaster output = LegacyTransforms.orient(src, orientation);
+        counter.megapixels += megapixels;
+        return output;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.nahom.ip4a.bench;
+
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.Transforms;
+
+/**
+ * The EXIF orientations as the plain loop over source pixels, each written to
+ * where it lands in a new raster. Quarter turns walk the output a column at a time,
+ * which is what the tiled {@link Transforms} avoids.
+ */
+final class LegacyTransforms {
+
+    private LegacyTransforms(){
+    }
+
+    static IntRaster orient(IntRaster src, int orientation){
+        int width = src.getWidth();
+        int height = src.getHeight();
+        IntRaster dst = new IntRaster(Transforms.orientedWidth(width, height, orientation),
+                Transforms.orientedHeight(width, height, orientation));
+        for(int y = 0; y < height; ++y){
+            for(int x = 0; x < width; ++x){
+                int pixel = src.getPixel(x, y);
+                switch(orientation){
+                    case Transforms.ORIENTATION_FLIP_HORIZONTAL:
+                        dst.setPixel(width - 1 - x, y, pixel);
+                        break;
+                    case Transforms.ORIENTATION_ROTATE_180:
+                        dst.setPixel(width - 1 - x, height - 1 - y, pixel);
+                        break;
+                    case Transforms.ORIENTATION_FLIP_VERTICAL:
+                        dst.setPixel(x, height - 1 - y, pixel);
+                        break;
+                    case Transforms.ORIENTATION_TRANSPOSE:
+                        dst.setPixel(y, x, pixel);
+                        break;
+                    case Transforms.ORIENTATION_ROTATE_90:
+                        dst.setPixel(height - 1 - y, x, pixel);
+                        break;
+                    case Transforms.ORIENTATION_TRANSVERSE:
+                        dst.setPixel(height - 1 - y, width - 1 - x, pixel);
+                        break;
+                    case Transforms.ORIENTATION_ROTATE_270:
+                        dst.setPixel(y, width - 1 - x, pixel);
+                        break;
+                    default:
+                        dst.setPixel(x, y, pixel);
+                        break;
+                }
+            }
+        }
+        return dst;
+    }
+}
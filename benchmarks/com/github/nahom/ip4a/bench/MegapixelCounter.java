@@ -0,0 +1,23 @@
+package com.github.nahom.ip4a.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts filtered megapixels; JMH reports the count as a rate next to the primary
+ * ops/s result, which gives megapixels per second directly.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class MegapixelCounter {
+
+    public double megapixels;
+
+    @Setup(Level.Iteration)
+    public void reset(){
+        megapixels = 0;
+    }
+}
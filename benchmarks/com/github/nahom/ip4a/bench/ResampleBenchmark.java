@@ -0,0 +1,77 @@
+package com.github.nahom.ip4a.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nahom.ip4a.core.ImagePyramid;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.Resample;
+import com.github.nahom.ip4a.core.TileExecutor;
+
+/**
+ * Downscaling: one 2x2 averaging step, an area averaging resize to a third of the
+ * size, building a whole {@link ImagePyramid}, and a set of filtered thumbnails from
+ * a fresh pyramid. Megapixels count the source image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResampleBenchmark {
+
+    @Param({"640x480", "1920x1080", "4000x3000", "6000x4000"})
+    public String size;
+
+    @Param({"half", "resize", "pyramid", "thumbnails"})
+    public String operation;
+
+    @Param({"serial", "parallel"})
+    public String execution;
+
+    private IntRaster src;
+    private IntRaster dst;
+    private TileExecutor executor;
+    private double megapixels;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = SyntheticImages.create(size);
+        executor = "serial".equals(execution) ? TileExecutor.serial() : TileExecutor.getDefault();
+        megapixels = SyntheticImages.megapixels(src);
+        if("half".equals(operation)){
+            dst = new IntRaster(Resample.halfSize(src.getWidth()), Resample.halfSize(src.getHeight()));
+        }else if("resize".equals(operation)){
+            dst = new IntRaster(BenchmarkFilters.shrunk(src.getWidth()), BenchmarkFilters.shrunk(src.getHeight()));
+        }
+    }
+
+    @Benchmark
+    public Object resample(MegapixelCounter counter){
+        Object result = dst;
+        if("half".equals(operation)){
+            Resample.half(src, dst, executor);
+        }else if("resize".equals(operation)){
+            Resample.resize(src, dst, executor);
+        }else{
+            ImagePyramid pyramid = new ImagePyramid(src, ImagePyramid.DEFAULT_MIN_SIZE, executor);
+            result = "pyramid".equals(operation) ? pyramid
+                    : pyramid.thumbnails(BenchmarkFilters.create("sepiaToning"), BenchmarkFilters.THUMBNAIL_SIDES);
+        }
+        counter.megapixels += megapixels;
+        return result;
+    }
+}
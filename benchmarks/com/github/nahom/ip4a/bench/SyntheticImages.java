@@ -0,0 +1,49 @@
+package com.github.nahom.ip4a.bench;
+
+import com.github.nahom.ip4a.core.IntRaster;
+
+/**
+ * Deterministic test images: smooth gradients with a little noise and a few flat
+ * areas, so neither the branch predictor nor the caches see unrealistically
+ * uniform data.
+ */
+final class SyntheticImages {
+
+    private SyntheticImages(){
+    }
+
+    /**
+     * @param size "WIDTHxHEIGHT", as used in the benchmark parameters
+     */
+    static IntRaster create(String size){
+        int separator = size.indexOf('x');
+        if(separator < 0){
+            throw new IllegalArgumentException("size must look like 1920x1080, got " + size);
+        }
+        return create(Integer.parseInt(size.substring(0, separator)), Integer.parseInt(size.substring(separator + 1)));
+    }
+
+    static IntRaster create(int width, int height){
+        IntRaster raster = new IntRaster(width, height);
+        int[] pixels = raster.getPixels();
+        int seed = 0x9E3779B9;
+        for(int y = 0; y < height; ++y){
+            for(int x = 0; x < width; ++x){
+                seed ^= seed << 13;
+                seed ^= seed >>> 17;
+                seed ^= seed << 5;
+                int noise = seed & 0x1F;
+                int r = (x * 255 / Math.max(1, width - 1) + noise) & 0xFF;
+                int g = (y * 255 / Math.max(1, height - 1) + noise) & 0xFF;
+                int b = ((x + y) / 16 % 2 == 0) ? 0x40 : (0xC0 + noise) & 0xFF;
+                int a = (x / 64 + y / 64) % 5 == 0 ? 0x80 : 0xFF;
+                pixels[y * width + x] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+        return raster;
+    }
+
+    static double megapixels(IntRaster raster){
+        return raster.getWidth() * (double) raster.getHeight() / 1e6;
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.nahom.ip4a.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.TileExecutor;
+import com.github.nahom.ip4a.core.Transforms;
+
+/**
+ * Flips, quarter turns and free rotation from {@link Transforms}. The EXIF
+ * orientations write back into the source whenever the output has its size, as
+ * IP4A.applyExifOrientation does, so square sizes measure the in-place turns; free
+ * rotation runs on the default parallel executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransformBenchmark {
+
+    @Param({"640x480", "1920x1080", "4000x3000", "6000x4000", "3000x3000"})
+    public String size;
+
+    @Param({"flipHorizontal", "rotate180", "flipVertical", "transpose", "rotate90", "transverse", "rotate270",
+            "rotate"})
+    public String transform;
+
+    private IntRaster src;
+    private IntRaster dst;
+    // 0 for free rotation
+    private int orientation;
+    private double megapixels;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = SyntheticImages.create(size);
+        megapixels = SyntheticImages.megapixels(src);
+        int width = src.getWidth();
+        int height = src.getHeight();
+        if("rotate".equals(transform)){
+            int[] turned = Transforms.rotatedSize(width, height, BenchmarkFilters.ROTATE_DEGREES);
+            dst = new IntRaster(turned[0], turned[1]);
+            orientation = 0;
+            return;
+        }
+        orientation = BenchmarkFilters.orientation(transform);
+        int outWidth = Transforms.orientedWidth(width, height, orientation);
+        dst = outWidth == width ? src : new IntRaster(outWidth, Transforms.orientedHeight(width, height, orientation));
+    }
+
+    @Benchmark
+    public IntRaster transform(MegapixelCounter counter){
+        if(orientation == 0){
+            Transforms.rotate(src, dst, BenchmarkFilters.ROTATE_DEGREES, TileExecutor.getDefault());
+        }else{
+            Transforms.orient(src, dst, orientation);
+        }
+        counter.megapixels += megapixels;
+        return dst;
+    }
+}
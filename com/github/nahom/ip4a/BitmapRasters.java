@@ -0,0 +1,200 @@
+package com.github.nahom.ip4a;
+
+import android.graphics.Bitmap;
+
+import com.github.nahom.ip4a.core.ByteRaster;
+import com.github.nahom.ip4a.core.GrayOps;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.PixelBufferPool;
+import com.github.nahom.ip4a.core.RegionSource;
+import com.github.nahom.ip4a.core.ShortRaster;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Moves pixels between Bitmaps and {@link IntRaster}s with one bulk
+ * getPixels/setPixels call instead of a getPixel/setPixel per pixel.
+ */
+public final class BitmapRasters {
+
+    private BitmapRasters(){
+    }
+
+    public static IntRaster read(Bitmap src){
+        IntRaster raster = new IntRaster(src.getWidth(), src.getHeight());
+        read(src, raster);
+        return raster;
+    }
+
+    public static void read(Bitmap src, IntRaster dst){
+        src.getPixels(dst.getPixels(), dst.getOffset(), dst.getStride(), 0, 0, dst.getWidth(), dst.getHeight());
+    }
+
+    /**
+     * Reads the rectangle of src whose top left corner is (left, top) into dst,
+     * which sets its size.
+     */
+    public static void read(Bitmap src, int left, int top, IntRaster dst){
+        src.getPixels(dst.getPixels(), dst.getOffset(), dst.getStride(), left, top, dst.getWidth(), dst.getHeight());
+    }
+
+    public static void write(IntRaster src, Bitmap dst){
+        write(src, dst, 0, 0);
+    }
+
+    /**
+     * Writes src into the rectangle of dst whose top left corner is (left, top).
+     */
+    public static void write(IntRaster src, Bitmap dst, int left, int top){
+        dst.setPixels(src.getPixels(), src.getOffset(), src.getStride(), left, top, src.getWidth(), src.getHeight());
+    }
+
+    /**
+     * Copies the pixels of an RGB_565 bitmap as stored, 2 bytes each, without
+     * expanding them to ARGB.
+     */
+    public static void read(Bitmap src, ShortRaster dst){
+        checkCompact(src, Bitmap.Config.RGB_565, dst.getWidth(), dst.getHeight());
+        int width = dst.getWidth();
+        int height = dst.getHeight();
+        int rowLength = src.getRowBytes() / 2;
+        if(rowLength == width && dst.isContiguous()){
+            src.copyPixelsToBuffer(ShortBuffer.wrap(dst.getPixels(), dst.getOffset(), width * height));
+            return;
+        }
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        short[] rows = pool.acquireShorts(rowLength * height);
+        try{
+            src.copyPixelsToBuffer(ShortBuffer.wrap(rows, 0, rowLength * height));
+            for(int y = 0; y < height; ++y){
+                System.arraycopy(rows, y * rowLength, dst.getPixels(), dst.index(0, y), width);
+            }
+        }finally{
+            pool.release(rows);
+        }
+    }
+
+    public static void write(ShortRaster src, Bitmap dst){
+        checkCompact(dst, Bitmap.Config.RGB_565, src.getWidth(), src.getHeight());
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int rowLength = dst.getRowBytes() / 2;
+        if(rowLength == width && src.isContiguous()){
+            dst.copyPixelsFromBuffer(ShortBuffer.wrap(src.getPixels(), src.getOffset(), width * height));
+            return;
+        }
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        short[] rows = pool.acquireShorts(rowLength * height);
+        try{
+            for(int y = 0; y < height; ++y){
+                System.arraycopy(src.getPixels(), src.index(0, y), rows, y * rowLength, width);
+            }
+            dst.copyPixelsFromBuffer(ShortBuffer.wrap(rows, 0, rowLength * height));
+        }finally{
+            pool.release(rows);
+        }
+    }
+
+    /**
+     * Copies the single channel of an ALPHA_8 bitmap, 1 byte per pixel.
+     */
+    public static void read(Bitmap src, ByteRaster dst){
+        checkCompact(src, Bitmap.Config.ALPHA_8, dst.getWidth(), dst.getHeight());
+        int width = dst.getWidth();
+        int height = dst.getHeight();
+        int rowLength = src.getRowBytes();
+        if(rowLength == width && dst.isContiguous()){
+            src.copyPixelsToBuffer(ByteBuffer.wrap(dst.getPixels(), dst.getOffset(), width * height));
+            return;
+        }
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        byte[] rows = pool.acquireBytes(rowLength * height);
+        try{
+            src.copyPixelsToBuffer(ByteBuffer.wrap(rows, 0, rowLength * height));
+            for(int y = 0; y < height; ++y){
+                System.arraycopy(rows, y * rowLength, dst.getPixels(), dst.index(0, y), width);
+            }
+        }finally{
+            pool.release(rows);
+        }
+    }
+
+    public static void write(ByteRaster src, Bitmap dst){
+        checkCompact(dst, Bitmap.Config.ALPHA_8, src.getWidth(), src.getHeight());
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int rowLength = dst.getRowBytes();
+        if(rowLength == width && src.isContiguous()){
+            dst.copyPixelsFromBuffer(ByteBuffer.wrap(src.getPixels(), src.getOffset(), width * height));
+            return;
+        }
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        byte[] rows = pool.acquireBytes(rowLength * height);
+        try{
+            for(int y = 0; y < height; ++y){
+                System.arraycopy(src.getPixels(), src.index(0, y), rows, y * rowLength, width);
+            }
+            dst.copyPixelsFromBuffer(ByteBuffer.wrap(rows, 0, rowLength * height));
+        }finally{
+            pool.release(rows);
+        }
+    }
+
+    private static void checkCompact(Bitmap bitmap, Bitmap.Config config, int width, int height){
+        if(bitmap.getConfig() != config){
+            throw new IllegalArgumentException("expected a " + config + " bitmap, got " + bitmap.getConfig());
+        }
+        if(bitmap.getWidth() != width || bitmap.getHeight() != height){
+            throw new IllegalArgumentException("bitmap is " + bitmap.getWidth() + "x" + bitmap.getHeight()
+                    + ", raster " + width + "x" + height);
+        }
+    }
+
+    /**
+     * @return a source that copies only the requested rectangles out of the bitmap
+     */
+    public static RegionSource regions(final Bitmap src){
+        return new RegionSource(){
+            @Override
+            public int getWidth(){
+                return src.getWidth();
+            }
+
+            @Override
+            public int getHeight(){
+                return src.getHeight();
+            }
+
+            @Override
+            public void read(int left, int top, IntRaster dst){
+                src.getPixels(dst.getPixels(), dst.getOffset(), dst.getStride(), left, top, dst.getWidth(), dst.getHeight());
+            }
+        };
+    }
+
+    public static Bitmap toBitmap(IntRaster src, Bitmap.Config config){
+        Bitmap output = Bitmap.createBitmap(src.getWidth(), src.getHeight(), config);
+        write(src, output);
+        return output;
+    }
+
+    /**
+     * Android has no gray config, so the gray levels become an opaque bitmap of
+     * the given config for display.
+     */
+    public static Bitmap toBitmap(ByteRaster gray, Bitmap.Config config){
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        Bitmap output = Bitmap.createBitmap(width, height, config);
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster pixels = pool.acquireRaster(width, height);
+        try{
+            GrayOps.toArgb(gray, pixels);
+            write(pixels, output);
+        }finally{
+            pool.release(pixels);
+        }
+        return output;
+    }
+}
@@ -1,10 +1,8 @@
 package com.github.nahom.ip4a;
 
-import android.graphics.BlurMaskFilter;
 import android.graphics.Canvas;
 import android.graphics.Bitmap;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Point;
 import android.graphics.PorterDuff;
@@ -12,6 +10,37 @@ import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
 
+import com.github.nahom.ip4a.core.AlphaBlend;
+import com.github.nahom.ip4a.core.Border;
+import com.github.nahom.ip4a.core.BoxBlurOp;
+import com.github.nahom.ip4a.core.ByteRaster;
+import com.github.nahom.ip4a.core.ByteRasterOp;
+import com.github.nahom.ip4a.core.ConvolveOp;
+import com.github.nahom.ip4a.core.Convolutions;
+import com.github.nahom.ip4a.core.FilterListener;
+import com.github.nahom.ip4a.core.FilterTimer;
+import com.github.nahom.ip4a.core.GrayOps;
+import com.github.nahom.ip4a.core.Histogram;
+import com.github.nahom.ip4a.core.HistogramOps;
+import com.github.nahom.ip4a.core.HsvOps;
+import com.github.nahom.ip4a.core.ImagePyramid;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.Kernel;
+import com.github.nahom.ip4a.core.Kernels;
+import com.github.nahom.ip4a.core.LinearLight;
+import com.github.nahom.ip4a.core.LazyRaster;
+import com.github.nahom.ip4a.core.NoiseOps;
+import com.github.nahom.ip4a.core.PixelBufferPool;
+import com.github.nahom.ip4a.core.PointOp;
+import com.github.nahom.ip4a.core.PointOps;
+import com.github.nahom.ip4a.core.RasterOp;
+import com.github.nahom.ip4a.core.Resample;
+import com.github.nahom.ip4a.core.ResultCache;
+import com.github.nahom.ip4a.core.Rgb565;
+import com.github.nahom.ip4a.core.ShortRaster;
+import com.github.nahom.ip4a.core.TileExecutor;
+import com.github.nahom.ip4a.core.Transforms;
+
 import java.util.Random;
 
 /**
@@ -34,684 +63,862 @@ import java.util.Random;
  */
 public class IP4A {
 
-    private static final int COLOR_MIN = 0x00;
-    private static final int COLOR_MAX = 0xFF;
     private static final int FLIP_VERTICAL = 1;
     private static final int FLIP_HORIZONTAL = 2;
+    // below this size building the 64K entry color table costs more than expanding to ARGB
+    private static final int RGB_565_TABLE_MIN_PIXELS = 256 * 256;
+    private static final int GRAY_STRIP_ROWS = 64;
+    private static final float HIGHLIGHT_RADIUS = 15;
+    private static final int HIGHLIGHT_PADDING = 96;
+    private static final int AUTO_LEVELS = 0;
+    private static final int AUTO_CONTRAST = 1;
+    private static final int EQUALIZE = 2;
+    private static final String LINEAR_KEY = "@linear";
+
+    private static volatile TileExecutor executor;
+    private static volatile ResultCache resultCache;
+    private static volatile FilterListener filterListener;
+    private static volatile Border convolutionBorder = Border.NONE;
+    private static volatile boolean linearLight;
+
+    /**
+     * Sets the executor the filters split their work over, null restores the
+     * shared {@link TileExecutor#getDefault()}. Use {@link TileExecutor#serial()}
+     * to keep all work on the calling thread.
+     */
+    public static void setExecutor(TileExecutor tileExecutor){
+        executor = tileExecutor;
+    }
 
-    private static class ConvolutionMatrix{
-        public static final int SIZE = 3;
+    public static TileExecutor getExecutor(){
+        TileExecutor current = executor;
+        return current != null ? current : TileExecutor.getDefault();
+    }
 
-        public double[][] Matrix;
-        public double Factor = 1;
-        public double Offset = 1;
+    /**
+     * Sets the cache the built-in raster filters look their results up in before
+     * filtering, null (the default) turns caching off. Results are keyed on a hash of
+     * the source pixels plus the filter name and parameters, so a repeated call costs
+     * one read and hash of the source. Ops passed to apply are never cached.
+     */
+    public static void setResultCache(ResultCache cache){
+        resultCache = cache;
+    }
 
-        public ConvolutionMatrix(int size){
-            Matrix = new double[size][size];
-        }
+    public static ResultCache getResultCache(){
+        return resultCache;
+    }
 
-        public void setAll(double value){
-            for(int x = 0; x < SIZE; ++x){
-                for(int y = 0; y < SIZE; ++y){
-                    Matrix[x][y] = value;
-                }
-            }
-        }
+    /**
+     * Sets the listener told about every call to a public filter, with its wall
+     * time, image size and pool allocations; see
+     * {@link com.github.nahom.ip4a.core.FilterRecorder}. Null (the default) turns
+     * the measuring off, leaving one volatile read per call.
+     */
+    public static void setFilterListener(FilterListener listener){
+        filterListener = listener;
+    }
 
-        public void applyConfig(double[][] config){
-            for(int x = 0; x < SIZE; ++x){
-                for(int y = 0; y < SIZE; ++y){
-                    Matrix[x][y] = config[x][y];
-                }
-            }
+    public static FilterListener getFilterListener(){
+        return filterListener;
+    }
+
+    /**
+     * Sets what the kernel filters (the 3x3 applyGaussianBlur, sharpen,
+     * applyMeanRemoval, smooth, emboss, engrave) and convolve read beyond the image
+     * edge. {@link Border#NONE}, the default, keeps the original transparent 1 pixel
+     * frame; null restores it. applyGaussianBlur with a radius always repeats the edge
+     * pixels.
+     */
+    public static void setConvolutionBorder(Border border){
+        convolutionBorder = border != null ? border : Border.NONE;
+    }
+
+    public static Border getConvolutionBorder(){
+        return convolutionBorder;
+    }
+
+    /**
+     * Runs grayscale, sepiaToning, applyGaussianBlur and the kernel filters on linear
+     * intensities instead of sRGB levels, see {@link LinearLight}. Blurs then keep the
+     * brightness of light edges and gray keeps the luminance of the color, at the
+     * cost of decoding and encoding every channel. Kernels whose weights cancel out,
+     * such as emboss and engrave, measure edges rather than light and stay in sRGB;
+     * see {@link LinearLight#averagesLight}. Off by default.
+     */
+    public static void setLinearLight(boolean enabled){
+        linearLight = enabled;
+    }
+
+    public static boolean isLinearLight(){
+        return linearLight;
+    }
+
+    /**
+     * Runs any raster op, for example a {@link com.github.nahom.ip4a.core.PointOpChain}
+     * built from several adjustments, over the bitmap in a single pass.
+     */
+    public static Bitmap apply(Bitmap src, RasterOp op){
+        return filter(src, newOutput(src, src.getConfig()), op, "apply", null);
+    }
+
+    /**
+     * Runs the op over src and writes the result into dst, which must be mutable and
+     * of the same size. dst may be src itself. Intermediate pixel buffers come from
+     * {@link PixelBufferPool#getDefault()} and are returned to it afterwards.
+     */
+    public static Bitmap apply(Bitmap src, Bitmap dst, RasterOp op){
+        return filter(src, dst, op, "apply", null);
+    }
+
+    /**
+     * Scales the bitmap by averaging the source pixels under each output pixel, which
+     * keeps shrunk photos free of the aliasing of filtered sampling.
+     */
+    public static Bitmap resize(Bitmap src, int width, int height){
+        FilterTimer timer = FilterTimer.start(filterListener, "resize");
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster pixels = pool.acquireRaster(src.getWidth(), src.getHeight());
+        IntRaster resized = pool.acquireRaster(width, height);
+        Bitmap output = Bitmap.createBitmap(width, height, src.getConfig());
+        try{
+            BitmapRasters.read(src, pixels);
+            Resample.resize(pixels, resized, getExecutor());
+            BitmapRasters.write(resized, output);
+        }finally{
+            pool.release(pixels);
+            pool.release(resized);
+            finish(timer, src.getWidth(), src.getHeight());
         }
+        return output;
+    }
 
-        public Bitmap computeConvolution3x3(Bitmap src, ConvolutionMatrix matrix){
-            int width = src.getWidth();
-            int height = src.getHeight();
-            Bitmap result = Bitmap.createBitmap(width, height, src.getConfig());
-
-            int A, R, G, B;
-            int sumR, sumG, sumB;
-            int[][] pixels = new int[SIZE][SIZE];
-
-            for (int y = 0; y < height - 2; ++y){
-                for(int x = 0; x < width - 2; ++x){
-
-                    for(int i = 0; i < SIZE; ++i){
-                        for(int j = 0; j < SIZE; ++j){
-                            pixels[i][j] = src.getPixel(x + i, y + j);
-                        }
-                    }
-
-                    A = Color.alpha(pixels[1][1]);
-
-                    sumR = sumG = sumB = 0;
-
-                    for(int i = 0; i < SIZE; ++i){
-                        for(int j = 0; j < SIZE; ++j){
-                            sumR += (Color.red(pixels[i][j]) * matrix.Matrix[i][j]);
-                            sumG += (Color.green(pixels[i][j]) * matrix.Matrix[i][j]);
-                            sumB += (Color.blue(pixels[i][j]) * matrix.Matrix[i][j]);
-                        }
-                    }
-
-                    R = (int)(sumR / matrix.Factor + matrix.Offset);
-                    if(R < 0){
-                        R = 0;
-                    }else if(R > 255){
-                        R = 255;
-                    }
-
-                    G = (int)(sumG / matrix.Factor + matrix.Offset);
-                    if(R < 0){
-                        R = 0;
-                    }else if(R > 255){
-                        R = 255;
-                    }
-
-                    B = (int)(sumB / matrix.Factor + matrix.Offset);
-                    if(B < 0){
-                        B = 0;
-                    }else if(B > 255){
-                        B = 255;
-                    }
-
-                    result.setPixel(x + 1, y + 1, Color.argb(A, R, G, B));
-                }
+    /**
+     * Makes one thumbnail per size from an {@link ImagePyramid} of the bitmap. The op,
+     * for example {@link PointOps#sepiaToning} or a blur, runs once at the pyramid
+     * level of the largest thumbnail instead of at full size and again per thumbnail.
+     *
+     * @param op       may be null for plain thumbnails
+     * @param maxSides the longer side of each thumbnail, which keeps the aspect ratio
+     */
+    public static Bitmap[] thumbnails(Bitmap src, RasterOp op, int... maxSides){
+        FilterTimer timer = FilterTimer.start(filterListener, "thumbnails");
+        try{
+            IntRaster[] rasters = new ImagePyramid(BitmapRasters.read(src), ImagePyramid.DEFAULT_MIN_SIZE, getExecutor())
+                    .thumbnails(op, maxSides);
+            Bitmap[] thumbnails = new Bitmap[rasters.length];
+            for(int i = 0; i < rasters.length; ++i){
+                thumbnails[i] = BitmapRasters.toBitmap(rasters[i], src.getConfig());
             }
-
-            return result;
+            return thumbnails;
+        }finally{
+            finish(timer, src.getWidth(), src.getHeight());
         }
     }
 
+    /**
+     * Convolves with a custom kernel of any size, such as a motion or lens blur.
+     * {@link Convolutions} picks the direct, separable or FFT path by its estimated
+     * cost; the border is the one set with {@link #setConvolutionBorder}. In linear
+     * light mode the kernel always runs directly.
+     */
+    public static Bitmap convolve(Bitmap src, Kernel kernel){
+        return convolve(src, newOutput(src, src.getConfig()), kernel);
+    }
 
-    public static Bitmap highlight(Bitmap src){
-        Bitmap output = Bitmap.createBitmap(src.getWidth()+96, src.getHeight()+96, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(output);
-        canvas.drawColor(0, PorterDuff.Mode.CLEAR);
-        Paint ptBlur = new Paint();
-        ptBlur.setMaskFilter(new BlurMaskFilter(15, BlurMaskFilter.Blur.NORMAL));
-        int[] offsetXY = new int[2];
-        Bitmap bmAlpha = src.extractAlpha(ptBlur, offsetXY);
-        Paint ptAlphaColor = new Paint();
-        ptAlphaColor.setColor(0xFFFFFFFF);
-        canvas.drawBitmap(bmAlpha, offsetXY[0], offsetXY[1], ptAlphaColor);
-        bmAlpha.recycle();
-        canvas.drawBitmap(src, 0, 0, null);
+    public static Bitmap convolve(Bitmap src, Bitmap dst, Kernel kernel){
+        Border border = convolutionBorder;
+        RasterOp op = linearLight && LinearLight.averagesLight(kernel) ? LinearLight.convolve(kernel, border)
+                : Convolutions.create(kernel, border);
+        return filter(src, dst, op, "convolve", null);
+    }
 
+    /**
+     * Runs the ops one after another but only computes the pixels inside region,
+     * reading just the part of src their kernels reach. Suited to zoomed previews of
+     * large images: the cost follows the size of region, not of src.
+     * @return a bitmap the size of region
+     */
+    public static Bitmap apply(Bitmap src, Rect region, RasterOp... ops){
+        FilterTimer timer = FilterTimer.start(filterListener, "apply");
+        LazyRaster image = LazyRaster.of(BitmapRasters.regions(src));
+        for(RasterOp op : ops){
+            image = image.apply(op);
+        }
+        int width = region.right - region.left;
+        int height = region.bottom - region.top;
+        Bitmap output = Bitmap.createBitmap(width, height, src.getConfig());
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster pixels = pool.acquireRaster(width, height);
+        try{
+            image.render(region.left, region.top, region.right, region.bottom, pixels, getExecutor());
+            BitmapRasters.write(pixels, output);
+        }finally{
+            pool.release(pixels);
+            finish(timer, width, height);
+        }
         return output;
     }
 
-    public static Bitmap invert(Bitmap src){
-        Bitmap output = Bitmap.createBitmap(src.getWidth(), src.getHeight(), src.getConfig());
-        int A, R, G, B;
-        int pixelColor;
-        int height = src.getHeight();
+    /**
+     * Converts the bitmap to 8 bit gray levels, the ones {@link #grayscale(Bitmap)}
+     * gives, at one byte per pixel. The ARGB pixels are read a strip at a time, so
+     * a full size ARGB copy never exists. Gray rasters are filtered with
+     * {@link #apply(ByteRaster, ByteRasterOp)} and shown with
+     * {@link BitmapRasters#toBitmap(ByteRaster, Bitmap.Config)}.
+     */
+    public static ByteRaster toGray(Bitmap src){
+        FilterTimer timer = FilterTimer.start(filterListener, "toGray");
         int width = src.getWidth();
-
-        for(int y = 0; y < height; y++){
-            for(int x = 0; x < width; x++){
-                pixelColor = src.getPixel(x, y);
-                A = Color.alpha(pixelColor);
-                R = 255 - Color.red(pixelColor);
-                G = 255 - Color.green(pixelColor);
-                B = 255 - Color.blue(pixelColor);
-                output.setPixel(x, y, Color.argb(A, R, G, B));
+        int height = src.getHeight();
+        ByteRaster gray = new ByteRaster(width, height);
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        int[] strip = pool.acquire(Math.max(1, width * Math.min(GRAY_STRIP_ROWS, height)));
+        try{
+            for(int y = 0; y < height; y += GRAY_STRIP_ROWS){
+                int rows = Math.min(GRAY_STRIP_ROWS, height - y);
+                IntRaster pixels = new IntRaster(strip, 0, width, width, rows);
+                BitmapRasters.read(src, 0, y, pixels);
+                GrayOps.toGray(pixels, gray.subRaster(0, y, width, rows));
             }
+        }finally{
+            pool.release(strip);
+            finish(timer, width, height);
         }
-
-        return output;
+        return gray;
     }
 
-    public static Bitmap grayscale(Bitmap src){
-        final double GS_RED = 0.299;
-        final double GS_GREEN = 0.587;
-        final double GS_BLUE = 0.114;
+    /**
+     * Runs an 8 bit op, such as {@link GrayOps#correctGamma(double)} or a
+     * {@link ConvolveOp}, over a gray raster.
+     */
+    public static ByteRaster apply(ByteRaster src, ByteRasterOp op){
+        ByteRaster dst = new ByteRaster(src.getWidth(), src.getHeight());
+        return apply(src, dst, op);
+    }
 
-        Bitmap output = Bitmap.createBitmap(src.getWidth(), src.getHeight(), src.getConfig());
+    /**
+     * @param dst same size as src, may be src itself
+     */
+    public static ByteRaster apply(ByteRaster src, ByteRaster dst, ByteRasterOp op){
+        if(dst.getWidth() != src.getWidth() || dst.getHeight() != src.getHeight()){
+            throw new IllegalArgumentException("destination is " + dst.getWidth() + "x" + dst.getHeight()
+                    + ", expected " + src.getWidth() + "x" + src.getHeight());
+        }
+        FilterTimer timer = FilterTimer.start(filterListener, "apply");
+        try{
+            if(op.getRadius() == 0 || dst != src){
+                getExecutor().apply(op, src, dst);
+            }else{
+                PixelBufferPool pool = PixelBufferPool.getDefault();
+                ByteRaster output = pool.acquireByteRaster(src.getWidth(), src.getHeight());
+                try{
+                    getExecutor().apply(op, src, output);
+                    output.copyTo(dst);
+                }finally{
+                    pool.release(output);
+                }
+            }
+        }finally{
+            finish(timer, src.getWidth(), src.getHeight());
+        }
+        return dst;
+    }
 
-        int A, R, G, B, pixel;
+    private static Bitmap newOutput(Bitmap src, Bitmap.Config config){
+        return Bitmap.createBitmap(src.getWidth(), src.getHeight(), config);
+    }
 
-        int height = src.getHeight();
-        int width = src.getWidth();
+    private static void checkDestination(Bitmap src, Bitmap dst){
+        if(dst.getWidth() != src.getWidth() || dst.getHeight() != src.getHeight()){
+            throw new IllegalArgumentException("destination is " + dst.getWidth() + "x" + dst.getHeight()
+                    + ", expected " + src.getWidth() + "x" + src.getHeight());
+        }
+        if(!dst.isMutable()){
+            throw new IllegalArgumentException("destination bitmap is immutable");
+        }
+    }
 
-        for(int x = 0; x < width; x++){
-            for(int y = 0; y < height; y++){
-                pixel = src.getPixel(x, y);
-                A = Color.alpha(pixel);
-                R = Color.red(pixel);
-                G = Color.green(pixel);
-                B = Color.blue(pixel);
+    private static void finish(FilterTimer timer, int width, int height){
+        if(timer != null){
+            timer.stop(width, height);
+        }
+    }
 
-                R = G = B = (int)(GS_RED * R + GS_GREEN * G + GS_BLUE * B);
-                output.setPixel(x, y, Color.argb(A, R, G, B));
-            }
+    /**
+     * @param name     what the filter is reported as to the filter listener
+     * @param cacheKey names the filter and all its parameters, null if the result must not be cached
+     */
+    private static Bitmap filter(Bitmap src, Bitmap dst, RasterOp op, String name, String cacheKey){
+        FilterTimer timer = FilterTimer.start(filterListener, name);
+        try{
+            return runFilter(src, dst, op, cacheKey);
+        }finally{
+            finish(timer, src.getWidth(), src.getHeight());
         }
+    }
 
-        return output;
+    private static Bitmap convolve(Bitmap src, Bitmap dst, Kernel kernel, String name, String cacheKey){
+        Border border = convolutionBorder;
+        if(!border.isNone()){
+            cacheKey += "@" + border;
+        }
+        if(linearLight && LinearLight.averagesLight(kernel)){
+            return filter(src, dst, LinearLight.convolve(kernel, border), name, cacheKey + LINEAR_KEY);
+        }
+        return filter(src, dst, new ConvolveOp(kernel, border), name, cacheKey);
     }
 
-    public static Bitmap correctGamma(Bitmap src, double red, double green, double blue){
-        Bitmap bmOut = Bitmap.createBitmap(src.getWidth(), src.getHeight(), src.getConfig());
+    private static Bitmap runFilter(Bitmap src, Bitmap dst, RasterOp op, String cacheKey){
+        checkDestination(src, dst);
         int width = src.getWidth();
         int height = src.getHeight();
-        int A, R, G, B;
-        int pixel;
-        final int    MAX_SIZE = 256;
-        final double MAX_VALUE_DBL = 255.0;
-        final int    MAX_VALUE_INT = 255;
-        final double REVERSE = 1.0;
-
-        int[] gammaR = new int[MAX_SIZE];
-        int[] gammaG = new int[MAX_SIZE];
-        int[] gammaB = new int[MAX_SIZE];
-
-        for(int i = 0; i < MAX_SIZE; ++i) {
-            gammaR[i] = (int)Math.min(MAX_VALUE_INT,
-                    (int)((MAX_VALUE_DBL * Math.pow(i / MAX_VALUE_DBL, REVERSE / red)) + 0.5));
-            gammaG[i] = (int)Math.min(MAX_VALUE_INT,
-                    (int)((MAX_VALUE_DBL * Math.pow(i / MAX_VALUE_DBL, REVERSE / green)) + 0.5));
-            gammaB[i] = (int)Math.min(MAX_VALUE_INT,
-                    (int)((MAX_VALUE_DBL * Math.pow(i / MAX_VALUE_DBL, REVERSE / blue)) + 0.5));
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        if(op instanceof PointOp && src.getConfig() == Bitmap.Config.RGB_565 && dst.getConfig() == Bitmap.Config.RGB_565
+                && (long) width * height >= RGB_565_TABLE_MIN_PIXELS && (cacheKey == null || resultCache == null)){
+            // 2 bytes per pixel through one table instead of 4 through the op
+            ShortRaster colors = pool.acquireShortRaster(width, height);
+            try{
+                BitmapRasters.read(src, colors);
+                getExecutor().apply(Rgb565.lookup((PointOp) op), colors, colors);
+                BitmapRasters.write(colors, dst);
+            }finally{
+                pool.release(colors);
+            }
+            return dst;
         }
-
-        for(int x = 0; x < width; ++x) {
-            for(int y = 0; y < height; ++y) {
-                pixel = src.getPixel(x, y);
-                A = Color.alpha(pixel);
-                R = gammaR[Color.red(pixel)];
-                G = gammaG[Color.green(pixel)];
-                B = gammaB[Color.blue(pixel)];
-                bmOut.setPixel(x, y, Color.argb(A, R, G, B));
+        IntRaster pixels = pool.acquireRaster(width, height);
+        try{
+            BitmapRasters.read(src, pixels);
+            ResultCache cache = resultCache;
+            ResultCache.Key key = null;
+            if(cache != null && cacheKey != null){
+                key = ResultCache.key(pixels, cacheKey);
+                IntRaster cached = cache.get(key);
+                if(cached != null){
+                    BitmapRasters.write(cached, dst);
+                    return dst;
+                }
+            }
+            if(op.getRadius() == 0){
+                // point ops can overwrite the pixels they have just read
+                getExecutor().apply(op, pixels, pixels);
+                store(cache, key, pixels);
+                BitmapRasters.write(pixels, dst);
+                return dst;
+            }
+            IntRaster output = pool.acquireRaster(width, height);
+            try{
+                getExecutor().apply(op, pixels, output);
+                store(cache, key, output);
+                BitmapRasters.write(output, dst);
+            }finally{
+                pool.release(output);
             }
+        }finally{
+            pool.release(pixels);
         }
+        return dst;
+    }
 
-        return bmOut;
+    private static void store(ResultCache cache, ResultCache.Key key, IntRaster result){
+        if(key != null){
+            cache.put(key, result);
+        }
     }
 
-    public static Bitmap filterColor(Bitmap src, double red, double green, double blue){
+    /**
+     * Draws src over a white glow made from its blurred alpha, on a canvas 96 pixels
+     * wider and taller.
+     */
+    public static Bitmap highlight(Bitmap src){
+        FilterTimer timer = FilterTimer.start(filterListener, "highlight");
         int width = src.getWidth();
         int height = src.getHeight();
-
-        Bitmap output = Bitmap.createBitmap(width, height, src.getConfig());
-        int A, R, G, B, pixel;
-
-        for(int x = 0; x < width; ++x){
-            for (int y = 0; y < height; ++y){
-                pixel = src.getPixel(x, y);
-                A = Color.alpha(pixel);
-                R = (int)(Color.red(pixel) * red);
-                G = (int)(Color.green(pixel) * green);
-                B = (int)(Color.blue(pixel) * blue);
-
-                output.setPixel(x, y, Color.argb(A, R, G, B));
+        int outWidth = width + HIGHLIGHT_PADDING;
+        int outHeight = height + HIGHLIGHT_PADDING;
+        BoxBlurOp blur = BoxBlurOp.ofRadius(HIGHLIGHT_RADIUS);
+        // transparent margin above and left of the output, so the glow fades out there
+        int margin = blur.getRadius();
+        int glowWidth = outWidth + margin;
+        int glowHeight = outHeight + margin;
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster pixels = pool.acquireRaster(width, height);
+        IntRaster alpha = pool.acquireRaster(glowWidth, glowHeight);
+        IntRaster glow = pool.acquireRaster(glowWidth, glowHeight);
+        Bitmap output = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+        try{
+            BitmapRasters.read(src, pixels);
+            alpha.fill(0x00FFFFFF);
+            for(int y = 0; y < height; ++y){
+                for(int x = 0; x < width; ++x){
+                    alpha.setPixel(x + margin, y + margin, (pixels.getPixel(x, y) & 0xFF000000) | 0x00FFFFFF);
+                }
             }
+            getExecutor().apply(blur, alpha, glow, margin, margin, glowWidth, glowHeight);
+            IntRaster result = glow.subRaster(margin, margin, outWidth, outHeight);
+            for(int y = 0; y < height; ++y){
+                for(int x = 0; x < width; ++x){
+                    result.setPixel(x, y, AlphaBlend.over(pixels.getPixel(x, y), result.getPixel(x, y)));
+                }
+            }
+            BitmapRasters.write(result, output);
+        }finally{
+            pool.release(pixels);
+            pool.release(alpha);
+            pool.release(glow);
+            finish(timer, width, height);
         }
         return output;
     }
 
-    public static Bitmap sepiaToning(Bitmap src, int depth, double red, double green, double blue){
-        int width = src.getWidth();
-        int height = src.getHeight();
-
-        Bitmap output = Bitmap.createBitmap(width, height, src.getConfig());
-        final double GS_RED = 0.3;
-        final double GS_GREEN = 0.59;
-        final double GS_BLUE = 0.11;
+    public static Bitmap invert(Bitmap src){
+        return invert(src, newOutput(src, src.getConfig()));
+    }
 
-        int A, R, G, B, pixel;
+    public static Bitmap invert(Bitmap src, Bitmap dst){
+        return filter(src, dst, PointOps.invert(), "invert", "invert");
+    }
 
-        for (int x = 0; x < width; ++x){
-            for (int y = 0; y < height; ++y){
-                pixel = src.getPixel(x, y);
-                A = Color.alpha(pixel);
-                R = Color.red(pixel);
-                G = Color.green(pixel);
-                B = Color.blue(pixel);
-                B = G = R = (int)(GS_RED * R + GS_GREEN * G + GS_BLUE * B);
+    public static Bitmap grayscale(Bitmap src){
+        return grayscale(src, newOutput(src, src.getConfig()));
+    }
 
-                R += (depth * red);
-                if(R > 255) {R = 255;}
+    public static Bitmap grayscale(Bitmap src, Bitmap dst){
+        if(linearLight){
+            return filter(src, dst, LinearLight.grayscale(), "grayscale", "grayscale" + LINEAR_KEY);
+        }
+        return filter(src, dst, PointOps.grayscale(), "grayscale", "grayscale");
+    }
 
-                G += (depth * green);
-                if(G > 255) {G = 255;}
+    public static Bitmap correctGamma(Bitmap src, double red, double green, double blue){
+        return correctGamma(src, newOutput(src, src.getConfig()), red, green, blue);
+    }
 
-                B += (depth * blue);
-                if(B > 255){B = 255;}
+    public static Bitmap correctGamma(Bitmap src, Bitmap dst, double red, double green, double blue){
+        return filter(src, dst, PointOps.correctGamma(red, green, blue), "correctGamma", "correctGamma(" + red + "," + green + "," + blue + ")");
+    }
 
-                output.setPixel(x, y, Color.argb(A, R, G, B));
-            }
-        }
-        return output;
+    public static Bitmap filterColor(Bitmap src, double red, double green, double blue){
+        return filterColor(src, newOutput(src, src.getConfig()), red, green, blue);
     }
 
-    public static Bitmap decreaseColorDepth(Bitmap src, int bitOffset){
-        int width = src.getWidth();
-        int height = src.getHeight();
-        Bitmap output = Bitmap.createBitmap(width, height, src.getConfig());
+    public static Bitmap filterColor(Bitmap src, Bitmap dst, double red, double green, double blue){
+        return filter(src, dst, PointOps.filterColor(red, green, blue), "filterColor", "filterColor(" + red + "," + green + "," + blue + ")");
+    }
 
-        int A, R, G, B, pixel;
+    public static Bitmap sepiaToning(Bitmap src, int depth, double red, double green, double blue){
+        return sepiaToning(src, newOutput(src, src.getConfig()), depth, red, green, blue);
+    }
 
-        for(int x = 0; x < width; ++x){
-            for(int y = 0; y < height; ++y){
-                pixel = src.getPixel(x, y);
-                A = Color.alpha(pixel);
-                R = Color.red(pixel);
-                G = Color.green(pixel);
-                B = Color.blue(pixel);
-
-                R = ((R + (bitOffset/2))-((R+(bitOffset/2))%bitOffset)-1);
-                if(R < 0){R = 0;}
-                G = ((G + (bitOffset/2))-((G+(bitOffset/2))%bitOffset)-1);
-                if(G < 0){G=0;}
-                B = ((B + (bitOffset/2))-((B+(bitOffset/2))%bitOffset)-1);
-                if(B < 0){B = 0;}
-
-                output.setPixel(x, y, Color.argb(A, R, G, B));
-            }
+    public static Bitmap sepiaToning(Bitmap src, Bitmap dst, int depth, double red, double green, double blue){
+        String cacheKey = "sepiaToning(" + depth + "," + red + "," + green + "," + blue + ")";
+        if(linearLight){
+            return filter(src, dst, LinearLight.sepiaToning(depth, red, green, blue), "sepiaToning", cacheKey + LINEAR_KEY);
         }
-        return output;
+        return filter(src, dst, PointOps.sepiaToning(depth, red, green, blue), "sepiaToning", cacheKey);
     }
 
-    public static Bitmap createContrast(Bitmap src, double value){
-        int width = src.getWidth();
-        int height = src.getHeight();
-        Bitmap output = Bitmap.createBitmap(width, height, src.getConfig());
+    public static Bitmap decreaseColorDepth(Bitmap src, int bitOffset){
+        return decreaseColorDepth(src, newOutput(src, src.getConfig()), bitOffset);
+    }
 
-        int A, R, G, B, pixel;
+    public static Bitmap decreaseColorDepth(Bitmap src, Bitmap dst, int bitOffset){
+        return filter(src, dst, PointOps.decreaseColorDepth(bitOffset), "decreaseColorDepth", "decreaseColorDepth(" + bitOffset + ")");
+    }
 
-        double contrast = Math.pow((100 + value) / 100, 2);
+    public static Bitmap createContrast(Bitmap src, double value){
+        return createContrast(src, newOutput(src, src.getConfig()), value);
+    }
 
+    public static Bitmap createContrast(Bitmap src, Bitmap dst, double value){
+        return filter(src, dst, PointOps.createContrast(value), "createContrast", "createContrast(" + value + ")");
+    }
 
-        for(int x = 0; x < width; ++x){
-            for(int y = 0; y < height; ++y){
-                pixel = src.getPixel(x, y);
-                A = Color.alpha(pixel);
-                R = Color.red(pixel);
-                R = (int)(((((R / 255.0) - 0.5) * contrast) + 0.5) * 255.0);
-                if(R < 0) { R = 0; }
-                else if(R > 255) { R = 255; }
-
-                G = Color.red(pixel);
-                G = (int)(((((G / 255.0) - 0.5) * contrast) + 0.5) * 255.0);
-                if(G < 0) { G = 0; }
-                else if(G > 255) { G = 255; }
-
-                B = Color.red(pixel);
-                B = (int)(((((B / 255.0) - 0.5) * contrast) + 0.5) * 255.0);
-                if(B < 0) { B = 0; }
-                else if(B > 255) { B = 255; }
-
-                output.setPixel(x, y, Color.argb(A, R, G, B));
-            }
+    /**
+     * Turns the image clockwise. Multiples of 90 degrees move pixels exactly and keep
+     * the config; other angles are filtered bilinearly onto a transparent
+     * ARGB_8888 bitmap just large enough to hold the turned image.
+     */
+    public static Bitmap rotate(Bitmap src, float degree){
+        float turn = degree % 360;
+        if(turn < 0){
+            turn += 360;
+        }
+        if(turn == 0){
+            return orient(src, Transforms.ORIENTATION_NORMAL, "rotate");
+        }else if(turn == 90){
+            return orient(src, Transforms.ORIENTATION_ROTATE_90, "rotate");
+        }else if(turn == 180){
+            return orient(src, Transforms.ORIENTATION_ROTATE_180, "rotate");
+        }else if(turn == 270){
+            return orient(src, Transforms.ORIENTATION_ROTATE_270, "rotate");
+        }
+        FilterTimer timer = FilterTimer.start(filterListener, "rotate");
+        int[] size = Transforms.rotatedSize(src.getWidth(), src.getHeight(), turn);
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster pixels = pool.acquireRaster(src.getWidth(), src.getHeight());
+        IntRaster turned = pool.acquireRaster(size[0], size[1]);
+        Bitmap output;
+        try{
+            BitmapRasters.read(src, pixels);
+            Transforms.rotate(pixels, turned, turn, getExecutor());
+            output = BitmapRasters.toBitmap(turned, Bitmap.Config.ARGB_8888);
+        }finally{
+            pool.release(pixels);
+            pool.release(turned);
+            finish(timer, src.getWidth(), src.getHeight());
         }
         return output;
     }
 
-    public static Bitmap rotate(Bitmap src, float degree){
-        Matrix matrix = new Matrix();
-        matrix.postRotate(degree);
-
-        return Bitmap.createBitmap(src, 0, 0, src.getWidth(), src.getHeight(), matrix, true);
+    /**
+     * Turns or mirrors a decoded photo so it shows upright, given the value of its
+     * EXIF Orientation tag (ExifInterface.ORIENTATION_*). Returns src itself when
+     * the orientation is normal or unknown.
+     */
+    public static Bitmap applyExifOrientation(Bitmap src, int orientation){
+        if(orientation < Transforms.ORIENTATION_FLIP_HORIZONTAL || orientation > Transforms.ORIENTATION_ROTATE_270){
+            return src;
+        }
+        return orient(src, orientation, "applyExifOrientation");
     }
 
-    public static Bitmap doBrightness(Bitmap src, int value){
+    /**
+     * Reads src once, transforms the pixels in place unless a non-square image
+     * swaps its axes, and writes them to a new bitmap of the same config.
+     */
+    private static Bitmap orient(Bitmap src, int orientation, String name){
+        FilterTimer timer = FilterTimer.start(filterListener, name);
         int width = src.getWidth();
         int height = src.getHeight();
-
-        Bitmap output = Bitmap.createBitmap(width, height, src.getConfig());
-
-        int A, R, G, B, pixel;
-
-        for(int x = 0; x < width; ++x){
-            for(int y = 0; y < height; ++y){
-                pixel = src.getPixel(x, y);
-                A = Color.alpha(pixel);
-                R = Color.red(pixel);
-                G = Color.green(pixel);
-                B = Color.blue(pixel);
-
-                R += value;
-                if(R > 255){
-                    R = 255;
-                } else if(R < 0){
-                    R = 0;
-                }
-
-                G += value;
-                if(G > 255){
-                    G = 255;
-                } else if(G < 0){
-                    G = 0;
-                }
-
-                B += value;
-                if(B > 255){
-                    B = 255;
-                }else if(B < 0){
-                    B = 0;
-                }
-
-                output.setPixel(x, y, Color.argb(A, R, G, B));
+        int outWidth = Transforms.orientedWidth(width, height, orientation);
+        int outHeight = Transforms.orientedHeight(width, height, orientation);
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster pixels = pool.acquireRaster(width, height);
+        IntRaster result = outWidth == width ? pixels : pool.acquireRaster(outWidth, outHeight);
+        Bitmap output;
+        try{
+            BitmapRasters.read(src, pixels);
+            Transforms.orient(pixels, result, orientation);
+            output = BitmapRasters.toBitmap(result, src.getConfig());
+        }finally{
+            pool.release(pixels);
+            if(result != pixels){
+                pool.release(result);
             }
+            finish(timer, width, height);
         }
         return output;
     }
 
+    public static Bitmap doBrightness(Bitmap src, int value){
+        return doBrightness(src, newOutput(src, src.getConfig()), value);
+    }
+
+    public static Bitmap doBrightness(Bitmap src, Bitmap dst, int value){
+        return filter(src, dst, PointOps.doBrightness(value), "doBrightness", "doBrightness(" + value + ")");
+    }
+
     public static Bitmap applyGaussianBlur(Bitmap src){
-        double[][] GaussianBlurConfig = new double[][]{
-                {1, 2, 1},
-                {2, 4, 2},
-                {1, 2, 1}
-        };
+        return applyGaussianBlur(src, newOutput(src, src.getConfig()));
+    }
+
+    public static Bitmap applyGaussianBlur(Bitmap src, Bitmap dst){
+        return convolve(src, dst, Kernels.gaussianBlur(), "applyGaussianBlur", "applyGaussianBlur");
+    }
+
+    /**
+     * Gaussian blur of any radius, in the sense of BlurMaskFilter's radius, at a
+     * cost per pixel that does not grow with it. Unlike the 3x3 blur it also blurs
+     * alpha and extends the edge pixels instead of leaving a transparent frame.
+     */
+    public static Bitmap applyGaussianBlur(Bitmap src, float radius){
+        return applyGaussianBlur(src, newOutput(src, src.getConfig()), radius);
+    }
 
-        ConvolutionMatrix convolutionMatrix = new ConvolutionMatrix(3);
-        convolutionMatrix.applyConfig(GaussianBlurConfig);
-        convolutionMatrix.Factor = 16;
-        convolutionMatrix.Offset = 0;
-        return convolutionMatrix.computeConvolution3x3(src, convolutionMatrix);
+    public static Bitmap applyGaussianBlur(Bitmap src, Bitmap dst, float radius){
+        if(linearLight){
+            return filter(src, dst, LinearLight.gaussianBlur(radius), "applyGaussianBlur", "applyGaussianBlur(" + radius + ")" + LINEAR_KEY);
+        }
+        return filter(src, dst, BoxBlurOp.ofRadius(radius), "applyGaussianBlur", "applyGaussianBlur(" + radius + ")");
     }
 
     public static Bitmap sharpen(Bitmap src, double weight){
-        double[][] SharpConfig = new double[][]{
-                {0, -2, 0},
-                {-2, weight, -2},
-                {0, -2, 0}
-        };
+        return sharpen(src, newOutput(src, src.getConfig()), weight);
+    }
 
-        ConvolutionMatrix convolutionMatrix = new ConvolutionMatrix(3);
-        convolutionMatrix.applyConfig(SharpConfig);
-        convolutionMatrix.Factor = weight - 8;
-        return convolutionMatrix.computeConvolution3x3(src, convolutionMatrix);
+    public static Bitmap sharpen(Bitmap src, Bitmap dst, double weight){
+        return convolve(src, dst, Kernels.sharpen(weight), "sharpen", "sharpen(" + weight + ")");
     }
 
     public static Bitmap applyMeanRemoval(Bitmap src){
-        double[][] MeanRemovalConfig = new double[][]{
-                {-1, -1, -1},
-                {-1, 9, -1},
-                {-1, -1, -1}
-        };
+        return applyMeanRemoval(src, newOutput(src, src.getConfig()));
+    }
 
-        ConvolutionMatrix convolutionMatrix = new ConvolutionMatrix(3);
-        convolutionMatrix.applyConfig(MeanRemovalConfig);
-        convolutionMatrix.Factor = 1;
-        convolutionMatrix.Offset = 0;
-        return convolutionMatrix.computeConvolution3x3(src, convolutionMatrix);
+    public static Bitmap applyMeanRemoval(Bitmap src, Bitmap dst){
+        return convolve(src, dst, Kernels.meanRemoval(), "applyMeanRemoval", "applyMeanRemoval");
     }
 
     public static Bitmap smooth(Bitmap src, double value){
-        ConvolutionMatrix convolutionMatrix = new ConvolutionMatrix(3);
-        convolutionMatrix.setAll(1);
-        convolutionMatrix.Matrix[1][1] = value;
-        convolutionMatrix.Factor = value + 8;
-        convolutionMatrix.Offset = 1;
-        return convolutionMatrix.computeConvolution3x3(src, convolutionMatrix);
+        return smooth(src, newOutput(src, src.getConfig()), value);
+    }
+
+    public static Bitmap smooth(Bitmap src, Bitmap dst, double value){
+        return convolve(src, dst, Kernels.smooth(value), "smooth", "smooth(" + value + ")");
     }
 
     public static Bitmap emboss(Bitmap src){
-        double[][] EmbossConfig = new double[][]{
-                {-1, 0, -1},
-                {0, 4, 0},
-                {-1, 0, -1}
-        };
+        return emboss(src, newOutput(src, src.getConfig()));
+    }
 
-        ConvolutionMatrix convolutionMatrix = new ConvolutionMatrix(3);
-        convolutionMatrix.applyConfig(EmbossConfig);
-        convolutionMatrix.Factor = 1;
-        convolutionMatrix.Offset = 127;
-        return convolutionMatrix.computeConvolution3x3(src, convolutionMatrix);
+    public static Bitmap emboss(Bitmap src, Bitmap dst){
+        return convolve(src, dst, Kernels.emboss(), "emboss", "emboss");
     }
 
     public static Bitmap engrave(Bitmap src, double value){
-        ConvolutionMatrix convolutionMatrix = new ConvolutionMatrix(3);
-        convolutionMatrix.setAll(0);
-        convolutionMatrix.Matrix[0][0] = -2;
-        convolutionMatrix.Matrix[1][1] = 2;
-        convolutionMatrix.Factor = 1;
-        convolutionMatrix.Offset = 95;
-        return convolutionMatrix.computeConvolution3x3(src, convolutionMatrix);
+        return engrave(src, newOutput(src, src.getConfig()), value);
     }
 
-    public static Bitmap boostIntensity(Bitmap src, int type, float percent){
-        int width = src.getWidth();
-        int height = src.getHeight();
-        Bitmap output = Bitmap.createBitmap(width, height, src.getConfig());
-
-        int A, R, G, B, pixel;
+    public static Bitmap engrave(Bitmap src, Bitmap dst, double value){
+        return convolve(src, dst, Kernels.engrave(), "engrave", "engrave");
+    }
 
-        for(int x = 0; x < width; ++x){
-            for(int y = 0; y < height; ++y){
-                pixel = src.getPixel(x, y);
-                A = Color.alpha(pixel);
-                R = Color.red(pixel);
-                G = Color.green(pixel);
-                B = Color.blue(pixel);
-                if(type == 1){
-                    R = (int)(R * (1 + percent));
-                    if(R > 255) R = 255;
-                } else if(type == 2){
-                    G = (int)(G * (1 + percent));
-                    if(G > 255) G = 255;
-                } else if(type == 3){
-                    B = (int)(B * (1 + percent));
-                    if(B > 255) B = 255;
-                }
-                output.setPixel(x, y, Color.argb(A, R, G, B));
-            }
-        }
+    public static Bitmap boostIntensity(Bitmap src, int type, float percent){
+        return boostIntensity(src, newOutput(src, src.getConfig()), type, percent);
+    }
 
-        return output;
+    public static Bitmap boostIntensity(Bitmap src, Bitmap dst, int type, float percent){
+        return filter(src, dst, PointOps.boostIntensity(type, percent), "boostIntensity", "boostIntensity(" + type + "," + percent + ")");
     }
 
     public static Bitmap roundCorner(Bitmap src, float round){
-        int width = src.getWidth();
-        int height = src.getHeight();
-        Bitmap output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        FilterTimer timer = FilterTimer.start(filterListener, "roundCorner");
+        try{
+            int width = src.getWidth();
+            int height = src.getHeight();
+            Bitmap output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
 
-        Canvas canvas = new Canvas(output);
-        canvas.drawARGB(0, 0, 0, 0);
+            Canvas canvas = new Canvas(output);
+            canvas.drawARGB(0, 0, 0, 0);
 
-        final Paint paint = new Paint();
-        paint.setAntiAlias(true);
-        paint.setColor(Color.BLACK);
+            final Paint paint = new Paint();
+            paint.setAntiAlias(true);
+            paint.setColor(Color.BLACK);
 
-        final Rect rect = new Rect(0, 0, width, height);
-        final RectF rectF = new RectF(rect);
+            final Rect rect = new Rect(0, 0, width, height);
+            final RectF rectF = new RectF(rect);
 
-        canvas.drawRoundRect(rectF, round, round, paint);
+            canvas.drawRoundRect(rectF, round, round, paint);
 
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-        canvas.drawBitmap(src, rect, rect, paint);
+            paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
+            canvas.drawBitmap(src, rect, rect, paint);
 
-        return output;
+            return output;
+        }finally{
+            finish(timer, src.getWidth(), src.getHeight());
+        }
     }
 
     public static Bitmap watermark(Bitmap src, String watermark, Point location, int color, int alpha, int size, boolean underline){
-        int w = src.getWidth();
-        int h = src.getHeight();
-        Bitmap output = Bitmap.createBitmap(w, h, src.getConfig());
-
-        Canvas canvas = new Canvas(output);
-        canvas.drawBitmap(src, 0, 0, null);
-
-        Paint paint = new Paint();
-        paint.setColor(color);
-        paint.setAlpha(alpha);
-        paint.setTextSize(size);
-        paint.setAntiAlias(true);
-        paint.setUnderlineText(underline);
-        canvas.drawText(watermark, location.x, location.y, paint);
-
-        return output;
+        return watermark(src, newOutput(src, src.getConfig()), watermark, location, color, alpha, size, underline);
+    }
 
+    /**
+     * Draws the text with its baseline starting at location. The text is rasterized
+     * once per text, size and underline setting and kept in a {@link TextSprite}, so
+     * stamping a batch of images only blends the box the text covers. With dst == src
+     * only that box is read and written back.
+     *
+     * @param alpha replaces the alpha of color, as Paint.setAlpha does; clamped to 0..255
+     */
+    public static Bitmap watermark(Bitmap src, Bitmap dst, String watermark, Point location, int color, int alpha, int size, boolean underline){
+        checkDestination(src, dst);
+        FilterTimer timer = FilterTimer.start(filterListener, "watermark");
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int textColor = (Math.max(0, Math.min(255, alpha)) << 24) | (color & 0x00FFFFFF);
+        try{
+            TextSprite sprite = TextSprite.of(watermark, size, underline);
+            int left = location.x + sprite.getLeft();
+            int top = location.y + sprite.getTop();
+            int x0 = 0, y0 = 0, x1 = width, y1 = height;
+            if(dst == src){
+                x0 = Math.max(0, left);
+                y0 = Math.max(0, top);
+                x1 = Math.min(width, left + sprite.getWidth());
+                y1 = Math.min(height, top + sprite.getHeight());
+            }
+            if(x0 < x1 && y0 < y1){
+                PixelBufferPool pool = PixelBufferPool.getDefault();
+                IntRaster pixels = pool.acquireRaster(x1 - x0, y1 - y0);
+                try{
+                    BitmapRasters.read(src, x0, y0, pixels);
+                    sprite.draw(pixels, location.x - x0, location.y - y0, textColor, getExecutor());
+                    BitmapRasters.write(pixels, dst, x0, y0);
+                }finally{
+                    pool.release(pixels);
+                }
+            }
+        }finally{
+            finish(timer, width, height);
+        }
+        return dst;
     }
 
+    /**
+     * @param type 1 to flip vertically, 2 horizontally
+     * @return the flipped image, null for an unknown type
+     */
     public static Bitmap flip(Bitmap src, int type) {
-        // create new matrix for transformation
-        Matrix matrix = new Matrix();
-        // if vertical
         if(type == FLIP_VERTICAL) {
-            // y = y * -1
-            matrix.preScale(1.0f, -1.0f);
+            return orient(src, Transforms.ORIENTATION_FLIP_VERTICAL, "flip");
+        }else if(type == FLIP_HORIZONTAL) {
+            return orient(src, Transforms.ORIENTATION_FLIP_HORIZONTAL, "flip");
         }
-        // if horizonal
-        else if(type == FLIP_HORIZONTAL) {
-            // x = x * -1
-            matrix.preScale(-1.0f, 1.0f);
-            // unknown type
-        } else {
-            return null;
-        }
-
-        // return transformed image
-        return Bitmap.createBitmap(src, 0, 0, src.getWidth(), src.getHeight(), matrix, true);
+        return null;
     }
 
     public static Bitmap applyHueFilter(Bitmap source, int level) {
-        // get image size
-        int width = source.getWidth();
-        int height = source.getHeight();
-        int[] pixels = new int[width * height];
-        float[] HSV = new float[3];
-        // get pixel array from source
-        source.getPixels(pixels, 0, width, 0, 0, width, height);
-
-        int index = 0;
-        // iteration through pixels
-        for(int y = 0; y < height; ++y) {
-            for(int x = 0; x < width; ++x) {
-                // get current index in 2D-matrix
-                index = y * width + x;
-                // convert to HSV
-                Color.colorToHSV(pixels[index], HSV);
-                // increase Saturation level
-                HSV[0] *= level;
-                HSV[0] = (float) Math.max(0.0, Math.min(HSV[0], 360.0));
-                // take color back
-                pixels[index] |= Color.HSVToColor(HSV);
-            }
-        }
-        // output bitmap
-        Bitmap bmOut = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        bmOut.setPixels(pixels, 0, width, 0, 0, width, height);
-        return bmOut;
+        return applyHueFilter(source, newOutput(source, Bitmap.Config.ARGB_8888), level);
+    }
+
+    public static Bitmap applyHueFilter(Bitmap source, Bitmap dst, int level) {
+        return filter(source, dst, HsvOps.hue(level), "applyHueFilter", "applyHueFilter(" + level + ")");
     }
 
     public static Bitmap applySaturationFilter(Bitmap source, int level) {
-        // get image size
-        int width = source.getWidth();
-        int height = source.getHeight();
-        int[] pixels = new int[width * height];
-        float[] HSV = new float[3];
-        // get pixel array from source
-        source.getPixels(pixels, 0, width, 0, 0, width, height);
-
-        int index = 0;
-        // iteration through pixels
-        for(int y = 0; y < height; ++y) {
-            for(int x = 0; x < width; ++x) {
-                // get current index in 2D-matrix
-                index = y * width + x;
-                // convert to HSV
-                Color.colorToHSV(pixels[index], HSV);
-                // increase Saturation level
-                HSV[1] *= level;
-                HSV[1] = (float) Math.max(0.0, Math.min(HSV[1], 1.0));
-                // take color back
-                pixels[index] |= Color.HSVToColor(HSV);
-            }
-        }
-        // output bitmap
-        Bitmap bmOut = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        bmOut.setPixels(pixels, 0, width, 0, 0, width, height);
-        return bmOut;
+        return applySaturationFilter(source, newOutput(source, Bitmap.Config.ARGB_8888), level);
+    }
+
+    public static Bitmap applySaturationFilter(Bitmap source, Bitmap dst, int level) {
+        return filter(source, dst, HsvOps.saturation(level), "applySaturationFilter", "applySaturationFilter(" + level + ")");
     }
 
     public static Bitmap applyShadingFilter(Bitmap source, int shadingColor) {
-        // get image size
-        int width = source.getWidth();
-        int height = source.getHeight();
-        int[] pixels = new int[width * height];
-        // get pixel array from source
-        source.getPixels(pixels, 0, width, 0, 0, width, height);
-
-        int index = 0;
-        // iteration through pixels
-        for(int y = 0; y < height; ++y) {
-            for(int x = 0; x < width; ++x) {
-                // get current index in 2D-matrix
-                index = y * width + x;
-                // AND
-                pixels[index] &= shadingColor;
-            }
+        return applyShadingFilter(source, newOutput(source, Bitmap.Config.ARGB_8888), shadingColor);
+    }
+
+    public static Bitmap applyShadingFilter(Bitmap source, Bitmap dst, int shadingColor) {
+        return filter(source, dst, PointOps.applyShadingFilter(shadingColor), "applyShadingFilter", "applyShadingFilter(" + shadingColor + ")");
+    }
+
+    /**
+     * Level histograms and statistics of the image, counted in one parallel pass.
+     */
+    public static Histogram histogram(Bitmap src){
+        FilterTimer timer = FilterTimer.start(filterListener, "histogram");
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster pixels = pool.acquireRaster(src.getWidth(), src.getHeight());
+        try{
+            BitmapRasters.read(src, pixels);
+            return Histogram.of(pixels, getExecutor());
+        }finally{
+            pool.release(pixels);
+            finish(timer, src.getWidth(), src.getHeight());
         }
-        // output bitmap
-        Bitmap bmOut = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        bmOut.setPixels(pixels, 0, width, 0, 0, width, height);
-        return bmOut;
     }
 
-    public static Bitmap applySnowEffect(Bitmap source) {
-        // get image size
-        int width = source.getWidth();
-        int height = source.getHeight();
-        int[] pixels = new int[width * height];
-        // get pixel array from source
-        source.getPixels(pixels, 0, width, 0, 0, width, height);
-        // random object
-        Random random = new Random();
-
-        int R, G, B, index = 0, thresHold = 50;
-        // iteration through pixels
-        for(int y = 0; y < height; ++y) {
-            for(int x = 0; x < width; ++x) {
-                // get current index in 2D-matrix
-                index = y * width + x;
-                // get color
-                R = Color.red(pixels[index]);
-                G = Color.green(pixels[index]);
-                B = Color.blue(pixels[index]);
-                // generate threshold
-                thresHold = random.nextInt(255);
-                if(R > thresHold && G > thresHold && B > thresHold) {
-                    pixels[index] = Color.rgb(COLOR_MAX, COLOR_MAX, COLOR_MAX);
-                }
+    /**
+     * Stretches each channel to the full range, see {@link HistogramOps#autoLevels}.
+     */
+    public static Bitmap autoLevels(Bitmap src){
+        return autoLevels(src, newOutput(src, src.getConfig()));
+    }
+
+    public static Bitmap autoLevels(Bitmap src, Bitmap dst){
+        return autoAdjust(src, dst, AUTO_LEVELS, "autoLevels");
+    }
+
+    /**
+     * Stretches all channels alike to the full range, see {@link HistogramOps#autoContrast}.
+     */
+    public static Bitmap autoContrast(Bitmap src){
+        return autoContrast(src, newOutput(src, src.getConfig()));
+    }
+
+    public static Bitmap autoContrast(Bitmap src, Bitmap dst){
+        return autoAdjust(src, dst, AUTO_CONTRAST, "autoContrast");
+    }
+
+    /**
+     * Equalizes the histogram of each channel, see {@link HistogramOps#equalize}.
+     */
+    public static Bitmap equalize(Bitmap src){
+        return equalize(src, newOutput(src, src.getConfig()));
+    }
+
+    public static Bitmap equalize(Bitmap src, Bitmap dst){
+        return autoAdjust(src, dst, EQUALIZE, "equalize");
+    }
+
+    /**
+     * Counts the histogram and applies the tables made from it to the same pixels,
+     * so the bitmap is read once.
+     */
+    private static Bitmap autoAdjust(Bitmap src, Bitmap dst, int kind, String name){
+        checkDestination(src, dst);
+        FilterTimer timer = FilterTimer.start(filterListener, name);
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster pixels = pool.acquireRaster(src.getWidth(), src.getHeight());
+        try{
+            BitmapRasters.read(src, pixels);
+            TileExecutor executor = getExecutor();
+            Histogram histogram = Histogram.of(pixels, executor);
+            PointOp op;
+            if(kind == AUTO_LEVELS){
+                op = HistogramOps.autoLevels(histogram, HistogramOps.DEFAULT_CLIP_PERCENT);
+            }else if(kind == AUTO_CONTRAST){
+                op = HistogramOps.autoContrast(histogram, HistogramOps.DEFAULT_CLIP_PERCENT);
+            }else{
+                op = HistogramOps.equalize(histogram);
             }
+            executor.apply(op, pixels, pixels);
+            BitmapRasters.write(pixels, dst);
+        }finally{
+            pool.release(pixels);
+            finish(timer, src.getWidth(), src.getHeight());
         }
-        // output bitmap
-        Bitmap bmOut = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
-        bmOut.setPixels(pixels, 0, width, 0, 0, width, height);
-        return bmOut;
+        return dst;
+    }
+
+    public static Bitmap applySnowEffect(Bitmap source) {
+        return applySnowEffect(source, newOutput(source, Bitmap.Config.RGB_565));
+    }
+
+    /**
+     * Same seed, same source, same snow: the result is reproducible and cacheable.
+     */
+    public static Bitmap applySnowEffect(Bitmap source, long seed) {
+        return applySnowEffect(source, newOutput(source, Bitmap.Config.RGB_565), seed);
+    }
+
+    public static Bitmap applySnowEffect(Bitmap source, Bitmap dst) {
+        // a fresh seed per call never repeats, so there is no point in caching it
+        return filter(source, dst, NoiseOps.snow(new Random().nextLong()), "applySnowEffect", null);
+    }
+
+    public static Bitmap applySnowEffect(Bitmap source, Bitmap dst, long seed) {
+        return filter(source, dst, NoiseOps.snow(seed), "applySnowEffect", "applySnowEffect(" + seed + ")");
     }
 
     public static Bitmap applyFleaEffect(Bitmap source) {
-        // get image size
-        int width = source.getWidth();
-        int height = source.getHeight();
-        int[] pixels = new int[width * height];
-        // get pixel array from source
-        source.getPixels(pixels, 0, width, 0, 0, width, height);
-        // a random object
-        Random random = new Random();
-
-        int index = 0;
-        // iteration through pixels
-        for(int y = 0; y < height; ++y) {
-            for(int x = 0; x < width; ++x) {
-                // get current index in 2D-matrix
-                index = y * width + x;
-                // get random color
-                int randColor = Color.rgb(random.nextInt(COLOR_MAX),
-                        random.nextInt(COLOR_MAX), random.nextInt(COLOR_MAX));
-                // OR
-                pixels[index] |= randColor;
-            }
-        }
-        // output bitmap
-        Bitmap bmOut = Bitmap.createBitmap(width, height, source.getConfig());
-        bmOut.setPixels(pixels, 0, width, 0, 0, width, height);
-        return bmOut;
+        return applyFleaEffect(source, newOutput(source, source.getConfig()));
+    }
+
+    /**
+     * Same seed, same source, same fleas: the result is reproducible and cacheable.
+     */
+    public static Bitmap applyFleaEffect(Bitmap source, long seed) {
+        return applyFleaEffect(source, newOutput(source, source.getConfig()), seed);
+    }
+
+    public static Bitmap applyFleaEffect(Bitmap source, Bitmap dst) {
+        return filter(source, dst, NoiseOps.flea(new Random().nextLong()), "applyFleaEffect", null);
+    }
+
+    public static Bitmap applyFleaEffect(Bitmap source, Bitmap dst, long seed) {
+        return filter(source, dst, NoiseOps.flea(seed), "applyFleaEffect", "applyFleaEffect(" + seed + ")");
     }
 
 
@@ -0,0 +1,78 @@
+package com.github.nahom.ip4a;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.github.nahom.ip4a.core.IncrementalRenderer;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.RasterOp;
+
+/**
+ * A filtered copy of a bitmap that is being edited, kept up to date stroke by
+ * stroke. After drawing into the source, pass the rectangle drawn over to
+ * {@link #invalidate(Rect)}; {@link #update()} then refilters only the tiles the
+ * filter's kernels reach from there and copies them into the output bitmap.
+ * <p>
+ * Use from one thread, typically the one that edits the source.
+ */
+public final class IncrementalFilter {
+
+    private final Bitmap src;
+    private final IntRaster source;
+    private final IncrementalRenderer renderer;
+    private final Bitmap output;
+    private final IncrementalRenderer.Listener copier = new IncrementalRenderer.Listener(){
+        @Override
+        public void onUpdated(int left, int top, int right, int bottom){
+            BitmapRasters.write(renderer.getOutput().subRaster(left, top, right - left, bottom - top), output, left, top);
+        }
+    };
+
+    /**
+     * Filters all of src once.
+     *
+     * @param ops run in order, for example a {@link com.github.nahom.ip4a.core.ConvolveOp}
+     *            of {@link com.github.nahom.ip4a.core.Kernels#sharpen(double)}
+     */
+    public IncrementalFilter(Bitmap src, RasterOp... ops){
+        this.src = src;
+        this.source = BitmapRasters.read(src);
+        this.renderer = new IncrementalRenderer(source, IP4A.getExecutor(), IncrementalRenderer.DEFAULT_TILE_SIZE, ops);
+        this.output = Bitmap.createBitmap(src.getWidth(), src.getHeight(), src.getConfig());
+        update();
+    }
+
+    /**
+     * Rereads the rectangle of the source that was drawn over and marks what it affects.
+     */
+    public void invalidate(Rect dirty){
+        int left = Math.max(0, dirty.left);
+        int top = Math.max(0, dirty.top);
+        int right = Math.min(src.getWidth(), dirty.right);
+        int bottom = Math.min(src.getHeight(), dirty.bottom);
+        if(left >= right || top >= bottom){
+            return;
+        }
+        BitmapRasters.read(src, left, top, source.subRaster(left, top, right - left, bottom - top));
+        renderer.invalidate(left, top, right, bottom);
+    }
+
+    public void invalidateAll(){
+        BitmapRasters.read(src, source);
+        renderer.invalidateAll();
+    }
+
+    /**
+     * Refilters what was invalidated since the last update.
+     *
+     * @return the output bitmap, the same instance every time
+     */
+    public Bitmap update(){
+        renderer.update(copier);
+        return output;
+    }
+
+    public Bitmap getOutput(){
+        return output;
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.nahom.ip4a;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.nahom.ip4a.core.HsvOps;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.Kernels;
+import com.github.nahom.ip4a.core.PointOps;
+import com.github.nahom.ip4a.core.ProgressiveRenderer;
+
+/**
+ * Live preview of a filter while its parameters change, for example while a
+ * slider is dragged. Each call first delivers the filter applied to a small proxy
+ * of the source, then sharper versions up to full resolution. Calling again
+ * before the full result is ready drops the rest of the older request.
+ * <p>
+ * The source pixels are read once when the preview is created. Callbacks run on
+ * the main thread, and only for the latest request.
+ */
+public final class ProgressivePreview {
+
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(new ThreadFactory(){
+        @Override
+        public Thread newThread(Runnable task){
+            Thread thread = new Thread(task, "IP4A-preview");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public interface Callback {
+        /**
+         * @param preview the filtered image at this quality level, smaller than the source until last
+         * @param last    true for the full resolution result
+         */
+        void onPreview(Bitmap preview, boolean last);
+    }
+
+    private final ProgressiveRenderer renderer;
+    private final Bitmap.Config config;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final AtomicLong requests = new AtomicLong();
+
+    public ProgressivePreview(Bitmap src){
+        this(src, WORKER);
+    }
+
+    /**
+     * @param background runs the finer levels
+     */
+    public ProgressivePreview(Bitmap src, Executor background){
+        this.renderer = new ProgressiveRenderer(BitmapRasters.read(src), background, IP4A.getExecutor(),
+                ProgressiveRenderer.DEFAULT_PREVIEW_SIZE);
+        this.config = src.getConfig();
+    }
+
+    public void createContrast(double value, Callback callback){
+        render(ProgressiveRenderer.fixed(PointOps.createContrast(value)), callback);
+    }
+
+    public void doBrightness(int value, Callback callback){
+        render(ProgressiveRenderer.fixed(PointOps.doBrightness(value)), callback);
+    }
+
+    public void applyHueFilter(int level, Callback callback){
+        render(ProgressiveRenderer.fixed(HsvOps.hue(level)), callback);
+    }
+
+    public void applySaturationFilter(int level, Callback callback){
+        render(ProgressiveRenderer.fixed(HsvOps.saturation(level)), callback);
+    }
+
+    public void smooth(double value, Callback callback){
+        render(ProgressiveRenderer.convolution(Kernels.smooth(value), IP4A.getConvolutionBorder()), callback);
+    }
+
+    public void sharpen(double weight, Callback callback){
+        render(ProgressiveRenderer.convolution(Kernels.sharpen(weight), IP4A.getConvolutionBorder()), callback);
+    }
+
+    public void applyGaussianBlur(Callback callback){
+        render(ProgressiveRenderer.convolution(Kernels.gaussianBlur(), IP4A.getConvolutionBorder()), callback);
+    }
+
+    public void render(ProgressiveRenderer.OpFactory filter, final Callback callback){
+        final long request = requests.incrementAndGet();
+        renderer.render(filter, new ProgressiveRenderer.Listener(){
+            @Override
+            public void onRendered(IntRaster image, int level, double scale, final boolean last){
+                final Bitmap preview = BitmapRasters.toBitmap(image, config);
+                handler.post(new Runnable(){
+                    @Override
+                    public void run(){
+                        if(requests.get() == request){
+                            callback.onPreview(preview, last);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops the request in progress; no more callbacks are made for it.
+     */
+    public void cancel(){
+        requests.incrementAndGet();
+        renderer.cancel();
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.nahom.ip4a;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.io.IOException;
+
+import com.github.nahom.ip4a.stream.RowSource;
+
+/**
+ * Decodes a JPEG or PNG a strip at a time with a BitmapRegionDecoder, so images
+ * larger than the heap can be fed to a StripProcessor. Strips of the same height
+ * are decoded into the same Bitmap. The decoder is not recycled.
+ */
+public final class RegionDecoderRowSource implements RowSource {
+
+    private final BitmapRegionDecoder decoder;
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private final Rect region = new Rect();
+    private int next;
+
+    public RegionDecoderRowSource(BitmapRegionDecoder decoder){
+        this.decoder = decoder;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+    }
+
+    @Override
+    public int getWidth(){
+        return decoder.getWidth();
+    }
+
+    @Override
+    public int getHeight(){
+        return decoder.getHeight();
+    }
+
+    @Override
+    public void readRows(int[] pixels, int offset, int stride, int count) throws IOException {
+        if(count == 0){
+            return;
+        }
+        int width = getWidth();
+        Bitmap reuse = options.inBitmap;
+        if(reuse != null && reuse.getHeight() != count){
+            reuse.recycle();
+            options.inBitmap = null;
+        }
+        region.set(0, next, width, next + count);
+        Bitmap strip = decoder.decodeRegion(region, options);
+        if(strip == null){
+            throw new IOException("could not decode rows " + next + ".." + (next + count));
+        }
+        strip.getPixels(pixels, offset, stride, 0, 0, width, count);
+        options.inBitmap = strip;
+        next += count;
+        if(next == getHeight()){
+            strip.recycle();
+            options.inBitmap = null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.nahom.ip4a;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.github.nahom.ip4a.core.AlphaBlend;
+import com.github.nahom.ip4a.core.ByteRaster;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.TileExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A string rasterized once into an 8 bit coverage mask, trimmed to the pixels the
+ * text covers, so stamping it on an image only blends that box. The mask does not
+ * depend on the color, so one sprite serves every color and opacity.
+ * Recently used sprites are kept by {@link #of}.
+ */
+public final class TextSprite {
+
+    private static final int CACHE_SIZE = 32;
+
+    private static final Map<String, TextSprite> cache = new LinkedHashMap<String, TextSprite>(16, 0.75f, true){
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TextSprite> eldest){
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final ByteRaster coverage;
+    private final int left;
+    private final int top;
+
+    private TextSprite(ByteRaster coverage, int left, int top){
+        this.coverage = coverage;
+        this.left = left;
+        this.top = top;
+    }
+
+    /**
+     * @return the sprite for the text as Canvas.drawText would draw it with an
+     *         antialiased Paint of that text size and underline setting
+     */
+    public static TextSprite of(String text, int size, boolean underline){
+        String key = size + (underline ? "u:" : ":") + text;
+        synchronized(cache){
+            TextSprite sprite = cache.get(key);
+            if(sprite != null){
+                return sprite;
+            }
+        }
+        TextSprite sprite = rasterize(text, size, underline);
+        synchronized(cache){
+            cache.put(key, sprite);
+        }
+        return sprite;
+    }
+
+    private static TextSprite rasterize(String text, int size, boolean underline){
+        Paint paint = new Paint();
+        paint.setColor(0xFFFFFFFF);
+        paint.setTextSize(size);
+        paint.setAntiAlias(true);
+        paint.setUnderlineText(underline);
+        Paint.FontMetricsInt metrics = paint.getFontMetricsInt();
+        // room for glyphs that reach past their advance and for antialiasing
+        int pad = Math.max(2, size / 4);
+        int width = Math.max(1, (int) Math.ceil(paint.measureText(text)) + 2 * pad);
+        int height = Math.max(1, metrics.bottom - metrics.top + 2 * pad);
+        int baseline = pad - metrics.top;
+        Bitmap mask = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        ByteRaster coverage = new ByteRaster(width, height);
+        try{
+            new Canvas(mask).drawText(text, pad, baseline, paint);
+            BitmapRasters.read(mask, coverage);
+        }finally{
+            mask.recycle();
+        }
+        return trim(coverage, -pad, -baseline);
+    }
+
+    private static TextSprite trim(ByteRaster coverage, int left, int top){
+        int x0 = coverage.getWidth(), y0 = coverage.getHeight(), x1 = 0, y1 = 0;
+        for(int y = 0; y < coverage.getHeight(); ++y){
+            for(int x = 0; x < coverage.getWidth(); ++x){
+                if(coverage.getSample(x, y) != 0){
+                    x0 = Math.min(x0, x);
+                    y0 = Math.min(y0, y);
+                    x1 = Math.max(x1, x + 1);
+                    y1 = Math.max(y1, y + 1);
+                }
+            }
+        }
+        if(x0 >= x1){
+            return new TextSprite(new ByteRaster(0, 0), 0, 0);
+        }
+        return new TextSprite(coverage.subRaster(x0, y0, x1 - x0, y1 - y0).copy(), left + x0, top + y0);
+    }
+
+    public ByteRaster getCoverage(){
+        return coverage;
+    }
+
+    /**
+     * @return where the mask's left edge sits relative to the x the text is drawn at
+     */
+    public int getLeft(){
+        return left;
+    }
+
+    /**
+     * @return where the mask's top edge sits relative to the baseline
+     */
+    public int getTop(){
+        return top;
+    }
+
+    public int getWidth(){
+        return coverage.getWidth();
+    }
+
+    public int getHeight(){
+        return coverage.getHeight();
+    }
+
+    /**
+     * Blends the text in the given color into pixels, with its baseline starting at (x, y).
+     */
+    public void draw(IntRaster pixels, int x, int y, int argb, TileExecutor executor){
+        AlphaBlend.fill(pixels, coverage, x + left, y + top, argb, executor);
+    }
+
+    public static void clearCache(){
+        synchronized(cache){
+            cache.clear();
+        }
+    }
+}
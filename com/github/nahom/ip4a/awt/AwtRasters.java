@@ -0,0 +1,183 @@
+package com.github.nahom.ip4a.awt;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.DirectColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+import com.github.nahom.ip4a.core.ByteRaster;
+import com.github.nahom.ip4a.core.GrayOps;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.Rgb565;
+import com.github.nahom.ip4a.core.ShortRaster;
+
+/**
+ * Adapts java.awt BufferedImages to {@link IntRaster}s so the filter core can run
+ * on a desktop or server JVM. Images of TYPE_INT_ARGB are shared, not copied, and
+ * so are TYPE_BYTE_GRAY and TYPE_USHORT_565_RGB images as {@link ByteRaster}s and
+ * {@link ShortRaster}s.
+ */
+public final class AwtRasters {
+
+    private static final int[] ARGB_MASKS = {0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000};
+    private static final int[] RGB_565_MASKS = {0xF800, 0x07E0, 0x001F};
+
+    private AwtRasters(){
+    }
+
+    /**
+     * @return true if {@link #wrap(BufferedImage)} shares the image's pixel array
+     */
+    public static boolean canWrap(BufferedImage image){
+        return image.getType() == BufferedImage.TYPE_INT_ARGB
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel;
+    }
+
+    /**
+     * Returns a raster over the image's pixels. Writes to the raster show up in the
+     * image when it can be wrapped, otherwise the raster is a converted copy.
+     */
+    public static IntRaster wrap(BufferedImage image){
+        if(!canWrap(image)){
+            return read(image);
+        }
+        WritableRaster raster = image.getRaster();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int offset = buffer.getOffset()
+                + model.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        return new IntRaster(buffer.getData(), offset, model.getScanlineStride(),
+                image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Copies any BufferedImage into a new raster, converting to ARGB.
+     */
+    public static IntRaster read(BufferedImage image){
+        int width = image.getWidth();
+        int height = image.getHeight();
+        IntRaster raster = new IntRaster(width, height);
+        image.getRGB(0, 0, width, height, raster.getPixels(), 0, width);
+        return raster;
+    }
+
+    /**
+     * Returns a TYPE_INT_ARGB image backed by the raster's own pixel array.
+     */
+    public static BufferedImage toImage(IntRaster raster){
+        int stride = Math.max(1, raster.getStride());
+        int x = raster.getOffset() % stride;
+        int y = raster.getOffset() / stride;
+        if(x + raster.getWidth() > stride){
+            // the rows wrap around the stride, only a compact copy can be described
+            return toImage(raster.copy());
+        }
+        DataBufferInt buffer = new DataBufferInt(raster.getPixels(), raster.getPixels().length);
+        SinglePixelPackedSampleModel model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT,
+                x + raster.getWidth(), y + raster.getHeight(), stride, ARGB_MASKS);
+        WritableRaster writable = Raster.createWritableRaster(model, buffer, null);
+        if(x != 0 || y != 0){
+            writable = writable.createWritableChild(x, y, raster.getWidth(), raster.getHeight(), 0, 0, null);
+        }
+        DirectColorModel colors = new DirectColorModel(32,
+                ARGB_MASKS[0], ARGB_MASKS[1], ARGB_MASKS[2], ARGB_MASKS[3]);
+        return new BufferedImage(colors, writable, false, null);
+    }
+
+    /**
+     * Returns a gray raster over a TYPE_BYTE_GRAY image's bytes, or the gray levels
+     * of any other image as a copy.
+     */
+    public static ByteRaster wrapGray(BufferedImage image){
+        WritableRaster raster = image.getRaster();
+        if(image.getType() != BufferedImage.TYPE_BYTE_GRAY
+                || !(raster.getDataBuffer() instanceof DataBufferByte)
+                || !(raster.getSampleModel() instanceof PixelInterleavedSampleModel)){
+            IntRaster argb = read(image);
+            ByteRaster gray = new ByteRaster(argb.getWidth(), argb.getHeight());
+            GrayOps.toGray(argb, gray);
+            return gray;
+        }
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) raster.getSampleModel();
+        int offset = buffer.getOffset()
+                + model.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        return new ByteRaster(buffer.getData(), offset, model.getScanlineStride(),
+                image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Returns an RGB 565 raster over a TYPE_USHORT_565_RGB image's pixels, or a
+     * converted copy of any other image.
+     */
+    public static ShortRaster wrap565(BufferedImage image){
+        WritableRaster raster = image.getRaster();
+        if(image.getType() != BufferedImage.TYPE_USHORT_565_RGB
+                || !(raster.getDataBuffer() instanceof DataBufferUShort)
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)){
+            IntRaster argb = read(image);
+            ShortRaster colors = new ShortRaster(argb.getWidth(), argb.getHeight());
+            Rgb565.fromArgb(argb, colors);
+            return colors;
+        }
+        DataBufferUShort buffer = (DataBufferUShort) raster.getDataBuffer();
+        SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int offset = buffer.getOffset()
+                + model.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        return new ShortRaster(buffer.getData(), offset, model.getScanlineStride(),
+                image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Returns an 8 bit gray image backed by the raster's own bytes.
+     */
+    public static BufferedImage toImage(ByteRaster raster){
+        int stride = Math.max(1, raster.getStride());
+        int x = raster.getOffset() % stride;
+        int y = raster.getOffset() / stride;
+        if(x + raster.getWidth() > stride){
+            return toImage(raster.copy());
+        }
+        DataBufferByte buffer = new DataBufferByte(raster.getPixels(), raster.getPixels().length);
+        PixelInterleavedSampleModel model = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+                x + raster.getWidth(), y + raster.getHeight(), 1, stride, new int[]{0});
+        WritableRaster writable = Raster.createWritableRaster(model, buffer, null);
+        if(x != 0 || y != 0){
+            writable = writable.createWritableChild(x, y, raster.getWidth(), raster.getHeight(), 0, 0, null);
+        }
+        ComponentColorModel colors = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        return new BufferedImage(colors, writable, false, null);
+    }
+
+    /**
+     * Returns an RGB 565 image backed by the raster's own pixels.
+     */
+    public static BufferedImage toImage(ShortRaster raster){
+        int stride = Math.max(1, raster.getStride());
+        int x = raster.getOffset() % stride;
+        int y = raster.getOffset() / stride;
+        if(x + raster.getWidth() > stride){
+            return toImage(raster.copy());
+        }
+        DataBufferUShort buffer = new DataBufferUShort(raster.getPixels(), raster.getPixels().length);
+        SinglePixelPackedSampleModel model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_USHORT,
+                x + raster.getWidth(), y + raster.getHeight(), stride, RGB_565_MASKS);
+        WritableRaster writable = Raster.createWritableRaster(model, buffer, null);
+        if(x != 0 || y != 0){
+            writable = writable.createWritableChild(x, y, raster.getWidth(), raster.getHeight(), 0, 0, null);
+        }
+        DirectColorModel colors = new DirectColorModel(16, RGB_565_MASKS[0], RGB_565_MASKS[1], RGB_565_MASKS[2]);
+        return new BufferedImage(colors, writable, false, null);
+    }
+}
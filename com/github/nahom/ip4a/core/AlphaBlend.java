@@ -0,0 +1,93 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Source-over compositing of unpremultiplied ARGB pixels, as Bitmap.getPixels
+ * hands them out.
+ */
+public final class AlphaBlend {
+
+    private AlphaBlend(){
+    }
+
+    /**
+     * Composites top over bottom.
+     */
+    public static int over(int top, int bottom){
+        int topAlpha = top >>> 24;
+        if(topAlpha == 255){
+            return top;
+        }
+        if(bottom >>> 24 == 255){
+            return lerp(bottom, top, topAlpha);
+        }
+        // bottom's weight and the total alpha, both scaled by 255 * 255
+        int bottomWeight = (bottom >>> 24) * (255 - topAlpha);
+        int total = topAlpha * 255 + bottomWeight;
+        if(total == 0){
+            return 0;
+        }
+        int topWeight = topAlpha * 255;
+        int r = (((top >> 16) & 0xFF) * topWeight + ((bottom >> 16) & 0xFF) * bottomWeight + total / 2) / total;
+        int g = (((top >> 8) & 0xFF) * topWeight + ((bottom >> 8) & 0xFF) * bottomWeight + total / 2) / total;
+        int b = ((top & 0xFF) * topWeight + (bottom & 0xFF) * bottomWeight + total / 2) / total;
+        return (((total + 127) / 255) << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Over an opaque pixel the result stays opaque and each channel simply moves
+     * alpha / 255 of the way to the color.
+     */
+    private static int lerp(int opaque, int color, int alpha){
+        int keep = 255 - alpha;
+        int r = div255(((color >> 16) & 0xFF) * alpha + ((opaque >> 16) & 0xFF) * keep);
+        int g = div255(((color >> 8) & 0xFF) * alpha + ((opaque >> 8) & 0xFF) * keep);
+        int b = div255((color & 0xFF) * alpha + (opaque & 0xFF) * keep);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * @return value / 255 rounded, exact for 0..255 * 255
+     */
+    private static int div255(int value){
+        int t = value + 128;
+        return (t + (t >> 8)) >> 8;
+    }
+
+    /**
+     * Paints a solid color through an 8 bit coverage mask, such as rasterized text,
+     * whose top left corner sits at (left, top) in dst. The color's alpha scales the
+     * coverage. Only the part of the mask inside dst is touched, and its rows are
+     * split over the executor.
+     */
+    public static void fill(final IntRaster dst, final ByteRaster coverage, final int left, final int top,
+                            final int argb, TileExecutor executor){
+        final int x0 = Math.max(0, left);
+        final int x1 = Math.min(dst.getWidth(), left + coverage.getWidth());
+        int y0 = Math.max(0, top);
+        int y1 = Math.min(dst.getHeight(), top + coverage.getHeight());
+        final int alpha = argb >>> 24;
+        if(x0 >= x1 || y0 >= y1 || alpha == 0){
+            return;
+        }
+        executor.run(new TileExecutor.RowTask(){
+            @Override
+            public void run(int from, int to){
+                int[] out = dst.getPixels();
+                byte[] mask = coverage.getPixels();
+                int color = argb & 0x00FFFFFF;
+                for(int y = from; y < to; ++y){
+                    int outPos = dst.index(x0, y);
+                    int maskPos = coverage.index(x0 - left, y - top);
+                    for(int x = x0; x < x1; ++x, ++outPos, ++maskPos){
+                        int cover = mask[maskPos] & 0xFF;
+                        if(cover == 0){
+                            continue;
+                        }
+                        int a = div255(cover * alpha);
+                        out[outPos] = over((a << 24) | color, out[outPos]);
+                    }
+                }
+            }
+        }, x1 - x0, y0, y1);
+    }
+}
@@ -0,0 +1,512 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs one filter recipe over many images as a three stage pipeline: decode,
+ * filter, encode.
+ * <p>
+ * The stages are connected by bounded queues. A stage that gets ahead blocks when
+ * the next queue is full, so at most about 2 * queueCapacity decoded images plus one
+ * per worker are in memory, however many items there are. Decoding and encoding
+ * usually wait on I/O and run on many threads from a configurable ThreadFactory; on
+ * JDK 21 pass {@code Thread.ofVirtual().factory()} to use virtual threads. Filtering
+ * runs on a fixed set of platform threads, one image per thread, with each image
+ * filtered serially.
+ * <p>
+ * A failing item is reported to the {@link Listener} and skipped; the batch goes on.
+ * If a stage dies instead, from an Error or an interrupt, every thread is interrupted,
+ * the images still queued go back to the pool and process rethrows the Error.
+ * {@link Stats} reports per-stage busy and waiting time for sizing the queues and thread counts.
+ *
+ * @param <T> whatever identifies an image to the decoder and encoder, a file for example
+ */
+public final class BatchProcessor<T> {
+
+    public interface Decoder<T> {
+        /**
+         * @return a raster the pipeline takes over; it is filtered in place and may end up in the pixel pool
+         */
+        IntRaster decode(T item) throws Exception;
+    }
+
+    public interface Encoder<T> {
+        /**
+         * Stores the filtered image. The raster goes back to the pixel pool afterwards
+         * and must not be kept.
+         */
+        void encode(T item, IntRaster result) throws Exception;
+    }
+
+    public interface Listener<T> {
+        void onFailure(T item, Stage stage, Exception e);
+    }
+
+    public enum Stage {
+        DECODE, FILTER, ENCODE
+    }
+
+    private static final Object END = new Object();
+
+    private final Decoder<? super T> decoder;
+    private final Encoder<? super T> encoder;
+    private final RasterOp[] ops;
+    private int queueCapacity = 16;
+    private int decodeThreads = 4;
+    private int filterThreads = Runtime.getRuntime().availableProcessors();
+    private int encodeThreads = 4;
+    private ThreadFactory ioThreadFactory = Executors.defaultThreadFactory();
+    private Listener<? super T> listener;
+
+    public BatchProcessor(Decoder<? super T> decoder, Encoder<? super T> encoder, RasterOp... ops){
+        this.decoder = decoder;
+        this.encoder = encoder;
+        this.ops = ops.clone();
+    }
+
+    public BatchProcessor<T> setQueueCapacity(int capacity){
+        this.queueCapacity = checkPositive(capacity, "queue capacity");
+        return this;
+    }
+
+    public BatchProcessor<T> setDecodeThreads(int threads){
+        this.decodeThreads = checkPositive(threads, "decode threads");
+        return this;
+    }
+
+    public BatchProcessor<T> setFilterThreads(int threads){
+        this.filterThreads = checkPositive(threads, "filter threads");
+        return this;
+    }
+
+    public BatchProcessor<T> setEncodeThreads(int threads){
+        this.encodeThreads = checkPositive(threads, "encode threads");
+        return this;
+    }
+
+    /**
+     * @param factory creates the decode and encode threads
+     */
+    public BatchProcessor<T> setIoThreadFactory(ThreadFactory factory){
+        this.ioThreadFactory = factory;
+        return this;
+    }
+
+    public BatchProcessor<T> setListener(Listener<? super T> listener){
+        this.listener = listener;
+        return this;
+    }
+
+    private static int checkPositive(int value, String name){
+        if(value < 1){
+            throw new IllegalArgumentException(name + " must be positive, got " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Processes every item and returns once the last one is encoded or has failed.
+     * items is read from the decode threads, one item at a time.
+     */
+    public Stats process(final Iterator<? extends T> items) throws InterruptedException {
+        final Stats stats = new Stats(decodeThreads, filterThreads, encodeThreads);
+        final BlockingQueue<Object> decoded = new ArrayBlockingQueue<Object>(queueCapacity);
+        final BlockingQueue<Object> filtered = new ArrayBlockingQueue<Object>(queueCapacity);
+        final AtomicInteger decodersLeft = new AtomicInteger(decodeThreads);
+        final AtomicInteger filtersLeft = new AtomicInteger(filterThreads);
+        final PixelBufferPool pool = PixelBufferPool.getDefault();
+        final Pipeline pipeline = new Pipeline(pool, decoded, filtered);
+        List<Thread> threads = pipeline.threads;
+
+        for(int i = 0; i < decodeThreads; ++i){
+            threads.add(ioThreadFactory.newThread(new Worker(pipeline, stats.decode){
+                @Override
+                void work() throws InterruptedException {
+                    try{
+                        while(true){
+                            T item;
+                            synchronized(items){
+                                if(!items.hasNext()){
+                                    break;
+                                }
+                                item = items.next();
+                            }
+                            long start = System.nanoTime();
+                            IntRaster raster;
+                            try{
+                                raster = decoder.decode(item);
+                            }catch(Exception e){
+                                fail(stats.decode, item, Stage.DECODE, e);
+                                continue;
+                            }
+                            stage.busy(start);
+                            put(decoded, new Job<T>(item, raster));
+                        }
+                    }finally{
+                        if(decodersLeft.decrementAndGet() == 0 && !pipeline.aborted){
+                            endAll(decoded, filterThreads);
+                        }
+                    }
+                }
+            }));
+        }
+        for(int i = 0; i < filterThreads; ++i){
+            threads.add(Executors.defaultThreadFactory().newThread(new Worker(pipeline, stats.filter){
+                @Override
+                void work() throws InterruptedException {
+                    try{
+                        Object next;
+                        while((next = take(decoded)) != END){
+                            @SuppressWarnings("unchecked")
+                            Job<T> job = (Job<T>) next;
+                            long start = System.nanoTime();
+                            try{
+                                filter(job, pool);
+                            }catch(RuntimeException e){
+                                pool.release(job.raster);
+                                fail(stats.filter, job.item, Stage.FILTER, e);
+                                continue;
+                            }
+                            stage.busy(start);
+                            put(filtered, job);
+                        }
+                    }finally{
+                        if(filtersLeft.decrementAndGet() == 0 && !pipeline.aborted){
+                            endAll(filtered, encodeThreads);
+                        }
+                    }
+                }
+            }));
+        }
+        for(int i = 0; i < encodeThreads; ++i){
+            threads.add(ioThreadFactory.newThread(new Worker(pipeline, stats.encode){
+                @Override
+                void work() throws InterruptedException {
+                    Object next;
+                    while((next = take(filtered)) != END){
+                        @SuppressWarnings("unchecked")
+                        Job<T> job = (Job<T>) next;
+                        long start = System.nanoTime();
+                        try{
+                            encoder.encode(job.item, job.raster);
+                            stage.busy(start);
+                        }catch(Exception e){
+                            fail(stats.encode, job.item, Stage.ENCODE, e);
+                        }finally{
+                            pool.release(job.raster);
+                        }
+                    }
+                }
+            }));
+        }
+
+        stats.start = System.nanoTime();
+        for(Thread thread : threads){
+            thread.start();
+        }
+        try{
+            for(Thread thread : threads){
+                thread.join();
+            }
+        }catch(InterruptedException e){
+            pipeline.abort(null);
+            throw e;
+        }finally{
+            stats.end = System.nanoTime();
+        }
+        Throwable failure = pipeline.failure;
+        if(failure instanceof Error){
+            throw (Error) failure;
+        }
+        if(failure instanceof RuntimeException){
+            throw (RuntimeException) failure;
+        }
+        return stats;
+    }
+
+    /**
+     * Runs the ops over the job's raster. The job always holds the raster the pool
+     * gets back, also when an op throws.
+     */
+    private void filter(Job<T> job, PixelBufferPool pool){
+        TileExecutor serial = TileExecutor.serial();
+        for(RasterOp op : ops){
+            IntRaster raster = job.raster;
+            if(op.getRadius() == 0){
+                serial.apply(op, raster, raster);
+                continue;
+            }
+            IntRaster output = pool.acquireRaster(raster.getWidth(), raster.getHeight());
+            try{
+                serial.apply(op, raster, output);
+            }catch(RuntimeException e){
+                pool.release(output);
+                throw e;
+            }
+            pool.release(raster);
+            job.raster = output;
+        }
+    }
+
+    private void fail(StageStats stage, T item, Stage name, Exception e){
+        stage.failed.incrementAndGet();
+        Listener<? super T> current = listener;
+        if(current != null){
+            current.onFailure(item, name, e);
+        }
+    }
+
+    private static void endAll(BlockingQueue<Object> queue, int consumers) throws InterruptedException {
+        for(int i = 0; i < consumers; ++i){
+            queue.put(END);
+        }
+    }
+
+    private static final class Job<T> {
+        final T item;
+        IntRaster raster;
+
+        Job(T item, IntRaster raster){
+            this.item = item;
+            this.raster = raster;
+        }
+    }
+
+    /**
+     * What the threads of one call share to stop together.
+     */
+    private static final class Pipeline {
+        final List<Thread> threads = new ArrayList<Thread>();
+        final PixelBufferPool pool;
+        final BlockingQueue<Object> decoded;
+        final BlockingQueue<Object> filtered;
+        final AtomicInteger running = new AtomicInteger();
+        volatile boolean aborted;
+        volatile Throwable failure;
+
+        Pipeline(PixelBufferPool pool, BlockingQueue<Object> decoded, BlockingQueue<Object> filtered){
+            this.pool = pool;
+            this.decoded = decoded;
+            this.filtered = filtered;
+        }
+
+        /**
+         * Stops every stage: blocked puts and takes end with an interrupt and no
+         * end-of-stream markers are sent.
+         *
+         * @param cause the Error or unchecked exception that killed a stage, null for an interrupt
+         */
+        synchronized void abort(Throwable cause){
+            if(cause != null && failure == null){
+                failure = cause;
+            }
+            if(aborted){
+                return;
+            }
+            aborted = true;
+            for(Thread thread : threads){
+                if(thread != Thread.currentThread()){
+                    thread.interrupt();
+                }
+            }
+        }
+
+        /**
+         * Called by each thread as it ends; the last one returns whatever is still
+         * queued to the pool.
+         */
+        void exited(){
+            if(running.decrementAndGet() == 0){
+                drain(decoded);
+                drain(filtered);
+            }
+        }
+
+        private void drain(BlockingQueue<Object> queue){
+            Object next;
+            while((next = queue.poll()) != null){
+                if(next instanceof Job){
+                    pool.release(((Job<?>) next).raster);
+                }
+            }
+        }
+    }
+
+    private abstract static class Worker implements Runnable {
+        final Pipeline pipeline;
+        final StageStats stage;
+
+        Worker(Pipeline pipeline, StageStats stage){
+            this.pipeline = pipeline;
+            this.stage = stage;
+            pipeline.running.incrementAndGet();
+        }
+
+        @Override
+        public void run(){
+            try{
+                work();
+            }catch(InterruptedException e){
+                pipeline.abort(null);
+                Thread.currentThread().interrupt();
+            }catch(RuntimeException e){
+                pipeline.abort(e);
+            }catch(Error e){
+                pipeline.abort(e);
+            }finally{
+                pipeline.exited();
+            }
+        }
+
+        abstract void work() throws InterruptedException;
+
+        /**
+         * Stops a thread whose interrupt was swallowed, by a decoder's I/O for example.
+         */
+        void checkAborted() throws InterruptedException {
+            if(pipeline.aborted){
+                throw new InterruptedException("batch aborted");
+            }
+        }
+
+        /**
+         * Hands a job to the next stage, or returns its raster to the pool if the
+         * pipeline stops meanwhile.
+         */
+        void put(BlockingQueue<Object> queue, Job<?> job) throws InterruptedException {
+            long start = System.nanoTime();
+            try{
+                checkAborted();
+                queue.put(job);
+            }catch(InterruptedException e){
+                pipeline.pool.release(job.raster);
+                throw e;
+            }
+            stage.blockedNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        Object take(BlockingQueue<Object> queue) throws InterruptedException {
+            checkAborted();
+            long start = System.nanoTime();
+            Object job = queue.take();
+            stage.starvedNanos.addAndGet(System.nanoTime() - start);
+            return job;
+        }
+    }
+
+    /**
+     * Counters of one stage, summed over its threads.
+     */
+    public static final class StageStats {
+        private final int threads;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong starvedNanos = new AtomicLong();
+        private final AtomicLong blockedNanos = new AtomicLong();
+
+        StageStats(int threads){
+            this.threads = threads;
+        }
+
+        void busy(long start){
+            busyNanos.addAndGet(System.nanoTime() - start);
+            items.incrementAndGet();
+        }
+
+        public int getThreads(){
+            return threads;
+        }
+
+        public long getItems(){
+            return items.get();
+        }
+
+        public long getFailed(){
+            return failed.get();
+        }
+
+        /** Time spent decoding, filtering or encoding successful items. */
+        public long getBusyNanos(){
+            return busyNanos.get();
+        }
+
+        /** Time spent waiting for the previous stage, a sign this stage has threads to spare. */
+        public long getStarvedNanos(){
+            return starvedNanos.get();
+        }
+
+        /** Time spent waiting for room in the next queue, a sign the next stage is the bottleneck. */
+        public long getBlockedNanos(){
+            return blockedNanos.get();
+        }
+
+        /**
+         * @return items per second the stage could sustain with all its threads busy
+         */
+        public double getCapacity(){
+            long busy = busyNanos.get();
+            return busy == 0 ? 0 : items.get() * threads * 1e9 / busy;
+        }
+    }
+
+    public static final class Stats {
+        final StageStats decode;
+        final StageStats filter;
+        final StageStats encode;
+        long start;
+        long end;
+
+        Stats(int decodeThreads, int filterThreads, int encodeThreads){
+            decode = new StageStats(decodeThreads);
+            filter = new StageStats(filterThreads);
+            encode = new StageStats(encodeThreads);
+        }
+
+        public StageStats get(Stage stage){
+            switch(stage){
+                case DECODE:
+                    return decode;
+                case FILTER:
+                    return filter;
+                default:
+                    return encode;
+            }
+        }
+
+        public long getElapsedNanos(){
+            return end - start;
+        }
+
+        /**
+         * @return completed items per second over the whole batch
+         */
+        public double getThroughput(){
+            long elapsed = end - start;
+            return elapsed == 0 ? 0 : encode.getItems() * 1e9 / elapsed;
+        }
+
+        @Override
+        public String toString(){
+            StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                    "%d items in %.1f s, %.1f items/s%n", encode.getItems(), getElapsedNanos() / 1e9, getThroughput()));
+            for(Stage stage : Stage.values()){
+                StageStats s = get(stage);
+                text.append(String.format(Locale.ROOT,
+                        "%-6s %3d threads %8d items %5d failed, capacity %8.1f items/s, starved %6.1f s, blocked %6.1f s%n",
+                        stage, s.getThreads(), s.getItems(), s.getFailed(), s.getCapacity(),
+                        s.getStarvedNanos() / 1e9, s.getBlockedNanos() / 1e9));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * What a kernel reads for neighbours beyond the image edge.
+ * <p>
+ * {@link #NONE} is the behaviour of the original filters: pixels without a
+ * complete neighbourhood are not convolved at all and come out transparent black.
+ * The other modes convolve every pixel, reading positions outside the image from
+ * inside it or from a constant color.
+ * <p>
+ * All modes but {@link #WRAP} only read within the kernel's radius of the edge they
+ * cross, so a window of the image whose clipped sides are real image edges filters
+ * like the whole image. WRAP reads the opposite edge, so windowed paths either widen
+ * the window to the whole axis or refuse it; see {@link #wraps(RasterOp)}.
+ */
+public final class Border {
+
+    private static final int KIND_NONE = 0;
+    private static final int KIND_CONSTANT = 1;
+    private static final int KIND_CLAMP = 2;
+    private static final int KIND_REFLECT = 3;
+    private static final int KIND_WRAP = 4;
+
+    /** Leaves the frame the kernel does not fit in transparent black. */
+    public static final Border NONE = new Border(KIND_NONE, 0);
+    /** Repeats the edge pixel: aaa|abcd|ddd. */
+    public static final Border CLAMP = new Border(KIND_CLAMP, 0);
+    /** Mirrors around the edge pixel without repeating it: cb|abcd|cb. */
+    public static final Border REFLECT = new Border(KIND_REFLECT, 0);
+    /** Continues from the opposite edge: cd|abcd|ab. */
+    public static final Border WRAP = new Border(KIND_WRAP, 0);
+
+    private final int kind;
+    private final int color;
+
+    private Border(int kind, int color){
+        this.kind = kind;
+        this.color = color;
+    }
+
+    /**
+     * Reads outside the image as the given color. 8 bit rasters read its low byte.
+     */
+    public static Border constant(int argb){
+        return new Border(KIND_CONSTANT, argb);
+    }
+
+    public boolean isNone(){
+        return kind == KIND_NONE;
+    }
+
+    public boolean isWrap(){
+        return kind == KIND_WRAP;
+    }
+
+    /**
+     * @return true if op is a {@link BorderedOp} reading beyond the edge with {@link #WRAP},
+     *         so its output near one edge depends on pixels at the opposite edge
+     */
+    public static boolean wraps(RasterOp op){
+        return op instanceof BorderedOp && ((BorderedOp) op).getBorder().isWrap();
+    }
+
+    /**
+     * @return the color read outside the image, 0 unless made by {@link #constant(int)}
+     */
+    public int getColor(){
+        return color;
+    }
+
+    /**
+     * @param position a coordinate along an axis of the given size, possibly outside it
+     * @return the coordinate in 0..size - 1 to read instead, or -1 to read the constant color
+     */
+    public int map(int position, int size){
+        if(position >= 0 && position < size){
+            return position;
+        }
+        switch(kind){
+            case KIND_CLAMP:
+                return position < 0 ? 0 : size - 1;
+            case KIND_REFLECT:
+                if(size == 1){
+                    return 0;
+                }
+                int period = 2 * (size - 1);
+                int folded = position % period;
+                if(folded < 0){
+                    folded += period;
+                }
+                return folded < size ? folded : period - folded;
+            case KIND_WRAP:
+                int wrapped = position % size;
+                return wrapped < 0 ? wrapped + size : wrapped;
+            default:
+                return -1;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(!(o instanceof Border)){
+            return false;
+        }
+        Border other = (Border) o;
+        return kind == other.kind && color == other.color;
+    }
+
+    @Override
+    public int hashCode(){
+        return 31 * kind + color;
+    }
+
+    @Override
+    public String toString(){
+        switch(kind){
+            case KIND_NONE:
+                return "none";
+            case KIND_CLAMP:
+                return "clamp";
+            case KIND_REFLECT:
+                return "reflect";
+            case KIND_WRAP:
+                return "wrap";
+            default:
+                return "constant(#" + Integer.toHexString(color) + ")";
+        }
+    }
+}
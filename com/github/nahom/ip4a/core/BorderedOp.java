@@ -0,0 +1,14 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * A {@link RasterOp} that reads beyond the image edge through a {@link Border}.
+ * <p>
+ * Windowed paths ask {@link Border#wraps(RasterOp)} whether an op reaches the
+ * opposite edge, and only ops implementing this interface can say so. An op of
+ * your own that wraps around the image must implement it and return
+ * {@link Border#WRAP}; any other op is taken to read only near the edges it crosses.
+ */
+public interface BorderedOp extends RasterOp {
+
+    Border getBorder();
+}
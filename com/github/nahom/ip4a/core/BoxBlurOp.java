@@ -0,0 +1,314 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Blurs all four channels with a sequence of box filters, by default three boxes
+ * sized to approximate a Gaussian. Each box keeps a running sum that gains the
+ * pixel entering the window and loses the one leaving it, so the cost per pixel is
+ * the same for a radius of 2 and of 200.
+ * <p>
+ * The boxes run horizontally over each source row, then vertically as a chain of
+ * stages that each keep a ring of the rows their window spans, so the memory used
+ * grows with the radius times the width, not with the image. Pixels beyond the
+ * image edge repeat the edge pixel.
+ */
+public final class BoxBlurOp implements RasterOp {
+
+    public static final int MAX_BOX_RADIUS = 4096;
+
+    private static final int GAUSSIAN_BOXES = 3;
+    private static final int SCALE_BITS = 22;
+    private static final int HALF = 1 << (SCALE_BITS - 1);
+
+    private final int[] radii;
+    // 2^SCALE_BITS / box size, so averaging is a multiply and a shift
+    private final int[] scales;
+    private final int radius;
+
+    /**
+     * @param boxRadii the radius of each box, applied in order along both axes
+     */
+    public BoxBlurOp(int... boxRadii){
+        radii = boxRadii.clone();
+        scales = new int[radii.length];
+        int total = 0;
+        for(int i = 0; i < radii.length; ++i){
+            if(radii[i] < 0 || radii[i] > MAX_BOX_RADIUS){
+                throw new IllegalArgumentException("box radius must be in 0.." + MAX_BOX_RADIUS + ", got " + radii[i]);
+            }
+            scales[i] = (int) Math.round(Math.scalb(1.0 / (2 * radii[i] + 1), SCALE_BITS));
+            total += radii[i];
+        }
+        radius = total;
+    }
+
+    /**
+     * Three boxes whose combined variance matches a Gaussian of the given sigma.
+     */
+    public static BoxBlurOp gaussian(double sigma){
+        if(!(sigma > 0)){
+            throw new IllegalArgumentException("sigma must be positive, got " + sigma);
+        }
+        // odd widths wl and wl + 2, m boxes of the smaller one
+        double variance = 12 * sigma * sigma;
+        int lower = (int) Math.floor(Math.sqrt(variance / GAUSSIAN_BOXES + 1));
+        if((lower & 1) == 0){
+            --lower;
+        }
+        int m = (int) Math.round((variance - GAUSSIAN_BOXES * lower * lower - 4 * GAUSSIAN_BOXES * lower
+                - 3 * GAUSSIAN_BOXES) / (-4.0 * lower - 4));
+        int[] boxRadii = new int[GAUSSIAN_BOXES];
+        for(int i = 0; i < GAUSSIAN_BOXES; ++i){
+            int width = i < m ? lower : lower + 2;
+            boxRadii[i] = width / 2;
+        }
+        return new BoxBlurOp(boxRadii);
+    }
+
+    /**
+     * A Gaussian for a blur radius as BlurMaskFilter takes it, which maps it to
+     * sigma = 0.57735 * radius + 0.5.
+     */
+    public static BoxBlurOp ofRadius(double radius){
+        if(!(radius > 0)){
+            throw new IllegalArgumentException("radius must be positive, got " + radius);
+        }
+        return gaussian(0.57735 * radius + 0.5);
+    }
+
+    public int[] getBoxRadii(){
+        return radii.clone();
+    }
+
+    @Override
+    public int getRadius(){
+        return radius;
+    }
+
+    @Override
+    public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+        if(left >= right || top >= bottom){
+            return;
+        }
+        int span = right - left;
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        Horizontal horizontal = new Horizontal(src, left, right, pool);
+        Vertical[] stages = new Vertical[radii.length];
+        try{
+            Rows rows = horizontal;
+            for(int i = 0; i < radii.length; ++i){
+                stages[i] = new Vertical(rows, radii[i], scales[i], src.getHeight(), span, pool);
+                rows = stages[i];
+            }
+            rows.start(top);
+            for(int y = top; y < bottom; ++y){
+                rows.next(dst.getPixels(), dst.index(left, y));
+            }
+        }finally{
+            horizontal.release();
+            for(Vertical stage : stages){
+                if(stage != null){
+                    stage.release();
+                }
+            }
+        }
+    }
+
+    private static int average(int sum, int scale){
+        return (sum * scale + HALF) >>> SCALE_BITS;
+    }
+
+    /**
+     * One box over a row of n pixels, repeating its first and last pixel outward.
+     */
+    private static void boxRow(int[] in, int[] out, int n, int r, int scale){
+        int sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+        for(int k = -r; k <= r; ++k){
+            int pixel = in[Math.min(Math.max(k, 0), n - 1)];
+            sumA += pixel >>> 24;
+            sumR += (pixel >> 16) & 0xFF;
+            sumG += (pixel >> 8) & 0xFF;
+            sumB += pixel & 0xFF;
+        }
+        for(int x = 0; x < n; ++x){
+            out[x] = (average(sumA, scale) << 24) | (average(sumR, scale) << 16)
+                    | (average(sumG, scale) << 8) | average(sumB, scale);
+            int add = in[Math.min(x + r + 1, n - 1)];
+            int sub = in[Math.max(x - r, 0)];
+            sumA += (add >>> 24) - (sub >>> 24);
+            sumR += ((add >> 16) & 0xFF) - ((sub >> 16) & 0xFF);
+            sumG += ((add >> 8) & 0xFF) - ((sub >> 8) & 0xFF);
+            sumB += (add & 0xFF) - (sub & 0xFF);
+        }
+    }
+
+    /**
+     * Produces consecutive rows of one stage, span pixels each.
+     */
+    private abstract static class Rows {
+        /** The next call to {@link #next} produces row y. */
+        abstract void start(int y);
+
+        abstract void next(int[] out, int outPos);
+    }
+
+    /**
+     * All boxes along the row. The source columns the boxes reach beyond [left, right)
+     * are blurred too, so the columns kept are the same as blurring the whole row.
+     */
+    private final class Horizontal extends Rows {
+        private final IntRaster src;
+        private final int x0;
+        private final int offset;
+        private final int span;
+        private final int length;
+        private final PixelBufferPool pool;
+        private final int[] row;
+        private final int[] scratch;
+        private int y;
+
+        Horizontal(IntRaster src, int left, int right, PixelBufferPool pool){
+            this.src = src;
+            this.x0 = Math.max(0, left - radius);
+            this.length = Math.min(src.getWidth(), right + radius) - x0;
+            this.offset = left - x0;
+            this.span = right - left;
+            this.pool = pool;
+            this.row = pool.acquire(length);
+            this.scratch = pool.acquire(length);
+        }
+
+        @Override
+        void start(int y){
+            this.y = y;
+        }
+
+        @Override
+        void next(int[] out, int outPos){
+            System.arraycopy(src.getPixels(), src.index(x0, y), row, 0, length);
+            int[] in = row;
+            int[] to = scratch;
+            for(int i = 0; i < radii.length; ++i){
+                boxRow(in, to, length, radii[i], scales[i]);
+                int[] swap = in;
+                in = to;
+                to = swap;
+            }
+            System.arraycopy(in, offset, out, outPos, span);
+            ++y;
+        }
+
+        void release(){
+            pool.release(row);
+            pool.release(scratch);
+        }
+    }
+
+    /**
+     * One box down the columns. Row y needs the input rows y - r .. y + r, so the
+     * ring holds the last 2r + 2 input rows: enough for the row entering the window
+     * and the one leaving it.
+     */
+    private static final class Vertical extends Rows {
+        private final Rows input;
+        private final int r;
+        private final int scale;
+        private final int height;
+        private final int span;
+        private final int slots;
+        private final PixelBufferPool pool;
+        private final int[] ring;
+        private final int[] sums;
+        private int y;
+        private int pulled;
+        private boolean started;
+
+        Vertical(Rows input, int r, int scale, int height, int span, PixelBufferPool pool){
+            this.input = input;
+            this.r = r;
+            this.scale = scale;
+            this.height = height;
+            this.span = span;
+            this.slots = 2 * r + 2;
+            this.pool = pool;
+            this.ring = pool.acquire(slots * span);
+            this.sums = pool.acquire(4 * span);
+        }
+
+        private int clamp(int row){
+            return Math.min(Math.max(row, 0), height - 1);
+        }
+
+        /**
+         * @return where input row 'row' sits in the ring, pulling it first if needed
+         */
+        private int slot(int row){
+            while(pulled <= row){
+                input.next(ring, (pulled % slots) * span);
+                ++pulled;
+            }
+            return (row % slots) * span;
+        }
+
+        private void add(int pos){
+            int[] s = sums;
+            for(int x = 0; x < span; ++x){
+                int pixel = ring[pos + x];
+                int i = 4 * x;
+                s[i] += pixel >>> 24;
+                s[i + 1] += (pixel >> 16) & 0xFF;
+                s[i + 2] += (pixel >> 8) & 0xFF;
+                s[i + 3] += pixel & 0xFF;
+            }
+        }
+
+        private void slide(int enterPos, int leavePos){
+            int[] s = sums;
+            int[] rows = ring;
+            for(int x = 0; x < span; ++x){
+                int add = rows[enterPos + x];
+                int sub = rows[leavePos + x];
+                int i = 4 * x;
+                s[i] += (add >>> 24) - (sub >>> 24);
+                s[i + 1] += ((add >> 16) & 0xFF) - ((sub >> 16) & 0xFF);
+                s[i + 2] += ((add >> 8) & 0xFF) - ((sub >> 8) & 0xFF);
+                s[i + 3] += (add & 0xFF) - (sub & 0xFF);
+            }
+        }
+
+        @Override
+        void start(int y){
+            this.y = y;
+            this.pulled = clamp(y - r);
+            this.started = false;
+            input.start(pulled);
+            for(int i = 0; i < 4 * span; ++i){
+                sums[i] = 0;
+            }
+            for(int k = y - r; k <= y + r; ++k){
+                add(slot(clamp(k)));
+            }
+        }
+
+        @Override
+        void next(int[] out, int outPos){
+            if(started){
+                // slide the window down one row
+                int enter = slot(clamp(y + r));
+                slide(enter, slot(clamp(y - r - 1)));
+            }
+            started = true;
+            int[] s = sums;
+            for(int x = 0; x < span; ++x){
+                int i = 4 * x;
+                out[outPos + x] = (average(s[i], scale) << 24) | (average(s[i + 1], scale) << 16)
+                        | (average(s[i + 2], scale) << 8) | average(s[i + 3], scale);
+            }
+            ++y;
+        }
+
+        void release(){
+            pool.release(ring);
+            pool.release(sums);
+        }
+    }
+}
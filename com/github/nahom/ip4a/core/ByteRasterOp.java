@@ -0,0 +1,17 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * A filter over 8 bit single channel rasters, with the same contract as
+ * {@link RasterOp}: it writes the destination inside the requested rectangle and
+ * may read the source up to {@link #getRadius()} pixels beyond it.
+ */
+public interface ByteRasterOp {
+
+    int getRadius();
+
+    /**
+     * Filters the rectangle [left, right) x [top, bottom) from src into dst.
+     * Point ops (radius 0) may be applied with src == dst.
+     */
+    void apply(ByteRaster src, ByteRaster dst, int left, int top, int right, int bottom);
+}
@@ -0,0 +1,112 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Picks how to run a kernel. A {@link ConvolveOp} costs about one multiply-add per
+ * channel for each nonzero tap, or per tap of its two vectors when the kernel
+ * separates; an {@link FftConvolveOp} costs about the same for any kernel that fits
+ * its block, but has a large constant. {@link #create} estimates each in the same
+ * units per output pixel and takes the cheapest.
+ */
+public final class Convolutions {
+
+    // cost of one butterfly of a transform, relative to one tap of the direct loop,
+    // and the per point work around the transforms: reading, multiplying, packing
+    private static final double BUTTERFLY_COST = 4;
+    private static final double POINT_COST = 6;
+
+    private Convolutions(){
+    }
+
+    public static RasterOp create(Kernel kernel){
+        return create(kernel, Border.NONE);
+    }
+
+    /**
+     * @return the cheaper of a ConvolveOp and an FftConvolveOp for the kernel
+     */
+    public static RasterOp create(Kernel kernel, Border border){
+        double direct = kernel.isSeparable() ? separableCost(kernel) : directCost(kernel);
+        int block = bestBlockSize(kernel.getWidth(), kernel.getHeight());
+        if(block > 0 && fftCost(kernel.getWidth(), kernel.getHeight(), block) < direct){
+            return new FftConvolveOp(kernel, border);
+        }
+        return new ConvolveOp(kernel, border);
+    }
+
+    /**
+     * @return estimated cost per output pixel of the direct loop, in taps
+     */
+    public static double directCost(Kernel kernel){
+        int taps = 0;
+        for(double weight : kernel.weights()){
+            if(weight != 0){
+                ++taps;
+            }
+        }
+        return taps;
+    }
+
+    /**
+     * @return estimated cost per output pixel of the separable passes, in taps
+     */
+    public static double separableCost(Kernel kernel){
+        return kernel.getWidth() + kernel.getHeight();
+    }
+
+    /**
+     * @return estimated cost per output pixel of an FftConvolveOp with the given block
+     *         size on a large image, in taps; infinite if the kernel leaves no output in the block
+     */
+    public static double fftCost(int kernelWidth, int kernelHeight, int blockSize){
+        long tileWidth = blockSize - kernelWidth + 1;
+        long tileHeight = blockSize - kernelHeight + 1;
+        if(tileWidth <= 0 || tileHeight <= 0){
+            return Double.POSITIVE_INFINITY;
+        }
+        return blockCost(blockSize) / (tileWidth * tileHeight);
+    }
+
+    /**
+     * @return estimated cost of filtering one block, in taps
+     */
+    private static double blockCost(int blockSize){
+        double points = (double) blockSize * blockSize;
+        int log = Integer.numberOfTrailingZeros(blockSize);
+        // two forward and two inverse transforms, each n/2 log n butterflies per row and per column
+        double butterflies = 4 * points * log;
+        return butterflies * BUTTERFLY_COST + points * POINT_COST;
+    }
+
+    /**
+     * @return the block size with the lowest {@link #fftCost}, 0 if the kernel is too
+     *         large for every block size
+     */
+    public static int bestBlockSize(int kernelWidth, int kernelHeight){
+        return bestBlockSize(kernelWidth, kernelHeight, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #bestBlockSize(int, int)} for filtering a rectangle of the given
+     * size, counting the partly used tiles at its right and bottom edges.
+     */
+    public static int bestBlockSize(int kernelWidth, int kernelHeight, int width, int height){
+        int best = 0;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for(int size = FftConvolveOp.MIN_BLOCK_SIZE; size <= FftConvolveOp.MAX_BLOCK_SIZE; size <<= 1){
+            long tileWidth = size - kernelWidth + 1;
+            long tileHeight = size - kernelHeight + 1;
+            if(tileWidth <= 0 || tileHeight <= 0){
+                continue;
+            }
+            // whole tiles where the rectangle is large, partial ones where it is not
+            double tiles = Math.ceil(Math.min(width, 1L << 20) / (double) tileWidth)
+                    * Math.ceil(Math.min(height, 1L << 20) / (double) tileHeight);
+            double cost = tiles * blockCost(size);
+            if(cost < bestCost){
+                bestCost = cost;
+                best = size;
+            }
+        }
+        return best;
+    }
+}
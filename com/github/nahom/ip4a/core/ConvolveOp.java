@@ -0,0 +1,566 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Convolves the color channels with a {@link Kernel}; alpha is taken from the
+ * center pixel.
+ * <p>
+ * Weights are converted to fixed point once, so the per-pixel work is integer
+ * multiply-adds followed by a shift. Separable kernels run as a horizontal pass
+ * into a ring of row buffers followed by a vertical pass, which costs
+ * width + height instead of width * height multiply-adds per channel. Zero weights
+ * of other kernels are skipped.
+ * <p>
+ * Pixels closer to the image edge than the kernel radius have no complete
+ * neighbourhood. With {@link Border#NONE}, the default, they are written as
+ * transparent black. Other borders filter the interior as usual and then the frame
+ * strips separately: each strip is copied with its halo into a padded buffer whose
+ * outside pixels the border fills in, and run through the same loops, so neither
+ * pass checks bounds per tap.
+ * <p>
+ * The op also runs on 8 bit {@link ByteRaster}s, computing the single channel the
+ * way it computes each color channel of an ARGB pixel; the edge frame is then 0
+ * unless a border is set.
+ */
+public final class ConvolveOp implements BorderedOp, ByteRasterOp {
+
+    private static final int MAX_SHIFT = 30;
+
+    private final Kernel kernel;
+    private final Border border;
+    private final int radiusX;
+    private final int radiusY;
+
+    // direct path
+    private final int[] tapX;
+    private final int[] tapY;
+    private final int[] tapWeight;
+    private final int shift;
+    private final int fixedOffset;
+
+    // separable path, null when the kernel does not separate
+    private final int[] horizontal;
+    private final int[] vertical;
+
+    public ConvolveOp(Kernel kernel){
+        this(kernel, Border.NONE);
+    }
+
+    public ConvolveOp(Kernel kernel, Border border){
+        this.kernel = kernel;
+        this.border = border;
+        this.radiusX = kernel.getRadiusX();
+        this.radiusY = kernel.getRadiusY();
+
+        double[] weights = kernel.weights();
+        double factor = kernel.getFactor();
+        double offset = kernel.getOffset();
+
+        double[][] parts = kernel.separate();
+        if(parts != null && weights.length > 1){
+            double[] h = parts[0];
+            double[] v = parts[1];
+            for(int i = 0; i < v.length; ++i){
+                v[i] /= factor;
+            }
+            // horizontal sums stay below 2^20, leaving the vertical pass its own headroom
+            int hBits = fitBits(255 * absSum(h), 1 << 20);
+            double rowMax = Math.scalb(255 * absSum(h), hBits);
+            int vBits = fitBits(rowMax * absSum(v) + Math.scalb(Math.abs(offset), hBits), Integer.MAX_VALUE);
+            horizontal = toFixed(h, hBits);
+            vertical = toFixed(v, vBits);
+            shift = checkShift(hBits + vBits);
+            tapX = tapY = tapWeight = null;
+        }else{
+            double[] normalized = new double[weights.length];
+            int taps = 0;
+            for(int i = 0; i < weights.length; ++i){
+                normalized[i] = weights[i] / factor;
+                if(weights[i] != 0){
+                    ++taps;
+                }
+            }
+            shift = checkShift(fitBits(255 * absSum(normalized) + Math.abs(offset), Integer.MAX_VALUE));
+            int[] fixed = toFixed(normalized, shift);
+            tapX = new int[taps];
+            tapY = new int[taps];
+            tapWeight = new int[taps];
+            int t = 0;
+            for(int i = 0; i < weights.length; ++i){
+                if(weights[i] != 0){
+                    tapX[t] = i % kernel.getWidth() - radiusX;
+                    tapY[t] = i / kernel.getWidth() - radiusY;
+                    tapWeight[t] = fixed[i];
+                    ++t;
+                }
+            }
+            horizontal = vertical = null;
+        }
+        fixedOffset = (int) Math.round(Math.scalb(offset, shift));
+    }
+
+    private static double absSum(double[] values){
+        double sum = 0;
+        for(double value : values){
+            sum += Math.abs(value);
+        }
+        return sum;
+    }
+
+    /**
+     * @return the largest power of two scale, at most 2^30, keeping magnitude * 2^bits below limit
+     */
+    private static int fitBits(double magnitude, double limit){
+        int bits = MAX_SHIFT;
+        while(bits > -MAX_SHIFT && Math.scalb(magnitude, bits) >= limit){
+            --bits;
+        }
+        return bits;
+    }
+
+    private static int checkShift(int bits){
+        if(bits < 0){
+            throw new IllegalArgumentException("kernel weights too large for integer accumulation");
+        }
+        return bits;
+    }
+
+    private static int[] toFixed(double[] values, int bits){
+        int[] fixed = new int[values.length];
+        for(int i = 0; i < values.length; ++i){
+            fixed[i] = (int) Math.round(Math.scalb(values[i], bits));
+        }
+        return fixed;
+    }
+
+    public Kernel getKernel(){
+        return kernel;
+    }
+
+    @Override
+    public Border getBorder(){
+        return border;
+    }
+
+    public boolean isSeparable(){
+        return horizontal != null;
+    }
+
+    @Override
+    public int getRadius(){
+        return Math.max(radiusX, radiusY);
+    }
+
+    @Override
+    public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+        if(left >= right || top >= bottom){
+            return;
+        }
+        int x0 = Math.max(left, radiusX);
+        int x1 = Math.min(right, src.getWidth() - radiusX);
+        int y0 = Math.max(top, radiusY);
+        int y1 = Math.min(bottom, src.getHeight() - radiusY);
+        if(!border.isNone()){
+            if(x0 >= x1 || y0 >= y1){
+                applyPadded(src, dst, left, top, right, bottom);
+                return;
+            }
+            applyInterior(src, dst, x0, y0, x1, y1);
+            applyPadded(src, dst, left, top, right, y0);
+            applyPadded(src, dst, left, y1, right, bottom);
+            applyPadded(src, dst, left, y0, x0, y1);
+            applyPadded(src, dst, x1, y0, right, y1);
+            return;
+        }
+        if(x0 >= x1 || y0 >= y1){
+            clear(dst, left, top, right, bottom);
+            return;
+        }
+        // the frame around the part that has full neighbourhoods
+        clear(dst, left, top, right, y0);
+        clear(dst, left, y1, right, bottom);
+        clear(dst, left, y0, x0, y1);
+        clear(dst, x1, y0, right, y1);
+        applyInterior(src, dst, x0, y0, x1, y1);
+    }
+
+    @Override
+    public void apply(ByteRaster src, ByteRaster dst, int left, int top, int right, int bottom){
+        if(left >= right || top >= bottom){
+            return;
+        }
+        int x0 = Math.max(left, radiusX);
+        int x1 = Math.min(right, src.getWidth() - radiusX);
+        int y0 = Math.max(top, radiusY);
+        int y1 = Math.min(bottom, src.getHeight() - radiusY);
+        if(!border.isNone()){
+            if(x0 >= x1 || y0 >= y1){
+                applyPadded(src, dst, left, top, right, bottom);
+                return;
+            }
+            applyInterior(src, dst, x0, y0, x1, y1);
+            applyPadded(src, dst, left, top, right, y0);
+            applyPadded(src, dst, left, y1, right, bottom);
+            applyPadded(src, dst, left, y0, x0, y1);
+            applyPadded(src, dst, x1, y0, right, y1);
+            return;
+        }
+        if(x0 >= x1 || y0 >= y1){
+            clear(dst, left, top, right, bottom);
+            return;
+        }
+        clear(dst, left, top, right, y0);
+        clear(dst, left, y1, right, bottom);
+        clear(dst, left, y0, x0, y1);
+        clear(dst, x1, y0, right, y1);
+        applyInterior(src, dst, x0, y0, x1, y1);
+    }
+
+    /**
+     * Filters [x0, x1) x [y0, y1), whose neighbourhoods must all lie inside src.
+     */
+    private void applyInterior(IntRaster src, IntRaster dst, int x0, int y0, int x1, int y1){
+        if(horizontal != null){
+            applySeparable(src, dst, x0, y0, x1, y1);
+        }else{
+            applyDirect(src, dst, x0, y0, x1, y1);
+        }
+    }
+
+    private void applyInterior(ByteRaster src, ByteRaster dst, int x0, int y0, int x1, int y1){
+        if(horizontal != null){
+            PixelBufferPool pool = PixelBufferPool.getDefault();
+            int[] ring = pool.acquire(vertical.length * (x1 - x0));
+            try{
+                applySeparable(src, dst, x0, y0, x1, y1, ring, new int[vertical.length]);
+            }finally{
+                pool.release(ring);
+            }
+        }else{
+            applyDirect(src, dst, x0, y0, x1, y1);
+        }
+    }
+
+    /**
+     * Filters a rectangle near the edge: copies it with its halo, filled in by the
+     * border where it leaves the image, into a padded buffer and filters that.
+     */
+    private void applyPadded(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+        if(left >= right || top >= bottom){
+            return;
+        }
+        int width = right - left;
+        int height = bottom - top;
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster padded = pool.acquireRaster(width + 2 * radiusX, height + 2 * radiusY);
+        IntRaster output = pool.acquireRaster(padded.getWidth(), padded.getHeight());
+        try{
+            int[] pixels = padded.getPixels();
+            for(int y = 0; y < padded.getHeight(); ++y){
+                int row = border.map(top - radiusY + y, src.getHeight());
+                int pos = padded.index(0, y);
+                if(row < 0){
+                    for(int x = 0; x < padded.getWidth(); ++x){
+                        pixels[pos + x] = border.getColor();
+                    }
+                    continue;
+                }
+                int[] in = src.getPixels();
+                int rowPos = src.index(0, row);
+                int first = left - radiusX;
+                // columns inside the image are copied, the rest are mapped one by one
+                int inside0 = Math.min(padded.getWidth(), Math.max(0, -first));
+                int inside1 = Math.max(inside0, Math.min(padded.getWidth(), src.getWidth() - first));
+                for(int x = 0; x < inside0; ++x){
+                    int column = border.map(first + x, src.getWidth());
+                    pixels[pos + x] = column < 0 ? border.getColor() : in[rowPos + column];
+                }
+                if(inside1 > inside0){
+                    System.arraycopy(in, rowPos + first + inside0, pixels, pos + inside0, inside1 - inside0);
+                }
+                for(int x = inside1; x < padded.getWidth(); ++x){
+                    int column = border.map(first + x, src.getWidth());
+                    pixels[pos + x] = column < 0 ? border.getColor() : in[rowPos + column];
+                }
+            }
+            applyInterior(padded, output, radiusX, radiusY, radiusX + width, radiusY + height);
+            output.subRaster(radiusX, radiusY, width, height).copyTo(dst.subRaster(left, top, width, height));
+        }finally{
+            pool.release(padded);
+            pool.release(output);
+        }
+    }
+
+    private void applyPadded(ByteRaster src, ByteRaster dst, int left, int top, int right, int bottom){
+        if(left >= right || top >= bottom){
+            return;
+        }
+        int width = right - left;
+        int height = bottom - top;
+        byte color = (byte) border.getColor();
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        ByteRaster padded = pool.acquireByteRaster(width + 2 * radiusX, height + 2 * radiusY);
+        ByteRaster output = pool.acquireByteRaster(padded.getWidth(), padded.getHeight());
+        try{
+            byte[] samples = padded.getPixels();
+            for(int y = 0; y < padded.getHeight(); ++y){
+                int row = border.map(top - radiusY + y, src.getHeight());
+                int pos = padded.index(0, y);
+                if(row < 0){
+                    for(int x = 0; x < padded.getWidth(); ++x){
+                        samples[pos + x] = color;
+                    }
+                    continue;
+                }
+                byte[] in = src.getPixels();
+                int rowPos = src.index(0, row);
+                int first = left - radiusX;
+                int inside0 = Math.min(padded.getWidth(), Math.max(0, -first));
+                int inside1 = Math.max(inside0, Math.min(padded.getWidth(), src.getWidth() - first));
+                for(int x = 0; x < inside0; ++x){
+                    int column = border.map(first + x, src.getWidth());
+                    samples[pos + x] = column < 0 ? color : in[rowPos + column];
+                }
+                if(inside1 > inside0){
+                    System.arraycopy(in, rowPos + first + inside0, samples, pos + inside0, inside1 - inside0);
+                }
+                for(int x = inside1; x < padded.getWidth(); ++x){
+                    int column = border.map(first + x, src.getWidth());
+                    samples[pos + x] = column < 0 ? color : in[rowPos + column];
+                }
+            }
+            applyInterior(padded, output, radiusX, radiusY, radiusX + width, radiusY + height);
+            output.subRaster(radiusX, radiusY, width, height).copyTo(dst.subRaster(left, top, width, height));
+        }finally{
+            pool.release(padded);
+            pool.release(output);
+        }
+    }
+
+    private static void clear(ByteRaster dst, int left, int top, int right, int bottom){
+        byte[] out = dst.getPixels();
+        for(int y = top; y < bottom; ++y){
+            int start = dst.index(left, y);
+            for(int i = 0; i < right - left; ++i){
+                out[start + i] = 0;
+            }
+        }
+    }
+
+    private static void clear(IntRaster dst, int left, int top, int right, int bottom){
+        int[] out = dst.getPixels();
+        for(int y = top; y < bottom; ++y){
+            int start = dst.index(left, y);
+            for(int i = 0; i < right - left; ++i){
+                out[start + i] = 0;
+            }
+        }
+    }
+
+    private static int pack(int alpha, int r, int g, int b){
+        if(r < 0){
+            r = 0;
+        }else if(r > 255){
+            r = 255;
+        }
+        if(g < 0){
+            g = 0;
+        }else if(g > 255){
+            g = 255;
+        }
+        if(b < 0){
+            b = 0;
+        }else if(b > 255){
+            b = 255;
+        }
+        return (alpha & 0xFF000000) | (r << 16) | (g << 8) | b;
+    }
+
+    private void applyDirect(IntRaster src, IntRaster dst, int x0, int y0, int x1, int y1){
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        int taps = tapWeight.length;
+        int[] offsets = new int[taps];
+        for(int t = 0; t < taps; ++t){
+            offsets[t] = tapY[t] * src.getStride() + tapX[t];
+        }
+        int[] weights = tapWeight;
+        int s = shift;
+        int base = fixedOffset;
+        VectorKernels vector = VectorKernels.INSTANCE;
+
+        for(int y = y0; y < y1; ++y){
+            int inPos = src.index(x0, y);
+            int outPos = dst.index(x0, y);
+            if(vector != null){
+                vector.convolve(in, inPos, offsets, weights, base, s, out, outPos, x1 - x0);
+                continue;
+            }
+            for(int x = x0; x < x1; ++x, ++inPos, ++outPos){
+                int sumR = base, sumG = base, sumB = base;
+                for(int t = 0; t < taps; ++t){
+                    int pixel = in[inPos + offsets[t]];
+                    int weight = weights[t];
+                    sumR += ((pixel >> 16) & 0xFF) * weight;
+                    sumG += ((pixel >> 8) & 0xFF) * weight;
+                    sumB += (pixel & 0xFF) * weight;
+                }
+                out[outPos] = pack(in[inPos], sumR >> s, sumG >> s, sumB >> s);
+            }
+        }
+    }
+
+    private static byte level(int value){
+        if(value < 0){
+            return 0;
+        }
+        if(value > 255){
+            return (byte) 255;
+        }
+        return (byte) value;
+    }
+
+    private void applyDirect(ByteRaster src, ByteRaster dst, int x0, int y0, int x1, int y1){
+        byte[] in = src.getPixels();
+        byte[] out = dst.getPixels();
+        int taps = tapWeight.length;
+        int[] offsets = new int[taps];
+        for(int t = 0; t < taps; ++t){
+            offsets[t] = tapY[t] * src.getStride() + tapX[t];
+        }
+        int[] weights = tapWeight;
+        int s = shift;
+        int base = fixedOffset;
+        for(int y = y0; y < y1; ++y){
+            int inPos = src.index(x0, y);
+            int outPos = dst.index(x0, y);
+            for(int x = x0; x < x1; ++x, ++inPos, ++outPos){
+                int sum = base;
+                for(int t = 0; t < taps; ++t){
+                    sum += (in[inPos + offsets[t]] & 0xFF) * weights[t];
+                }
+                out[outPos] = level(sum >> s);
+            }
+        }
+    }
+
+    private void applySeparable(ByteRaster src, ByteRaster dst, int x0, int y0, int x1, int y1,
+                                int[] ring, int[] slots){
+        byte[] in = src.getPixels();
+        byte[] out = dst.getPixels();
+        int[] h = horizontal;
+        int[] v = vertical;
+        int rows = v.length;
+        int span = x1 - x0;
+        int s = shift;
+        int base = fixedOffset;
+
+        int first = y0 - radiusY;
+        for(int y = first; y < y1 + radiusY; ++y){
+            int slot = ((y - first) % rows) * span;
+            int inPos = src.index(x0 - radiusX, y);
+            for(int x = 0; x < span; ++x, ++inPos){
+                int sum = 0;
+                for(int k = 0; k < h.length; ++k){
+                    sum += (in[inPos + k] & 0xFF) * h[k];
+                }
+                ring[slot + x] = sum;
+            }
+
+            int outY = y - radiusY;
+            if(outY < y0){
+                continue;
+            }
+            for(int k = 0; k < rows; ++k){
+                slots[k] = ((outY - radiusY + k - first) % rows) * span;
+            }
+            int outPos = dst.index(x0, outY);
+            for(int x = 0; x < span; ++x){
+                int sum = base;
+                for(int k = 0; k < rows; ++k){
+                    sum += ring[slots[k] + x] * v[k];
+                }
+                out[outPos + x] = level(sum >> s);
+            }
+        }
+    }
+
+    private void applySeparable(IntRaster src, IntRaster dst, int x0, int y0, int x1, int y1){
+        int rows = vertical.length;
+        int span = x1 - x0;
+
+        // horizontal sums of the last 'rows' source rows, one plane per channel
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        int[] ringR = pool.acquire(rows * span);
+        int[] ringG = pool.acquire(rows * span);
+        int[] ringB = pool.acquire(rows * span);
+        int[] slots = new int[rows];
+        try{
+            applySeparable(src, dst, x0, y0, x1, y1, ringR, ringG, ringB, slots);
+        }finally{
+            pool.release(ringR);
+            pool.release(ringG);
+            pool.release(ringB);
+        }
+    }
+
+    private void applySeparable(IntRaster src, IntRaster dst, int x0, int y0, int x1, int y1,
+                                int[] ringR, int[] ringG, int[] ringB, int[] slots){
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        int[] h = horizontal;
+        int[] v = vertical;
+        int rows = v.length;
+        int span = x1 - x0;
+        int s = shift;
+        int base = fixedOffset;
+        VectorKernels vector = VectorKernels.INSTANCE;
+
+        int first = y0 - radiusY;
+        for(int y = first; y < y1 + radiusY; ++y){
+            int slot = ((y - first) % rows) * span;
+            int inPos = src.index(x0 - radiusX, y);
+            if(vector != null){
+                vector.convolveHorizontal(in, inPos, h, ringR, ringG, ringB, slot, span);
+            }else{
+                for(int x = 0; x < span; ++x, ++inPos){
+                    int sumR = 0, sumG = 0, sumB = 0;
+                    for(int k = 0; k < h.length; ++k){
+                        int pixel = in[inPos + k];
+                        int weight = h[k];
+                        sumR += ((pixel >> 16) & 0xFF) * weight;
+                        sumG += ((pixel >> 8) & 0xFF) * weight;
+                        sumB += (pixel & 0xFF) * weight;
+                    }
+                    ringR[slot + x] = sumR;
+                    ringG[slot + x] = sumG;
+                    ringB[slot + x] = sumB;
+                }
+            }
+
+            int outY = y - radiusY;
+            if(outY < y0){
+                continue;
+            }
+            for(int k = 0; k < rows; ++k){
+                slots[k] = ((outY - radiusY + k - first) % rows) * span;
+            }
+            int center = src.index(x0, outY);
+            int outPos = dst.index(x0, outY);
+            if(vector != null){
+                vector.convolveVertical(ringR, ringG, ringB, slots, v, base, s, in, center, out, outPos, span);
+                continue;
+            }
+            for(int x = 0; x < span; ++x){
+                int sumR = base, sumG = base, sumB = base;
+                for(int k = 0; k < rows; ++k){
+                    int index = slots[k] + x;
+                    int weight = v[k];
+                    sumR += ringR[index] * weight;
+                    sumG += ringG[index] * weight;
+                    sumB += ringB[index] * weight;
+                }
+                out[outPos + x] = pack(in[center + x], sumR >> s, sumG >> s, sumB >> s);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Radix-2 complex FFT of one power of two size, on split real and imaginary arrays.
+ * The bit reversal permutation and the twiddle factors are computed once per size
+ * and shared through {@link #forSize(int)}.
+ */
+final class Fft {
+
+    private static final ConcurrentMap<Integer, Fft> PLANS = new ConcurrentHashMap<Integer, Fft>();
+
+    private final int size;
+    private final int[] reversed;
+    private final double[] cos;
+    private final double[] sin;
+
+    private Fft(int size){
+        this.size = size;
+        int bits = Integer.numberOfTrailingZeros(size);
+        reversed = new int[size];
+        for(int i = 0; i < size; ++i){
+            reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new double[size / 2];
+        sin = new double[size / 2];
+        for(int i = 0; i < size / 2; ++i){
+            double angle = -2 * Math.PI * i / size;
+            cos[i] = Math.cos(angle);
+            sin[i] = Math.sin(angle);
+        }
+    }
+
+    /**
+     * @param size a power of two
+     */
+    static Fft forSize(int size){
+        if(size < 1 || Integer.bitCount(size) != 1){
+            throw new IllegalArgumentException("FFT size must be a power of two, got " + size);
+        }
+        Fft plan = PLANS.get(size);
+        if(plan == null){
+            Fft created = new Fft(size);
+            plan = PLANS.putIfAbsent(size, created);
+            if(plan == null){
+                plan = created;
+            }
+        }
+        return plan;
+    }
+
+    int getSize(){
+        return size;
+    }
+
+    /**
+     * Transforms size values starting at offset in place. The inverse is not scaled.
+     */
+    void transform(double[] re, double[] im, int offset, boolean inverse){
+        int n = size;
+        for(int i = 0; i < n; ++i){
+            int j = reversed[i];
+            if(j > i){
+                double t = re[offset + i];
+                re[offset + i] = re[offset + j];
+                re[offset + j] = t;
+                t = im[offset + i];
+                im[offset + i] = im[offset + j];
+                im[offset + j] = t;
+            }
+        }
+        double sign = inverse ? -1 : 1;
+        for(int half = 1; half < n; half <<= 1){
+            int step = n / (2 * half);
+            for(int start = offset; start < offset + n; start += 2 * half){
+                for(int k = 0; k < half; ++k){
+                    double wr = cos[k * step];
+                    double wi = sign * sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transforms a size x size block stored row by row. The result is left
+     * transposed; transforming it again with inverse set undoes both the transform
+     * and the transposition, so spectra made this way can be multiplied directly.
+     */
+    void transform2d(double[] re, double[] im, boolean inverse){
+        int n = size;
+        for(int row = 0; row < n; ++row){
+            transform(re, im, row * n, inverse);
+        }
+        transpose(re, n);
+        transpose(im, n);
+        for(int row = 0; row < n; ++row){
+            transform(re, im, row * n, inverse);
+        }
+    }
+
+    private static void transpose(double[] values, int n){
+        for(int y = 0; y < n; ++y){
+            int rowPos = y * n;
+            for(int x = y + 1; x < n; ++x){
+                int a = rowPos + x;
+                int b = x * n + y;
+                double t = values[a];
+                values[a] = values[b];
+                values[b] = t;
+            }
+        }
+    }
+}
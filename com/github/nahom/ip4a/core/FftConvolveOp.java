@@ -0,0 +1,339 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Convolves with a {@link Kernel} in the frequency domain, for large kernels whose
+ * direct cost of one multiply-add per tap and pixel is too high. Results match
+ * {@link ConvolveOp} up to rounding.
+ * <p>
+ * The output is cut into tiles. Each tile is read together with the halo the kernel
+ * needs into a power of two block, transformed, multiplied by the kernel's spectrum
+ * and transformed back; the halo part of the result is dropped and the rest is
+ * exact (overlap-save). Red and green travel as the real and imaginary part of one
+ * complex block, so a tile costs two forward and two inverse transforms.
+ * <p>
+ * Each call picks the block size that {@link Convolutions} estimates cheapest for
+ * the rectangle asked for, so short bands of rows get small blocks. Kernel spectra
+ * are kept in a small cache shared by all ops, keyed by kernel and block size, so a
+ * new op for the same kernel reuses them; the twiddle factors are computed once per
+ * block size. Work arrays are borrowed for each call from a shared free list that
+ * keeps at most one set per processor and block size. Tiles are independent, so
+ * bands of rows run in parallel like any other op.
+ * <p>
+ * Alpha is taken from the center pixel, and the frame and {@link Border} handling
+ * are the same as ConvolveOp's.
+ */
+public final class FftConvolveOp implements BorderedOp {
+
+    public static final int MIN_BLOCK_SIZE = 16;
+    public static final int MAX_BLOCK_SIZE = 512;
+
+    // keeps sums that are whole numbers in exact arithmetic from rounding down
+    private static final double EPSILON = 1e-6;
+    private static final long MAX_CACHED_SPECTRUM_BYTES = 32L * 1024 * 1024;
+    private static final int LEVELS = Integer.numberOfTrailingZeros(MAX_BLOCK_SIZE) + 1;
+
+    // least recently used first
+    private static final LinkedHashMap<SpectrumKey, Spectrum> SPECTRA =
+            new LinkedHashMap<SpectrumKey, Spectrum>(16, 0.75f, true);
+    private static long cachedSpectrumBytes;
+    // idle work arrays per log2 of the block size, linked through Block.next
+    private static final Block[] FREE_BLOCKS = new Block[LEVELS];
+    private static final int[] FREE_COUNTS = new int[LEVELS];
+
+    private final Kernel kernel;
+    private final Border border;
+    private final int radiusX;
+    private final int radiusY;
+
+    public FftConvolveOp(Kernel kernel){
+        this(kernel, Border.NONE);
+    }
+
+    public FftConvolveOp(Kernel kernel, Border border){
+        if(kernel.getWidth() >= MAX_BLOCK_SIZE || kernel.getHeight() >= MAX_BLOCK_SIZE){
+            throw new IllegalArgumentException("kernel must be smaller than " + MAX_BLOCK_SIZE + ", got "
+                    + kernel.getWidth() + "x" + kernel.getHeight());
+        }
+        this.kernel = kernel;
+        this.border = border;
+        this.radiusX = kernel.getRadiusX();
+        this.radiusY = kernel.getRadiusY();
+    }
+
+    private Spectrum spectrum(int n){
+        SpectrumKey key = new SpectrumKey(kernel, n);
+        synchronized(SPECTRA){
+            Spectrum cached = SPECTRA.get(key);
+            if(cached != null){
+                return cached;
+            }
+        }
+        // computed outside the lock; two threads may both compute it, the result is the same
+        Spectrum spectrum = new Spectrum(kernel, Fft.forSize(n));
+        long bytes = spectrumBytes(n);
+        if(bytes > MAX_CACHED_SPECTRUM_BYTES){
+            return spectrum;
+        }
+        synchronized(SPECTRA){
+            if(SPECTRA.put(key, spectrum) == null){
+                cachedSpectrumBytes += bytes;
+            }
+            Iterator<Map.Entry<SpectrumKey, Spectrum>> eldest = SPECTRA.entrySet().iterator();
+            while(cachedSpectrumBytes > MAX_CACHED_SPECTRUM_BYTES){
+                Map.Entry<SpectrumKey, Spectrum> entry = eldest.next();
+                cachedSpectrumBytes -= spectrumBytes(entry.getKey().size);
+                eldest.remove();
+            }
+        }
+        return spectrum;
+    }
+
+    private static long spectrumBytes(int n){
+        return 2L * n * n * 8;
+    }
+
+    private static Block takeBlock(int n){
+        int level = Integer.numberOfTrailingZeros(n);
+        synchronized(FREE_BLOCKS){
+            Block block = FREE_BLOCKS[level];
+            if(block != null){
+                FREE_BLOCKS[level] = block.next;
+                block.next = null;
+                --FREE_COUNTS[level];
+                return block;
+            }
+        }
+        return new Block(n);
+    }
+
+    private static void giveBlock(Block block){
+        int level = Integer.numberOfTrailingZeros(block.size);
+        synchronized(FREE_BLOCKS){
+            // one set per thread that can filter at once is all a parallel call uses
+            if(FREE_COUNTS[level] < Runtime.getRuntime().availableProcessors()){
+                block.next = FREE_BLOCKS[level];
+                FREE_BLOCKS[level] = block;
+                ++FREE_COUNTS[level];
+            }
+        }
+    }
+
+    public Kernel getKernel(){
+        return kernel;
+    }
+
+    @Override
+    public Border getBorder(){
+        return border;
+    }
+
+    @Override
+    public int getRadius(){
+        return Math.max(radiusX, radiusY);
+    }
+
+    @Override
+    public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+        if(left >= right || top >= bottom){
+            return;
+        }
+        int x0 = left, y0 = top, x1 = right, y1 = bottom;
+        if(border.isNone()){
+            x0 = Math.max(left, radiusX);
+            x1 = Math.min(right, src.getWidth() - radiusX);
+            y0 = Math.max(top, radiusY);
+            y1 = Math.min(bottom, src.getHeight() - radiusY);
+            if(x0 >= x1 || y0 >= y1){
+                clear(dst, left, top, right, bottom);
+                return;
+            }
+            clear(dst, left, top, right, y0);
+            clear(dst, left, y1, right, bottom);
+            clear(dst, left, y0, x0, y1);
+            clear(dst, x1, y0, right, y1);
+        }
+        int n = Convolutions.bestBlockSize(kernel.getWidth(), kernel.getHeight(), x1 - x0, y1 - y0);
+        Spectrum spectrum = spectrum(n);
+        Block block = takeBlock(n);
+        try{
+            int tileWidth = n - 2 * radiusX;
+            int tileHeight = n - 2 * radiusY;
+            for(int y = y0; y < y1; y += tileHeight){
+                for(int x = x0; x < x1; x += tileWidth){
+                    filterTile(src, dst, x, y, Math.min(tileWidth, x1 - x), Math.min(tileHeight, y1 - y), spectrum, block);
+                }
+            }
+        }finally{
+            giveBlock(block);
+        }
+    }
+
+    private static void clear(IntRaster dst, int left, int top, int right, int bottom){
+        for(int y = top; y < bottom; ++y){
+            int start = dst.index(left, y);
+            for(int i = 0; i < right - left; ++i){
+                dst.getPixels()[start + i] = 0;
+            }
+        }
+    }
+
+    private void filterTile(IntRaster src, IntRaster dst, int left, int top, int width, int height,
+                            Spectrum spectrum, Block block){
+        int n = block.size;
+        int readWidth = width + 2 * radiusX;
+        int readHeight = height + 2 * radiusY;
+        // where each block column and row reads from, -1 for the border color
+        for(int x = 0; x < readWidth; ++x){
+            block.columns[x] = border.map(left - radiusX + x, src.getWidth());
+        }
+        for(int y = 0; y < readHeight; ++y){
+            block.rows[y] = border.map(top - radiusY + y, src.getHeight());
+        }
+        int[] in = src.getPixels();
+        int color = border.getColor();
+        double[] re = block.re;
+        double[] im = block.im;
+        double[] blue = block.blue;
+        double[] zero = block.zero;
+        clearBlock(block);
+        for(int y = 0; y < readHeight; ++y){
+            int row = block.rows[y];
+            int pos = y * n;
+            int rowPos = row < 0 ? 0 : src.index(0, row);
+            for(int x = 0; x < readWidth; ++x){
+                int column = block.columns[x];
+                int pixel = row < 0 || column < 0 ? color : in[rowPos + column];
+                re[pos + x] = (pixel >> 16) & 0xFF;
+                im[pos + x] = (pixel >> 8) & 0xFF;
+                blue[pos + x] = pixel & 0xFF;
+            }
+        }
+        spectrum.convolve(re, im);
+        spectrum.convolve(blue, zero);
+
+        int[] out = dst.getPixels();
+        double offset = kernel.getOffset() + EPSILON;
+        for(int y = 0; y < height; ++y){
+            int pos = (y + radiusY) * n + radiusX;
+            int center = src.index(left, top + y);
+            int outPos = dst.index(left, top + y);
+            for(int x = 0; x < width; ++x){
+                int r = channel(re[pos + x] + offset);
+                int g = channel(im[pos + x] + offset);
+                int b = channel(blue[pos + x] + offset);
+                out[outPos + x] = (in[center + x] & 0xFF000000) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private static void clearBlock(Block block){
+        Arrays.fill(block.re, 0);
+        Arrays.fill(block.im, 0);
+        Arrays.fill(block.blue, 0);
+        Arrays.fill(block.zero, 0);
+    }
+
+    private static int channel(double value){
+        if(value <= 0){
+            return 0;
+        }
+        if(value >= 255){
+            return 255;
+        }
+        return (int) value;
+    }
+
+    /**
+     * The kernel's transform at one block size.
+     */
+    private static final class Spectrum {
+        private final Fft fft;
+        private final double[] re;
+        private final double[] im;
+
+        Spectrum(Kernel kernel, Fft fft){
+            this.fft = fft;
+            int n = fft.getSize();
+            re = new double[n * n];
+            im = new double[n * n];
+            // correlation as ConvolveOp computes it: tap (dx, dy) goes to (-dx, -dy) mod n;
+            // the 1 / n^2 of the inverse transform is folded in
+            double scale = 1.0 / (kernel.getFactor() * n * n);
+            for(int ky = 0; ky < kernel.getHeight(); ++ky){
+                for(int kx = 0; kx < kernel.getWidth(); ++kx){
+                    int x = (kernel.getRadiusX() - kx + n) % n;
+                    int y = (kernel.getRadiusY() - ky + n) % n;
+                    re[y * n + x] = kernel.getWeight(kx, ky) * scale;
+                }
+            }
+            fft.transform2d(re, im, false);
+        }
+
+        /**
+         * Replaces the block with its circular convolution with the kernel.
+         */
+        void convolve(double[] blockRe, double[] blockIm){
+            fft.transform2d(blockRe, blockIm, false);
+            for(int i = 0; i < blockRe.length; ++i){
+                double a = blockRe[i];
+                double b = blockIm[i];
+                blockRe[i] = a * re[i] - b * im[i];
+                blockIm[i] = a * im[i] + b * re[i];
+            }
+            fft.transform2d(blockRe, blockIm, true);
+        }
+    }
+
+    private static final class SpectrumKey {
+        private final Kernel kernel;
+        private final int size;
+
+        SpectrumKey(Kernel kernel, int size){
+            this.kernel = kernel;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof SpectrumKey)){
+                return false;
+            }
+            SpectrumKey other = (SpectrumKey) o;
+            return size == other.size && kernel.equals(other.kernel);
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * kernel.hashCode() + size;
+        }
+    }
+
+    /**
+     * Work arrays for one block size, used by one call at a time.
+     */
+    private static final class Block {
+        final int size;
+        final double[] re;
+        final double[] im;
+        final double[] blue;
+        final double[] zero;
+        final int[] columns;
+        final int[] rows;
+        Block next;
+
+        Block(int n){
+            size = n;
+            re = new double[n * n];
+            im = new double[n * n];
+            blue = new double[n * n];
+            zero = new double[n * n];
+            columns = new int[n];
+            rows = new int[n];
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Receives a callback around every filter call, for metrics. See
+ * {@link FilterRecorder} for an in-memory implementation.
+ */
+public interface FilterListener {
+
+    /**
+     * Called on the filtering thread before the filter starts.
+     *
+     * @return any object to hand back to {@link #filterFinished}, for example an open trace span; may be null
+     */
+    Object filterStarted(String filter);
+
+    /**
+     * Called on the same thread once the filter has returned or thrown.
+     *
+     * @param token          what filterStarted returned
+     * @param nanos          wall time of the call
+     * @param allocatedBytes bytes of new pixel buffers the {@link PixelBufferPool#getDefault() default pool}
+     *                       had to allocate meanwhile, including those of other filters running concurrently
+     */
+    void filterFinished(Object token, String filter, int width, int height, long nanos, long allocatedBytes);
+}
@@ -0,0 +1,161 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps running totals per filter name: calls, wall time, pixels and pool
+ * allocations. Recording takes one map lookup and a few additions under a lock
+ * private to that filter.
+ */
+public final class FilterRecorder implements FilterListener {
+
+    private final ConcurrentMap<String, Totals> totals = new ConcurrentHashMap<String, Totals>();
+
+    @Override
+    public Object filterStarted(String filter){
+        return null;
+    }
+
+    @Override
+    public void filterFinished(Object token, String filter, int width, int height, long nanos, long allocatedBytes){
+        Totals entry = totals.get(filter);
+        if(entry == null){
+            Totals created = new Totals();
+            entry = totals.putIfAbsent(filter, created);
+            if(entry == null){
+                entry = created;
+            }
+        }
+        entry.add(width, height, nanos, allocatedBytes);
+    }
+
+    /**
+     * @return the filters recorded so far, sorted by name
+     */
+    public List<String> getFilters(){
+        List<String> names = new ArrayList<String>(totals.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * @return a snapshot of the totals for filter, or null if it never ran
+     */
+    public FilterStats getStats(String filter){
+        Totals entry = totals.get(filter);
+        return entry == null ? null : entry.snapshot(filter);
+    }
+
+    public void reset(){
+        totals.clear();
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder text = new StringBuilder();
+        for(String filter : getFilters()){
+            FilterStats stats = getStats(filter);
+            text.append(String.format(Locale.ROOT,
+                    "%-24s %8d calls, mean %9.3f ms, max %9.3f ms, %8.1f MP/s, %10d bytes allocated, largest %dx%d%n",
+                    filter, stats.getCount(), stats.getMeanNanos() / 1e6, stats.getMaxNanos() / 1e6,
+                    stats.getMegapixelsPerSecond(), stats.getAllocatedBytes(),
+                    stats.getMaxWidth(), stats.getMaxHeight()));
+        }
+        return text.toString();
+    }
+
+    private static final class Totals {
+        private long count;
+        private long nanos;
+        private long maxNanos;
+        private long pixels;
+        private long allocatedBytes;
+        private int maxWidth;
+        private int maxHeight;
+
+        synchronized void add(int width, int height, long nanos, long allocatedBytes){
+            ++count;
+            this.nanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            pixels += (long) width * height;
+            this.allocatedBytes += allocatedBytes;
+            if((long) width * height > (long) maxWidth * maxHeight){
+                maxWidth = width;
+                maxHeight = height;
+            }
+        }
+
+        synchronized FilterStats snapshot(String filter){
+            return new FilterStats(filter, count, nanos, maxNanos, pixels, allocatedBytes, maxWidth, maxHeight);
+        }
+    }
+
+    public static final class FilterStats {
+        private final String filter;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long pixels;
+        private final long allocatedBytes;
+        private final int maxWidth;
+        private final int maxHeight;
+
+        FilterStats(String filter, long count, long totalNanos, long maxNanos, long pixels,
+                    long allocatedBytes, int maxWidth, int maxHeight){
+            this.filter = filter;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.pixels = pixels;
+            this.allocatedBytes = allocatedBytes;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        public String getFilter(){
+            return filter;
+        }
+
+        public long getCount(){
+            return count;
+        }
+
+        public long getTotalNanos(){
+            return totalNanos;
+        }
+
+        public long getMeanNanos(){
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        public long getMaxNanos(){
+            return maxNanos;
+        }
+
+        public long getPixels(){
+            return pixels;
+        }
+
+        public double getMegapixelsPerSecond(){
+            return totalNanos == 0 ? 0 : pixels * 1e3 / totalNanos;
+        }
+
+        public long getAllocatedBytes(){
+            return allocatedBytes;
+        }
+
+        /** Size of the largest image filtered. */
+        public int getMaxWidth(){
+            return maxWidth;
+        }
+
+        public int getMaxHeight(){
+            return maxHeight;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Measures one filter call for a {@link FilterListener}. {@link #start} returns
+ * null when there is no listener, so unmonitored calls cost a null check:
+ * <pre>
+ * FilterTimer timer = FilterTimer.start(listener, "sharpen");
+ * try{
+ *     ...
+ * }finally{
+ *     if(timer != null){
+ *         timer.stop(width, height);
+ *     }
+ * }
+ * </pre>
+ * Stopping in a finally block reports calls that throw as well, so a listener's
+ * begun span or event is always ended.
+ */
+public final class FilterTimer {
+
+    private final FilterListener listener;
+    private final String filter;
+    private final Object token;
+    private final long allocatedBytes;
+    private final long start;
+
+    private FilterTimer(FilterListener listener, String filter){
+        this.listener = listener;
+        this.filter = filter;
+        this.token = listener.filterStarted(filter);
+        this.allocatedBytes = PixelBufferPool.getDefault().getAllocatedBytes();
+        this.start = System.nanoTime();
+    }
+
+    public static FilterTimer start(FilterListener listener, String filter){
+        return listener == null ? null : new FilterTimer(listener, filter);
+    }
+
+    public void stop(int width, int height){
+        long nanos = System.nanoTime() - start;
+        long allocated = PixelBufferPool.getDefault().getAllocatedBytes() - allocatedBytes;
+        listener.filterFinished(token, filter, width, height, nanos, allocated);
+    }
+}
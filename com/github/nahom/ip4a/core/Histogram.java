@@ -0,0 +1,226 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Counts of each level of the red, green, blue, luminance and alpha channels of an
+ * image, with the statistics derived from them. One pass over the pixels fills all
+ * five: every band of rows counts into its own arrays and the bands are summed at
+ * the end, so threads never share a counter.
+ * <p>
+ * Luminance is the level {@link PointOps#grayscale()} would give the pixel.
+ */
+public final class Histogram {
+
+    public static final int RED = 0;
+    public static final int GREEN = 1;
+    public static final int BLUE = 2;
+    public static final int LUMINANCE = 3;
+    public static final int ALPHA = 4;
+
+    private static final int CHANNELS = 5;
+    private static final int LEVELS = 256;
+
+    private final int[] counts;
+    private final long pixels;
+
+    private Histogram(int[] counts, long pixels){
+        this.counts = counts;
+        this.pixels = pixels;
+    }
+
+    public static Histogram of(IntRaster src){
+        return of(src, TileExecutor.getDefault());
+    }
+
+    public static Histogram of(final IntRaster src, TileExecutor executor){
+        final int[] totals = new int[CHANNELS * LEVELS];
+        final double[] wr = PointOps.weightTable(PointOps.GRAYSCALE_RED);
+        final double[] wg = PointOps.weightTable(PointOps.GRAYSCALE_GREEN);
+        final double[] wb = PointOps.weightTable(PointOps.GRAYSCALE_BLUE);
+        executor.run(new TileExecutor.RowTask(){
+            @Override
+            public void run(int top, int bottom){
+                int[] red = new int[LEVELS];
+                int[] green = new int[LEVELS];
+                int[] blue = new int[LEVELS];
+                int[] luminance = new int[LEVELS];
+                int[] alpha = new int[LEVELS];
+                int[] in = src.getPixels();
+                int width = src.getWidth();
+                for(int y = top; y < bottom; ++y){
+                    int pos = src.index(0, y);
+                    for(int x = 0; x < width; ++x){
+                        int pixel = in[pos + x];
+                        int r = (pixel >> 16) & 0xFF;
+                        int g = (pixel >> 8) & 0xFF;
+                        int b = pixel & 0xFF;
+                        ++red[r];
+                        ++green[g];
+                        ++blue[b];
+                        ++luminance[PointOps.clamp((int)(wr[r] + wg[g] + wb[b]))];
+                        ++alpha[pixel >>> 24];
+                    }
+                }
+                synchronized(totals){
+                    add(totals, RED, red);
+                    add(totals, GREEN, green);
+                    add(totals, BLUE, blue);
+                    add(totals, LUMINANCE, luminance);
+                    add(totals, ALPHA, alpha);
+                }
+            }
+        }, src.getWidth(), 0, src.getHeight());
+        return new Histogram(totals, (long) src.getWidth() * src.getHeight());
+    }
+
+    /**
+     * Histogram of a gray raster, whose level counts as red, green, blue and luminance
+     * alike. Alpha is opaque throughout.
+     */
+    public static Histogram of(final ByteRaster src, TileExecutor executor){
+        final int[] totals = new int[CHANNELS * LEVELS];
+        executor.run(new TileExecutor.RowTask(){
+            @Override
+            public void run(int top, int bottom){
+                int[] gray = new int[LEVELS];
+                byte[] in = src.getPixels();
+                int width = src.getWidth();
+                for(int y = top; y < bottom; ++y){
+                    int pos = src.index(0, y);
+                    for(int x = 0; x < width; ++x){
+                        ++gray[in[pos + x] & 0xFF];
+                    }
+                }
+                synchronized(totals){
+                    add(totals, LUMINANCE, gray);
+                }
+            }
+        }, src.getWidth(), 0, src.getHeight());
+        for(int channel = RED; channel <= BLUE; ++channel){
+            System.arraycopy(totals, LUMINANCE * LEVELS, totals, channel * LEVELS, LEVELS);
+        }
+        totals[ALPHA * LEVELS + 255] = src.getWidth() * src.getHeight();
+        return new Histogram(totals, (long) src.getWidth() * src.getHeight());
+    }
+
+    private static void add(int[] totals, int channel, int[] counts){
+        int base = channel * LEVELS;
+        for(int i = 0; i < LEVELS; ++i){
+            totals[base + i] += counts[i];
+        }
+    }
+
+    private static void checkChannel(int channel){
+        if(channel < 0 || channel >= CHANNELS){
+            throw new IllegalArgumentException("unknown channel " + channel);
+        }
+    }
+
+    public long getPixelCount(){
+        return pixels;
+    }
+
+    /**
+     * @return how many pixels have the given level in the channel
+     */
+    public int getCount(int channel, int level){
+        checkChannel(channel);
+        if(level < 0 || level >= LEVELS){
+            throw new IllegalArgumentException("level must be in 0..255, got " + level);
+        }
+        return counts[channel * LEVELS + level];
+    }
+
+    /**
+     * @return a copy of the 256 counts of the channel
+     */
+    public int[] getCounts(int channel){
+        checkChannel(channel);
+        int[] copy = new int[LEVELS];
+        System.arraycopy(counts, channel * LEVELS, copy, 0, LEVELS);
+        return copy;
+    }
+
+    /**
+     * @return the lowest level present in the channel, 0 for an empty image
+     */
+    public int getMin(int channel){
+        checkChannel(channel);
+        int base = channel * LEVELS;
+        for(int level = 0; level < LEVELS; ++level){
+            if(counts[base + level] != 0){
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the highest level present in the channel, 0 for an empty image
+     */
+    public int getMax(int channel){
+        checkChannel(channel);
+        int base = channel * LEVELS;
+        for(int level = LEVELS - 1; level >= 0; --level){
+            if(counts[base + level] != 0){
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    public double getMean(int channel){
+        checkChannel(channel);
+        if(pixels == 0){
+            return 0;
+        }
+        int base = channel * LEVELS;
+        long sum = 0;
+        for(int level = 0; level < LEVELS; ++level){
+            sum += (long) level * counts[base + level];
+        }
+        return (double) sum / pixels;
+    }
+
+    /**
+     * @param percent 0..100
+     * @return the lowest level that at least percent of the pixels are at or below
+     */
+    public int getPercentile(int channel, double percent){
+        checkChannel(channel);
+        if(!(percent >= 0 && percent <= 100)){
+            throw new IllegalArgumentException("percent must be in 0..100, got " + percent);
+        }
+        if(pixels == 0){
+            return 0;
+        }
+        double wanted = Math.max(1, Math.ceil(pixels * percent / 100));
+        int base = channel * LEVELS;
+        long seen = 0;
+        for(int level = 0; level < LEVELS; ++level){
+            seen += counts[base + level];
+            if(seen >= wanted){
+                return level;
+            }
+        }
+        return LEVELS - 1;
+    }
+
+    public int getMedian(int channel){
+        return getPercentile(channel, 50);
+    }
+
+    /**
+     * @return the cumulative counts of the channel: entry i is the number of pixels at level i or below
+     */
+    public long[] getCumulative(int channel){
+        checkChannel(channel);
+        long[] cumulative = new long[LEVELS];
+        int base = channel * LEVELS;
+        long seen = 0;
+        for(int level = 0; level < LEVELS; ++level){
+            seen += counts[base + level];
+            cumulative[level] = seen;
+        }
+        return cumulative;
+    }
+}
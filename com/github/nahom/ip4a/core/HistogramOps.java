@@ -0,0 +1,99 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Tone corrections whose parameters come from the image's own {@link Histogram}
+ * instead of being tuned by hand. Each one is a table per channel, so applying it
+ * is a single {@link PointOpChain} pass that can be chained with other steps.
+ */
+public final class HistogramOps {
+
+    /** Share of the darkest and of the lightest pixels the auto filters let clip. */
+    public static final double DEFAULT_CLIP_PERCENT = 0.1;
+
+    private HistogramOps(){
+    }
+
+    /**
+     * Stretches each channel on its own so its darkest clipPercent of pixels become 0
+     * and its lightest clipPercent become 255. Stretching the channels separately
+     * also removes a color cast.
+     */
+    public static PointOp autoLevels(Histogram histogram, double clipPercent){
+        return new PointOpChain().map(
+                stretch(histogram, Histogram.RED, clipPercent),
+                stretch(histogram, Histogram.GREEN, clipPercent),
+                stretch(histogram, Histogram.BLUE, clipPercent)).build();
+    }
+
+    /**
+     * Stretches all channels by the same table, spanning the darkest and lightest
+     * channel levels after clipping, so colors keep their hue.
+     */
+    public static PointOp autoContrast(Histogram histogram, double clipPercent){
+        checkClip(clipPercent);
+        int low = 255;
+        int high = 0;
+        for(int channel = Histogram.RED; channel <= Histogram.BLUE; ++channel){
+            low = Math.min(low, histogram.getPercentile(channel, clipPercent));
+            high = Math.max(high, histogram.getPercentile(channel, 100 - clipPercent));
+        }
+        int[] table = stretchTable(low, high);
+        return new PointOpChain().map(table, table, table).build();
+    }
+
+    /**
+     * Spreads the levels of each channel so they are used about equally often.
+     */
+    public static PointOp equalize(Histogram histogram){
+        return new PointOpChain().map(
+                equalizeTable(histogram, Histogram.RED),
+                equalizeTable(histogram, Histogram.GREEN),
+                equalizeTable(histogram, Histogram.BLUE)).build();
+    }
+
+    /**
+     * @return a table mapping low to 0 and high to 255 linearly, clamping outside;
+     *         the identity if high is not above low
+     */
+    public static int[] stretchTable(int low, int high){
+        if(high <= low){
+            return PointOps.identityTable();
+        }
+        int[] table = new int[256];
+        double scale = 255.0 / (high - low);
+        for(int i = 0; i < 256; ++i){
+            table[i] = PointOps.clamp((int) Math.round((i - low) * scale));
+        }
+        return table;
+    }
+
+    /**
+     * @return the table that maps each level of the channel to its rank in the
+     *         cumulative histogram, with the lowest level present going to 0
+     */
+    public static int[] equalizeTable(Histogram histogram, int channel){
+        long[] cumulative = histogram.getCumulative(channel);
+        long lowest = cumulative[histogram.getMin(channel)];
+        long range = histogram.getPixelCount() - lowest;
+        if(range <= 0){
+            return PointOps.identityTable();
+        }
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = PointOps.clamp((int) Math.round((cumulative[i] - lowest) * 255.0 / range));
+        }
+        return table;
+    }
+
+    private static int[] stretch(Histogram histogram, int channel, double clipPercent){
+        checkClip(clipPercent);
+        return stretchTable(histogram.getPercentile(channel, clipPercent),
+                histogram.getPercentile(channel, 100 - clipPercent));
+    }
+
+    private static void checkClip(double clipPercent){
+        if(!(clipPercent >= 0 && clipPercent < 50)){
+            throw new IllegalArgumentException("clip percent must be in [0, 50), got " + clipPercent);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Hue and saturation filters computed directly on packed pixels.
+ * <p>
+ * The conversions follow the float arithmetic of Android's Color.colorToHSV and
+ * Color.HSVToColor step by step, so results match the framework while avoiding two
+ * native calls and a shared float[3] per pixel. Value and its rounded byte only
+ * depend on the largest channel and come from tables.
+ * <p>
+ * Like the original IP4A filters the converted color is ORed into the source
+ * pixel, which also makes the result opaque.
+ */
+public final class HsvOps {
+
+    private static final float NEARLY_ZERO = 1.0f / (1 << 12);
+    private static final float[] VALUE = new float[256];
+    private static final int[] VALUE_BYTE = new int[256];
+
+    static {
+        for(int i = 0; i < 256; ++i){
+            VALUE[i] = i / 255f;
+            VALUE_BYTE[i] = round(VALUE[i] * 255);
+        }
+    }
+
+    private HsvOps(){
+    }
+
+    /**
+     * Multiplies the hue angle by factor and clamps it to 0..360.
+     */
+    public static PointOp hue(final float factor){
+        return new PointOp(){
+            @Override
+            protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+                for(int i = 0; i < length; ++i){
+                    int pixel = in[inPos + i];
+                    int r = (pixel >> 16) & 0xFF;
+                    int g = (pixel >> 8) & 0xFF;
+                    int b = pixel & 0xFF;
+                    int max = Math.max(r, Math.max(g, b));
+                    int delta = max - Math.min(r, Math.min(g, b));
+                    if(delta == 0){
+                        out[outPos + i] = pixel | gray(max);
+                        continue;
+                    }
+                    float h = hue(r, g, b, max, delta) * factor;
+                    h = Math.max(0f, Math.min(h, 360f));
+                    out[outPos + i] = pixel | toColor(h, (float) delta / max, max);
+                }
+            }
+        };
+    }
+
+    /**
+     * Multiplies the saturation by factor and clamps it to 0..1.
+     */
+    public static PointOp saturation(final float factor){
+        return new PointOp(){
+            @Override
+            protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+                for(int i = 0; i < length; ++i){
+                    int pixel = in[inPos + i];
+                    int r = (pixel >> 16) & 0xFF;
+                    int g = (pixel >> 8) & 0xFF;
+                    int b = pixel & 0xFF;
+                    int max = Math.max(r, Math.max(g, b));
+                    int delta = max - Math.min(r, Math.min(g, b));
+                    if(delta == 0){
+                        out[outPos + i] = pixel | gray(max);
+                        continue;
+                    }
+                    float s = ((float) delta / max) * factor;
+                    s = Math.max(0f, Math.min(s, 1f));
+                    out[outPos + i] = pixel | toColor(hue(r, g, b, max, delta), s, max);
+                }
+            }
+        };
+    }
+
+    private static int round(float value){
+        return (int) Math.floor(value + 0.5f);
+    }
+
+    private static int gray(int max){
+        int v = VALUE_BYTE[max];
+        return 0xFF000000 | (v << 16) | (v << 8) | v;
+    }
+
+    /**
+     * @return the hue in degrees, 0 up to but excluding 360, of a non-gray color
+     */
+    static float hue(int r, int g, int b, int max, int delta){
+        float h;
+        if(r == max){
+            h = (float)(g - b) / delta;
+        }else if(g == max){
+            h = 2 + (float)(b - r) / delta;
+        }else{
+            h = 4 + (float)(r - g) / delta;
+        }
+        h *= 60;
+        if(h < 0){
+            h += 360;
+        }
+        return h;
+    }
+
+    /**
+     * @param max the largest channel of the original color, which fixes the value
+     * @return an opaque color with the given hue and saturation
+     */
+    static int toColor(float h, float s, int max){
+        if(Math.abs(s) <= NEARLY_ZERO){
+            return gray(max);
+        }
+        float v = VALUE[max];
+        float hx = (h < 0 || h >= 360f) ? 0 : h / 60;
+        float w = (float) Math.floor(hx);
+        float f = hx - w;
+        int vb = VALUE_BYTE[max];
+        int p = round((1 - s) * v * 255);
+        int q = round((1 - (s * f)) * v * 255);
+        int t = round((1 - (s * (1 - f))) * v * 255);
+        int r, g, b;
+        switch((int) w){
+            case 0:
+                r = vb; g = t; b = p;
+                break;
+            case 1:
+                r = q; g = vb; b = p;
+                break;
+            case 2:
+                r = p; g = vb; b = t;
+                break;
+            case 3:
+                r = p; g = q; b = vb;
+                break;
+            case 4:
+                r = t; g = p; b = vb;
+                break;
+            default:
+                r = vb; g = p; b = q;
+                break;
+        }
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An image and successive half resolution copies of it, each made from the one
+ * before with {@link Resample#half}, down to a minimum size. All levels together
+ * take a third more memory than the image.
+ * <p>
+ * Any smaller size is then an area average from the nearest level at least that
+ * large, which reads a few times the output's pixels instead of the whole image.
+ * {@link #thumbnails} filters once at the level of the largest thumbnail and scales
+ * the rest from that result, instead of filtering the full image and every size.
+ */
+public final class ImagePyramid {
+
+    public static final int DEFAULT_MIN_SIZE = 16;
+
+    private final IntRaster[] levels;
+    private final TileExecutor executor;
+
+    public ImagePyramid(IntRaster source){
+        this(source, DEFAULT_MIN_SIZE, TileExecutor.getDefault());
+    }
+
+    /**
+     * @param minSize levels are added while the longer side of the last one exceeds this
+     */
+    public ImagePyramid(IntRaster source, int minSize, TileExecutor executor){
+        if(minSize < 1){
+            throw new IllegalArgumentException("minimum size must be positive, got " + minSize);
+        }
+        this.executor = executor;
+        List<IntRaster> built = new ArrayList<IntRaster>();
+        built.add(source);
+        IntRaster level = source;
+        while(Math.max(level.getWidth(), level.getHeight()) > minSize && level.getWidth() > 1 && level.getHeight() > 1){
+            IntRaster next = new IntRaster(Resample.halfSize(level.getWidth()), Resample.halfSize(level.getHeight()));
+            Resample.half(level, next, executor);
+            built.add(next);
+            level = next;
+        }
+        levels = built.toArray(new IntRaster[built.size()]);
+    }
+
+    public int getLevelCount(){
+        return levels.length;
+    }
+
+    /**
+     * @param level 0 for the source, each next one half its size
+     */
+    public IntRaster getLevel(int level){
+        return levels[level];
+    }
+
+    /**
+     * @return the index of the smallest level at least width x height, 0 if only the source is
+     */
+    public int levelFor(int width, int height){
+        int level = 0;
+        while(level + 1 < levels.length && levels[level + 1].getWidth() >= width
+                && levels[level + 1].getHeight() >= height){
+            ++level;
+        }
+        return level;
+    }
+
+    /**
+     * @return the image averaged down to width x height from the nearest level
+     */
+    public IntRaster resize(int width, int height){
+        IntRaster level = levels[levelFor(width, height)];
+        if(level.getWidth() == width && level.getHeight() == height){
+            return level.copy();
+        }
+        IntRaster dst = new IntRaster(width, height);
+        Resample.resize(level, dst, executor);
+        return dst;
+    }
+
+    /**
+     * Makes a filtered thumbnail per size. The op runs once, at the pyramid level
+     * the largest thumbnail comes from, so kernel sizes are in that level's pixels;
+     * the other thumbnails are averaged down from its result.
+     *
+     * @param op       run before scaling, may be null
+     * @param maxSides the longer side of each thumbnail; the aspect ratio is kept and
+     *                 thumbnails are never larger than the source
+     * @return one thumbnail per entry of maxSides, in the same order
+     */
+    public IntRaster[] thumbnails(RasterOp op, int... maxSides){
+        IntRaster[] thumbnails = new IntRaster[maxSides.length];
+        if(maxSides.length == 0){
+            return thumbnails;
+        }
+        int largest = 0;
+        for(int i = 1; i < maxSides.length; ++i){
+            if(maxSides[i] > maxSides[largest]){
+                largest = i;
+            }
+        }
+        IntRaster source = levels[0];
+        int[] size = fit(source, maxSides[largest]);
+        IntRaster base = levels[levelFor(size[0], size[1])];
+        if(op != null){
+            IntRaster filtered = new IntRaster(base.getWidth(), base.getHeight());
+            executor.apply(op, base, filtered);
+            base = filtered;
+        }
+        for(int i = 0; i < maxSides.length; ++i){
+            int[] target = fit(source, maxSides[i]);
+            if(target[0] == base.getWidth() && target[1] == base.getHeight()){
+                thumbnails[i] = base.copy();
+            }else{
+                thumbnails[i] = new IntRaster(target[0], target[1]);
+                Resample.resize(base, thumbnails[i], executor);
+            }
+        }
+        return thumbnails;
+    }
+
+    /**
+     * @return {width, height} of src scaled so its longer side is at most maxSide
+     */
+    private static int[] fit(IntRaster src, int maxSide){
+        if(maxSide < 1){
+            throw new IllegalArgumentException("thumbnail size must be positive, got " + maxSide);
+        }
+        int longest = Math.max(src.getWidth(), src.getHeight());
+        if(longest <= maxSide){
+            return new int[]{src.getWidth(), src.getHeight()};
+        }
+        double scale = (double) maxSide / longest;
+        return new int[]{Math.max(1, (int) Math.round(src.getWidth() * scale)),
+                Math.max(1, (int) Math.round(src.getHeight() * scale))};
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps a filtered copy of a source that is edited in place, such as the canvas
+ * under a brush, and brings it up to date by recomputing only what the edits reach.
+ * <p>
+ * The output is split into square tiles. {@link #invalidate} takes a rectangle of
+ * the source that changed, grows it by the combined radius of the ops, which is as
+ * far as a source pixel can move an output pixel, and marks the tiles it touches.
+ * {@link #update} merges the marked tiles into rectangles and renders each through
+ * a {@link LazyRaster} over the source, which only reads the halo the ops need
+ * around it. A stroke therefore costs in proportion to its area, and the tiles come
+ * out exactly as if the whole image had been filtered again. With an op that reads
+ * beyond the edge with {@link Border#WRAP}, the grown rectangle wraps around to the
+ * opposite edges too.
+ * <p>
+ * Not thread safe: edit the source, invalidate and update from one thread.
+ */
+public final class IncrementalRenderer {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    public interface Listener {
+        /**
+         * Called after the output rectangle [left, right) x [top, bottom) was recomputed.
+         */
+        void onUpdated(int left, int top, int right, int bottom);
+    }
+
+    private final IntRaster output;
+    private final LazyRaster graph;
+    private final TileExecutor executor;
+    private final int footprint;
+    private final boolean wraps;
+    private final int tileSize;
+    private final int columns;
+    private final int rows;
+    private final boolean[] dirty;
+    private int dirtyCount;
+
+    public IncrementalRenderer(IntRaster source, RasterOp... ops){
+        this(source, TileExecutor.getDefault(), DEFAULT_TILE_SIZE, ops);
+    }
+
+    /**
+     * The output starts out fully dirty; the first {@link #update} renders all of it.
+     *
+     * @param source   read again wherever it is invalidated; it must not change during update
+     * @param tileSize side of the square tiles the dirty areas are rounded up to
+     */
+    public IncrementalRenderer(IntRaster source, TileExecutor executor, int tileSize, RasterOp... ops){
+        if(tileSize < 1){
+            throw new IllegalArgumentException("tile size must be at least 1, got " + tileSize);
+        }
+        LazyRaster node = LazyRaster.of(source);
+        int radius = 0;
+        boolean wrap = false;
+        for(RasterOp op : ops){
+            node = node.apply(op);
+            radius += op.getRadius();
+            wrap |= Border.wraps(op);
+        }
+        this.graph = node;
+        this.footprint = radius;
+        this.wraps = wrap;
+        this.executor = executor;
+        this.tileSize = tileSize;
+        this.output = new IntRaster(source.getWidth(), source.getHeight());
+        this.columns = (source.getWidth() + tileSize - 1) / tileSize;
+        this.rows = (source.getHeight() + tileSize - 1) / tileSize;
+        this.dirty = new boolean[columns * rows];
+        invalidateAll();
+    }
+
+    /**
+     * @return the filtered image; tiles still marked dirty are stale until the next update
+     */
+    public IntRaster getOutput(){
+        return output;
+    }
+
+    /**
+     * @return how far outside an edited source rectangle the output can change
+     */
+    public int getFootprint(){
+        return footprint;
+    }
+
+    public int getTileSize(){
+        return tileSize;
+    }
+
+    /**
+     * @return the number of tiles that the next update will recompute
+     */
+    public int getDirtyTileCount(){
+        return dirtyCount;
+    }
+
+    /**
+     * Records that the source rectangle [left, right) x [top, bottom) changed.
+     * Parts outside the image are ignored.
+     */
+    public void invalidate(int left, int top, int right, int bottom){
+        int width = output.getWidth();
+        int height = output.getHeight();
+        left = Math.max(0, left);
+        top = Math.max(0, top);
+        right = Math.min(width, right);
+        bottom = Math.min(height, bottom);
+        if(left >= right || top >= bottom){
+            return;
+        }
+        int x0 = left - footprint;
+        int y0 = top - footprint;
+        int x1 = right + footprint;
+        int y1 = bottom + footprint;
+        if(!wraps){
+            mark(x0, y0, x1, y1);
+            return;
+        }
+        if(x1 - x0 >= width){
+            x0 = 0;
+            x1 = width;
+        }
+        if(y1 - y0 >= height){
+            y0 = 0;
+            y1 = height;
+        }
+        // the parts beyond an edge come back in at the opposite one
+        for(int dy = -height; dy <= height; dy += height){
+            for(int dx = -width; dx <= width; dx += width){
+                mark(x0 + dx, y0 + dy, x1 + dx, y1 + dy);
+            }
+        }
+    }
+
+    /**
+     * Marks the tiles of the output rectangle, clipped to the image, as dirty.
+     */
+    private void mark(int left, int top, int right, int bottom){
+        int x0 = Math.max(0, left);
+        int y0 = Math.max(0, top);
+        int x1 = Math.min(output.getWidth(), right);
+        int y1 = Math.min(output.getHeight(), bottom);
+        if(x0 >= x1 || y0 >= y1){
+            return;
+        }
+        for(int row = y0 / tileSize; row <= (y1 - 1) / tileSize; ++row){
+            for(int column = x0 / tileSize; column <= (x1 - 1) / tileSize; ++column){
+                int tile = row * columns + column;
+                if(!dirty[tile]){
+                    dirty[tile] = true;
+                    ++dirtyCount;
+                }
+            }
+        }
+    }
+
+    public void invalidateAll(){
+        invalidate(0, 0, output.getWidth(), output.getHeight());
+    }
+
+    public int update(){
+        return update(null);
+    }
+
+    /**
+     * Recomputes the dirty tiles.
+     *
+     * @param listener told about each recomputed rectangle, may be null
+     * @return the number of tiles recomputed
+     */
+    public int update(Listener listener){
+        if(dirtyCount == 0){
+            return 0;
+        }
+        int updated = dirtyCount;
+        for(int[] rect : dirtyRectangles()){
+            int left = rect[0] * tileSize;
+            int top = rect[1] * tileSize;
+            int right = Math.min(output.getWidth(), rect[2] * tileSize);
+            int bottom = Math.min(output.getHeight(), rect[3] * tileSize);
+            graph.render(left, top, right, bottom, output.subRaster(left, top, right - left, bottom - top), executor);
+            if(listener != null){
+                listener.onUpdated(left, top, right, bottom);
+            }
+        }
+        Arrays.fill(dirty, false);
+        dirtyCount = 0;
+        return updated;
+    }
+
+    /**
+     * Joins the dirty tiles of each tile row into runs, and runs with the same columns
+     * in consecutive rows into one rectangle, so neighbouring tiles share their halo.
+     *
+     * @return rectangles as {left, top, right, bottom} in tiles
+     */
+    private List<int[]> dirtyRectangles(){
+        List<int[]> done = new ArrayList<int[]>();
+        List<int[]> open = new ArrayList<int[]>();
+        for(int row = 0; row < rows; ++row){
+            List<int[]> next = new ArrayList<int[]>();
+            int column = 0;
+            while(column < columns){
+                if(!dirty[row * columns + column]){
+                    ++column;
+                    continue;
+                }
+                int start = column;
+                while(column < columns && dirty[row * columns + column]){
+                    ++column;
+                }
+                int[] rect = null;
+                for(int i = 0; i < open.size(); ++i){
+                    int[] candidate = open.get(i);
+                    if(candidate[0] == start && candidate[2] == column){
+                        rect = open.remove(i);
+                        break;
+                    }
+                }
+                if(rect == null){
+                    rect = new int[]{start, row, column, row + 1};
+                }else{
+                    rect[3] = row + 1;
+                }
+                next.add(rect);
+            }
+            done.addAll(open);
+            open = next;
+        }
+        done.addAll(open);
+        return done;
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.Arrays;
+
+/**
+ * An odd sized convolution kernel. Each output channel is
+ * sum(weight * neighbour) / factor + offset, where weights are stored row by row
+ * and the middle entry lines up with the output pixel.
+ */
+public final class Kernel {
+
+    private static final double SEPARABLE_TOLERANCE = 1e-9;
+
+    private final int width;
+    private final int height;
+    private final double[] weights;
+    private final double factor;
+    private final double offset;
+
+    public Kernel(int width, int height, double[] weights, double factor, double offset){
+        if(width < 1 || height < 1 || (width & 1) == 0 || (height & 1) == 0){
+            throw new IllegalArgumentException("kernel size must be odd, got " + width + "x" + height);
+        }
+        if(weights.length != width * height){
+            throw new IllegalArgumentException("expected " + (width * height) + " weights, got " + weights.length);
+        }
+        if(factor == 0){
+            throw new IllegalArgumentException("factor must not be 0");
+        }
+        this.width = width;
+        this.height = height;
+        this.weights = weights.clone();
+        this.factor = factor;
+        this.offset = offset;
+    }
+
+    /**
+     * @param rows weights indexed as rows[y][x]
+     */
+    public static Kernel of(double[][] rows, double factor, double offset){
+        int height = rows.length;
+        int width = height == 0 ? 0 : rows[0].length;
+        double[] weights = new double[width * height];
+        for(int y = 0; y < height; ++y){
+            if(rows[y].length != width){
+                throw new IllegalArgumentException("row " + y + " has " + rows[y].length + " weights, expected " + width);
+            }
+            System.arraycopy(rows[y], 0, weights, y * width, width);
+        }
+        return new Kernel(width, height, weights, factor, offset);
+    }
+
+    /**
+     * Builds a kernel whose weights are horizontal[x] * vertical[y].
+     */
+    public static Kernel separable(double[] horizontal, double[] vertical, double factor, double offset){
+        double[] weights = new double[horizontal.length * vertical.length];
+        for(int y = 0; y < vertical.length; ++y){
+            for(int x = 0; x < horizontal.length; ++x){
+                weights[y * horizontal.length + x] = horizontal[x] * vertical[y];
+            }
+        }
+        return new Kernel(horizontal.length, vertical.length, weights, factor, offset);
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    public int getRadiusX(){
+        return width / 2;
+    }
+
+    public int getRadiusY(){
+        return height / 2;
+    }
+
+    public double getWeight(int x, int y){
+        return weights[y * width + x];
+    }
+
+    public double getFactor(){
+        return factor;
+    }
+
+    public double getOffset(){
+        return offset;
+    }
+
+    /**
+     * Approximates this kernel for an image shrunk by scale, as used for previews on a
+     * downscaled proxy. One proxy pixel covers 1 / scale original pixels, so the
+     * kernel's spread has to shrink by scale in each direction, which is less than one
+     * tap. Blending the kernel with the identity by scale * scale scales its variance,
+     * and the strength of sharpening or edge kernels, by that amount.
+     *
+     * @param scale proxy size over original size, at most 1
+     */
+    public Kernel scaled(double scale){
+        if(!(scale > 0 && scale <= 1)){
+            throw new IllegalArgumentException("scale must be in (0, 1], got " + scale);
+        }
+        if(scale == 1){
+            return this;
+        }
+        double amount = scale * scale;
+        double[] blended = new double[weights.length];
+        for(int i = 0; i < weights.length; ++i){
+            blended[i] = weights[i] * amount;
+        }
+        blended[weights.length / 2] += factor * (1 - amount);
+        return new Kernel(width, height, blended, factor, offset * amount);
+    }
+
+    double[] weights(){
+        return weights;
+    }
+
+    /**
+     * Splits the weights into a horizontal and a vertical vector whose outer product
+     * gives the kernel back.
+     *
+     * @return {horizontal, vertical}, or null if the kernel is not separable
+     */
+    double[][] separate(){
+        int pivot = 0;
+        for(int i = 1; i < weights.length; ++i){
+            if(Math.abs(weights[i]) > Math.abs(weights[pivot])){
+                pivot = i;
+            }
+        }
+        double max = Math.abs(weights[pivot]);
+        if(max == 0){
+            return null;
+        }
+        int px = pivot % width;
+        int py = pivot / width;
+        // scaling the row so its smallest weight is 1 keeps integer kernels such as
+        // binomial blurs integral in both vectors
+        double smallest = max;
+        for(int x = 0; x < width; ++x){
+            double weight = Math.abs(weights[py * width + x]);
+            if(weight != 0 && weight < smallest){
+                smallest = weight;
+            }
+        }
+        double[] horizontal = new double[width];
+        double[] vertical = new double[height];
+        for(int x = 0; x < width; ++x){
+            horizontal[x] = weights[py * width + x] / smallest;
+        }
+        for(int y = 0; y < height; ++y){
+            vertical[y] = weights[y * width + px] / horizontal[px];
+        }
+        for(int y = 0; y < height; ++y){
+            for(int x = 0; x < width; ++x){
+                if(Math.abs(weights[y * width + x] - horizontal[x] * vertical[y]) > SEPARABLE_TOLERANCE * max){
+                    return null;
+                }
+            }
+        }
+        return new double[][]{horizontal, vertical};
+    }
+
+    public boolean isSeparable(){
+        return separate() != null;
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(!(o instanceof Kernel)){
+            return false;
+        }
+        Kernel other = (Kernel) o;
+        return width == other.width && height == other.height && factor == other.factor
+                && offset == other.offset && Arrays.equals(weights, other.weights);
+    }
+
+    @Override
+    public int hashCode(){
+        return (31 * width + height) * 31 + Arrays.hashCode(weights);
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * The 3x3 kernels behind the IP4A convolution filters.
+ */
+public final class Kernels {
+
+    // scales weights so that a weighted sum of at least 1 saturates a channel
+    private static final double ZERO_FACTOR_SCALE = 256;
+
+    private Kernels(){
+    }
+
+    public static Kernel gaussianBlur(){
+        return Kernel.of(new double[][]{
+                {1, 2, 1},
+                {2, 4, 2},
+                {1, 2, 1}
+        }, 16, 0);
+    }
+
+    public static Kernel sharpen(double weight){
+        return divided(new double[][]{
+                {0, -2, 0},
+                {-2, weight, -2},
+                {0, -2, 0}
+        }, weight - 8, 1);
+    }
+
+    public static Kernel meanRemoval(){
+        return Kernel.of(new double[][]{
+                {-1, -1, -1},
+                {-1, 9, -1},
+                {-1, -1, -1}
+        }, 1, 0);
+    }
+
+    public static Kernel smooth(double value){
+        return divided(new double[][]{
+                {1, 1, 1},
+                {1, value, 1},
+                {1, 1, 1}
+        }, value + 8, 1);
+    }
+
+    public static Kernel emboss(){
+        return Kernel.of(new double[][]{
+                {-1, 0, -1},
+                {0, 4, 0},
+                {-1, 0, -1}
+        }, 1, 127);
+    }
+
+    public static Kernel engrave(){
+        return Kernel.of(new double[][]{
+                {-2, 0, 0},
+                {0, 2, 0},
+                {0, 0, 0}
+        }, 1, 95);
+    }
+
+    /**
+     * Builds the kernel even when its factor works out to 0, as for sharpen(8) or
+     * smooth(-8). The original code divided the integer sums by 0 there, which
+     * clamps each channel to 255 where the sum is positive and to 0 elsewhere; the
+     * weights times 256 with factor 1 and no offset give the same pixels.
+     */
+    private static Kernel divided(double[][] rows, double factor, double offset){
+        if(factor != 0){
+            return Kernel.of(rows, factor, offset);
+        }
+        double[][] scaled = new double[rows.length][];
+        for(int y = 0; y < rows.length; ++y){
+            scaled[y] = new double[rows[y].length];
+            for(int x = 0; x < rows[y].length; ++x){
+                scaled[y][x] = rows[y][x] * ZERO_FACTOR_SCALE;
+            }
+        }
+        return Kernel.of(scaled, 1, 0);
+    }
+}
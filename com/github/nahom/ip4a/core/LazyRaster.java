@@ -0,0 +1,170 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * An image described as a source followed by a chain of {@link RasterOp}s that is
+ * only computed for the rectangles asked for.
+ * <p>
+ * A request for a rectangle travels backwards through the chain. Each op asks its
+ * input for the rectangle grown by its radius, clipped to the image, so the source
+ * is read and every op runs over roughly the requested area plus the halos of the
+ * ops after it. Pan and zoom previews of a huge image therefore cost in proportion
+ * to the viewport. Where the grown rectangle is clipped it touches the real image
+ * edge, so the pixels are the same as when the whole image is filtered. An op with
+ * a {@link Border#WRAP} border reads the opposite edge instead, so where its
+ * rectangle crosses an edge it asks for the whole width or height. A
+ * {@link PositionalOp} is applied at the position of its input rectangle.
+ * <p>
+ * Nodes are immutable and can be shared; intermediate rectangles are drawn from
+ * {@link PixelBufferPool#getDefault()} and released as soon as the next op is done.
+ */
+public abstract class LazyRaster {
+
+    private final int width;
+    private final int height;
+
+    LazyRaster(int width, int height){
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Wraps a raster without copying it; it must not change while the graph is rendered.
+     */
+    public static LazyRaster of(final IntRaster raster){
+        return new LazyRaster(raster.getWidth(), raster.getHeight()){
+            @Override
+            IntRaster pull(int left, int top, int right, int bottom, TileExecutor executor, PixelBufferPool pool){
+                return raster.subRaster(left, top, right - left, bottom - top);
+            }
+
+            @Override
+            boolean isPooled(){
+                return false;
+            }
+        };
+    }
+
+    public static LazyRaster of(final RegionSource source){
+        return new LazyRaster(source.getWidth(), source.getHeight()){
+            @Override
+            IntRaster pull(int left, int top, int right, int bottom, TileExecutor executor, PixelBufferPool pool){
+                IntRaster region = pool.acquireRaster(right - left, bottom - top);
+                source.read(left, top, region);
+                return region;
+            }
+
+            @Override
+            boolean isPooled(){
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return this image followed by op; nothing is computed until a region is rendered
+     */
+    public LazyRaster apply(RasterOp op){
+        return new OpNode(this, op);
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Computes the rectangle [left, right) x [top, bottom) on the default executor.
+     */
+    public IntRaster render(int left, int top, int right, int bottom){
+        IntRaster dst = new IntRaster(right - left, bottom - top);
+        render(left, top, right, bottom, dst, TileExecutor.getDefault());
+        return dst;
+    }
+
+    /**
+     * Computes the rectangle [left, right) x [top, bottom) into dst, which must have
+     * the size of the rectangle.
+     */
+    public void render(int left, int top, int right, int bottom, IntRaster dst, TileExecutor executor){
+        if(left < 0 || top < 0 || right > width || bottom > height || left > right || top > bottom){
+            throw new IllegalArgumentException("region " + left + "," + top + " - " + right + "," + bottom
+                    + " outside " + width + "x" + height);
+        }
+        if(dst.getWidth() != right - left || dst.getHeight() != bottom - top){
+            throw new IllegalArgumentException("destination is " + dst.getWidth() + "x" + dst.getHeight()
+                    + ", region is " + (right - left) + "x" + (bottom - top));
+        }
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        IntRaster region = pull(left, top, right, bottom, executor, pool);
+        region.copyTo(dst);
+        if(isPooled()){
+            pool.release(region);
+        }
+    }
+
+    /**
+     * @return a raster holding exactly the given rectangle; the caller owns it if {@link #isPooled()}
+     */
+    abstract IntRaster pull(int left, int top, int right, int bottom, TileExecutor executor, PixelBufferPool pool);
+
+    /**
+     * @return true if rasters returned by pull are pooled buffers the caller may overwrite and must release
+     */
+    abstract boolean isPooled();
+
+    private static final class OpNode extends LazyRaster {
+        private final LazyRaster input;
+        private final RasterOp op;
+
+        OpNode(LazyRaster input, RasterOp op){
+            super(input.getWidth(), input.getHeight());
+            this.input = input;
+            this.op = op;
+        }
+
+        @Override
+        IntRaster pull(int left, int top, int right, int bottom, TileExecutor executor, PixelBufferPool pool){
+            int radius = op.getRadius();
+            int inLeft = Math.max(0, left - radius);
+            int inTop = Math.max(0, top - radius);
+            int inRight = Math.min(getWidth(), right + radius);
+            int inBottom = Math.min(getHeight(), bottom + radius);
+            if(Border.wraps(op)){
+                // the op maps positions beyond the input's edges to its opposite edges,
+                // which are only the image's when the input spans the axis
+                if(inLeft != left - radius || inRight != right + radius){
+                    inLeft = 0;
+                    inRight = getWidth();
+                }
+                if(inTop != top - radius || inBottom != bottom + radius){
+                    inTop = 0;
+                    inBottom = getHeight();
+                }
+            }
+            RasterOp op = this.op instanceof PositionalOp ? ((PositionalOp) this.op).at(inLeft, inTop) : this.op;
+            IntRaster in = input.pull(inLeft, inTop, inRight, inBottom, executor, pool);
+            if(radius == 0 && input.isPooled()){
+                executor.apply(op, in, in);
+                return in;
+            }
+            IntRaster out;
+            try{
+                out = pool.acquireRaster(inRight - inLeft, inBottom - inTop);
+                executor.apply(op, in, out, left - inLeft, top - inTop, right - inLeft, bottom - inTop);
+            }finally{
+                if(input.isPooled()){
+                    pool.release(in);
+                }
+            }
+            return out.subRaster(left - inLeft, top - inTop, right - left, bottom - top);
+        }
+
+        @Override
+        boolean isPooled(){
+            return true;
+        }
+    }
+}
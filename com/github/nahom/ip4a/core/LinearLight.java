@@ -0,0 +1,428 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Filters that average or weigh light, run on linear intensities instead of the
+ * gamma encoded sRGB bytes, so blurs do not darken edges between bright and dark
+ * areas and gray levels have the luminance of the color.
+ * <p>
+ * Channels are decoded through a 256 entry table into 16 bit fixed point, where
+ * 65535 is full intensity, filtered at that precision and encoded again through a
+ * 4096 entry table indexed by the top 12 bits. Both tables follow the sRGB transfer
+ * curve and are built once, so the conversions cost two lookups per channel.
+ * Alpha is not gamma encoded and is carried or blurred as is.
+ */
+public final class LinearLight {
+
+    /** Full intensity in the 16 bit linear scale. */
+    public static final int ONE = 0xFFFF;
+
+    private static final int ENCODE_SHIFT = 4;
+    private static final int[] TO_LINEAR = new int[256];
+    private static final int[] TO_SRGB = new int[1 << (16 - ENCODE_SHIFT)];
+
+    // Rec. 709 luminance of linear sRGB, in 1 / 2^15
+    private static final int LUMA_BITS = 15;
+    private static final int LUMA_RED = 6966;
+    private static final int LUMA_GREEN = 23436;
+    private static final int LUMA_BLUE = 2366;
+
+    private static final int MAX_SHIFT = 30;
+
+    static {
+        for(int i = 0; i < TO_LINEAR.length; ++i){
+            TO_LINEAR[i] = (int) Math.round(decode(i / 255.0) * ONE);
+        }
+        // each entry stands for the middle of the 16 linear values mapped to it
+        int step = 1 << ENCODE_SHIFT;
+        for(int i = 0; i < TO_SRGB.length; ++i){
+            double linear = Math.min(ONE, i * step + (step - 1) / 2.0) / ONE;
+            TO_SRGB[i] = (int) Math.round(encode(linear) * 255);
+        }
+        // keep black and white exact
+        TO_SRGB[0] = 0;
+        TO_SRGB[TO_SRGB.length - 1] = 255;
+    }
+
+    private LinearLight(){
+    }
+
+    private static double decode(double value){
+        return value <= 0.04045 ? value / 12.92 : Math.pow((value + 0.055) / 1.055, 2.4);
+    }
+
+    private static double encode(double value){
+        return value <= 0.0031308 ? value * 12.92 : 1.055 * Math.pow(value, 1 / 2.4) - 0.055;
+    }
+
+    /**
+     * @return the linear intensity of an sRGB level, 0..{@link #ONE}
+     */
+    public static int toLinear(int level){
+        return TO_LINEAR[level];
+    }
+
+    /**
+     * @param linear clamped to 0..{@link #ONE}
+     * @return the nearest sRGB level
+     */
+    public static int toSrgb(int linear){
+        if(linear <= 0){
+            return 0;
+        }
+        if(linear >= ONE){
+            return 255;
+        }
+        return TO_SRGB[linear >> ENCODE_SHIFT];
+    }
+
+    /**
+     * Gray with the luminance of the linear color, using the Rec. 709 weights that
+     * belong with linear sRGB. Alpha is kept.
+     */
+    public static PointOp grayscale(){
+        int[] identity = PointOps.identityTable();
+        return luminance(identity, identity, identity);
+    }
+
+    /**
+     * {@link PointOps#sepiaToning} toned from the linear luminance.
+     */
+    public static PointOp sepiaToning(int depth, double red, double green, double blue){
+        return luminance(PointOps.tintTable(depth, red), PointOps.tintTable(depth, green),
+                PointOps.tintTable(depth, blue));
+    }
+
+    private static PointOp luminance(final int[] red, final int[] green, final int[] blue){
+        return new PointOp(){
+            @Override
+            protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+                int[] linear = TO_LINEAR;
+                int half = 1 << (LUMA_BITS - 1);
+                for(int i = 0; i < length; ++i){
+                    int pixel = in[inPos + i];
+                    int y = (LUMA_RED * linear[(pixel >> 16) & 0xFF] + LUMA_GREEN * linear[(pixel >> 8) & 0xFF]
+                            + LUMA_BLUE * linear[pixel & 0xFF] + half) >>> LUMA_BITS;
+                    int gray = TO_SRGB[y >> ENCODE_SHIFT];
+                    out[outPos + i] = (pixel & 0xFF000000) | (red[gray] << 16) | (green[gray] << 8) | blue[gray];
+                }
+            }
+        };
+    }
+
+    /**
+     * The kernel applied to linear intensities. The kernel's offset is in sRGB levels
+     * and is added after the result is encoded again, so a flat area still comes out
+     * as the level it names; alpha comes from the center pixel, and the frame and
+     * border handling are those of {@link ConvolveOp}.
+     */
+    public static RasterOp convolve(Kernel kernel, Border border){
+        return new Convolution(kernel, border);
+    }
+
+    /**
+     * @return false for kernels whose weights cancel out, such as emboss and engrave:
+     *         they measure differences between neighbours and center them on a gray
+     *         level by their offset, which is meant in sRGB and looks the same either way
+     */
+    public static boolean averagesLight(Kernel kernel){
+        double sum = 0;
+        for(double weight : kernel.weights()){
+            sum += weight;
+        }
+        return Math.abs(sum) > 1e-9 * Math.abs(kernel.getFactor());
+    }
+
+    /**
+     * A Gaussian blur of linear intensities, with the boxes and edge handling of
+     * {@link BoxBlurOp#ofRadius}.
+     */
+    public static RasterOp gaussianBlur(double radius){
+        return new Blur(BoxBlurOp.ofRadius(radius).getBoxRadii());
+    }
+
+    /**
+     * Decodes the rectangle of src starting at (left, top) into one plane per color
+     * channel, width by height values each; positions outside src are read through
+     * the border.
+     */
+    private static void decodePlanes(IntRaster src, int left, int top, int width, int height, Border border,
+                                     int[] red, int[] green, int[] blue){
+        int[] in = src.getPixels();
+        int[] linear = TO_LINEAR;
+        int color = border.getColor();
+        for(int y = 0; y < height; ++y){
+            int row = border.map(top + y, src.getHeight());
+            int rowPos = row < 0 ? 0 : src.index(0, row);
+            int pos = y * width;
+            for(int x = 0; x < width; ++x){
+                int column = left + x;
+                if(column < 0 || column >= src.getWidth()){
+                    column = border.map(column, src.getWidth());
+                }
+                int pixel = row < 0 || column < 0 ? color : in[rowPos + column];
+                red[pos + x] = linear[(pixel >> 16) & 0xFF];
+                green[pos + x] = linear[(pixel >> 8) & 0xFF];
+                blue[pos + x] = linear[pixel & 0xFF];
+            }
+        }
+    }
+
+    private static void clear(IntRaster dst, int left, int top, int right, int bottom){
+        int[] out = dst.getPixels();
+        for(int y = top; y < bottom; ++y){
+            int start = dst.index(left, y);
+            for(int i = 0; i < right - left; ++i){
+                out[start + i] = 0;
+            }
+        }
+    }
+
+    static final class Convolution implements BorderedOp {
+        private final Border border;
+        private final int radiusX;
+        private final int radiusY;
+        private final int[] tapX;
+        private final int[] tapY;
+        private final int[] tapWeight;
+        private final int shift;
+        // encoded level to output level, with the offset added
+        private final int[] offsetLevels = new int[256];
+
+        Convolution(Kernel kernel, Border border){
+            this.border = border;
+            this.radiusX = kernel.getRadiusX();
+            this.radiusY = kernel.getRadiusY();
+            double[] weights = kernel.weights();
+            double sum = 0;
+            int taps = 0;
+            for(double weight : weights){
+                sum += Math.abs(weight / kernel.getFactor());
+                if(weight != 0){
+                    ++taps;
+                }
+            }
+            int bits = MAX_SHIFT;
+            while(bits > 0 && Math.scalb(ONE * sum, bits) >= Integer.MAX_VALUE){
+                --bits;
+            }
+            if(Math.scalb(ONE * sum, bits) >= Integer.MAX_VALUE){
+                throw new IllegalArgumentException("kernel weights too large for integer accumulation");
+            }
+            shift = bits;
+            for(int level = 0; level < offsetLevels.length; ++level){
+                offsetLevels[level] = PointOps.clamp((int) (level + kernel.getOffset()));
+            }
+            tapX = new int[taps];
+            tapY = new int[taps];
+            tapWeight = new int[taps];
+            int t = 0;
+            for(int i = 0; i < weights.length; ++i){
+                if(weights[i] != 0){
+                    tapX[t] = i % kernel.getWidth();
+                    tapY[t] = i / kernel.getWidth();
+                    tapWeight[t] = (int) Math.round(Math.scalb(weights[i] / kernel.getFactor(), bits));
+                    ++t;
+                }
+            }
+        }
+
+        @Override
+        public Border getBorder(){
+            return border;
+        }
+
+        @Override
+        public int getRadius(){
+            return Math.max(radiusX, radiusY);
+        }
+
+        @Override
+        public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+            if(left >= right || top >= bottom){
+                return;
+            }
+            int x0 = left, y0 = top, x1 = right, y1 = bottom;
+            if(border.isNone()){
+                x0 = Math.max(left, radiusX);
+                x1 = Math.min(right, src.getWidth() - radiusX);
+                y0 = Math.max(top, radiusY);
+                y1 = Math.min(bottom, src.getHeight() - radiusY);
+                if(x0 >= x1 || y0 >= y1){
+                    clear(dst, left, top, right, bottom);
+                    return;
+                }
+                clear(dst, left, top, right, y0);
+                clear(dst, left, y1, right, bottom);
+                clear(dst, left, y0, x0, y1);
+                clear(dst, x1, y0, right, y1);
+            }
+            int width = x1 - x0 + 2 * radiusX;
+            int height = y1 - y0 + 2 * radiusY;
+            PixelBufferPool pool = PixelBufferPool.getDefault();
+            int[] red = pool.acquire(width * height);
+            int[] green = pool.acquire(width * height);
+            int[] blue = pool.acquire(width * height);
+            try{
+                decodePlanes(src, x0 - radiusX, y0 - radiusY, width, height, border, red, green, blue);
+                int taps = tapWeight.length;
+                int[] offsets = new int[taps];
+                for(int t = 0; t < taps; ++t){
+                    offsets[t] = tapY[t] * width + tapX[t];
+                }
+                int[] weights = tapWeight;
+                int[] levels = offsetLevels;
+                int[] in = src.getPixels();
+                int[] out = dst.getPixels();
+                for(int y = y0; y < y1; ++y){
+                    int pos = (y - y0) * width;
+                    int center = src.index(x0, y);
+                    int outPos = dst.index(x0, y);
+                    for(int x = 0; x < x1 - x0; ++x, ++pos){
+                        int sumR = 0, sumG = 0, sumB = 0;
+                        for(int t = 0; t < taps; ++t){
+                            int i = pos + offsets[t];
+                            int weight = weights[t];
+                            sumR += red[i] * weight;
+                            sumG += green[i] * weight;
+                            sumB += blue[i] * weight;
+                        }
+                        out[outPos + x] = (in[center + x] & 0xFF000000) | (levels[toSrgb(sumR >> shift)] << 16)
+                                | (levels[toSrgb(sumG >> shift)] << 8) | levels[toSrgb(sumB >> shift)];
+                    }
+                }
+            }finally{
+                pool.release(red);
+                pool.release(green);
+                pool.release(blue);
+            }
+        }
+    }
+
+    private static final class Blur implements RasterOp {
+        private static final int SCALE_BITS = 22;
+        private static final long HALF = 1L << (SCALE_BITS - 1);
+
+        private final int[] radii;
+        private final int[] scales;
+        private final int radius;
+
+        Blur(int[] radii){
+            this.radii = radii;
+            this.scales = new int[radii.length];
+            int total = 0;
+            for(int i = 0; i < radii.length; ++i){
+                scales[i] = (int) Math.round(Math.scalb(1.0 / (2 * radii[i] + 1), SCALE_BITS));
+                total += radii[i];
+            }
+            this.radius = total;
+        }
+
+        @Override
+        public int getRadius(){
+            return radius;
+        }
+
+        /**
+         * Blurs the source area the boxes reach, clipped to the image so the edge
+         * pixels repeat there; where it is not clipped the halo absorbs the edge.
+         */
+        @Override
+        public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+            if(left >= right || top >= bottom){
+                return;
+            }
+            int ax = Math.max(0, left - radius);
+            int ay = Math.max(0, top - radius);
+            int width = Math.min(src.getWidth(), right + radius) - ax;
+            int height = Math.min(src.getHeight(), bottom + radius) - ay;
+            int size = width * height;
+            PixelBufferPool pool = PixelBufferPool.getDefault();
+            int[][] planes = new int[4][];
+            int[] scratch = pool.acquire(size);
+            int[] sums = pool.acquire(width);
+            try{
+                for(int c = 0; c < 4; ++c){
+                    planes[c] = pool.acquire(size);
+                }
+                decodePlanes(src, ax, ay, width, height, Border.CLAMP, planes[1], planes[2], planes[3]);
+                int[] in = src.getPixels();
+                for(int y = 0; y < height; ++y){
+                    int pos = src.index(ax, ay + y);
+                    for(int x = 0; x < width; ++x){
+                        planes[0][y * width + x] = (in[pos + x] >>> 24) * 257;
+                    }
+                }
+                for(int c = 0; c < 4; ++c){
+                    for(int i = 0; i < radii.length; ++i){
+                        horizontal(planes[c], scratch, width, height, radii[i], scales[i]);
+                        vertical(scratch, planes[c], sums, width, height, radii[i], scales[i]);
+                    }
+                }
+                int[] out = dst.getPixels();
+                for(int y = top; y < bottom; ++y){
+                    int pos = (y - ay) * width + (left - ax);
+                    int outPos = dst.index(left, y);
+                    for(int x = 0; x < right - left; ++x){
+                        int i = pos + x;
+                        out[outPos + x] = (((planes[0][i] + 128) / 257) << 24) | (toSrgb(planes[1][i]) << 16)
+                                | (toSrgb(planes[2][i]) << 8) | toSrgb(planes[3][i]);
+                    }
+                }
+            }finally{
+                pool.release(scratch);
+                pool.release(sums);
+                for(int[] plane : planes){
+                    if(plane != null){
+                        pool.release(plane);
+                    }
+                }
+            }
+        }
+
+        private static int average(int sum, int scale){
+            return (int) ((sum * (long) scale + HALF) >>> SCALE_BITS);
+        }
+
+        /**
+         * One box along each row, repeating the first and last value of the row.
+         */
+        private static void horizontal(int[] in, int[] out, int width, int height, int r, int scale){
+            for(int y = 0; y < height; ++y){
+                int base = y * width;
+                int last = base + width - 1;
+                int sum = 0;
+                for(int k = -r; k <= r; ++k){
+                    sum += in[Math.min(Math.max(base + k, base), last)];
+                }
+                for(int x = 0; x < width; ++x){
+                    out[base + x] = average(sum, scale);
+                    sum += in[Math.min(base + x + r + 1, last)] - in[Math.max(base + x - r, base)];
+                }
+            }
+        }
+
+        /**
+         * One box down the columns, a row at a time with a running sum per column.
+         */
+        private static void vertical(int[] in, int[] out, int[] sums, int width, int height, int r, int scale){
+            for(int x = 0; x < width; ++x){
+                sums[x] = 0;
+            }
+            for(int k = -r; k <= r; ++k){
+                int row = Math.min(Math.max(k, 0), height - 1) * width;
+                for(int x = 0; x < width; ++x){
+                    sums[x] += in[row + x];
+                }
+            }
+            for(int y = 0; y < height; ++y){
+                int pos = y * width;
+                int enter = Math.min(y + r + 1, height - 1) * width;
+                int leave = Math.max(y - r, 0) * width;
+                for(int x = 0; x < width; ++x){
+                    out[pos + x] = average(sums[x], scale);
+                    sums[x] += in[enter + x] - in[leave + x];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Seeded, stateless noise: every pixel gets 64 random bits that depend only on the
+ * seed and its coordinates.
+ * <p>
+ * Each row is its own SplitMix64 stream, the generator behind SplittableRandom,
+ * seeded from the image seed and the row index. A SplitMix64 stream is a counter
+ * run through a mixing function, so the value at any column is available without
+ * generating the ones before it. Bands and tiles of any shape, on any number of
+ * threads, therefore produce the same image, with no locking or allocation per
+ * pixel.
+ */
+public final class Noise {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+
+    public Noise(long seed){
+        this.seed = seed;
+    }
+
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * SplitMix64 output function (Stafford's mix 13).
+     */
+    public static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the generator state just before column 0 of row y; add
+     *         (x + 1) * {@link #gamma()} and {@link #mix} it to get the bits of pixel x
+     */
+    public long rowState(int y){
+        return mix(seed + (y + 1L) * GOLDEN_GAMMA);
+    }
+
+    public static long gamma(){
+        return GOLDEN_GAMMA;
+    }
+
+    public long bits(int x, int y){
+        return mix(rowState(y) + (x + 1L) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Maps 21 random bits, for example one third of a {@link #bits} value, to 0..bound-1.
+     */
+    public static int bounded21(long bits, int bound){
+        return (int) (((bits & 0x1FFFFF) * bound) >>> 21);
+    }
+}
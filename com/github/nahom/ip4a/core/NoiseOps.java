@@ -0,0 +1,109 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * The snow and flea effects on {@link Noise}. The random values have the same
+ * ranges as the original java.util.Random versions, but the result is fixed by the
+ * seed, so the ops can run tiled on several threads, be cached and be compared
+ * against golden images. The noise is a function of the image coordinates, so the
+ * ops are {@link PositionalOp}s: windows of an image get the noise of the whole.
+ */
+public final class NoiseOps {
+
+    private NoiseOps(){
+    }
+
+    /**
+     * Turns a pixel opaque white when all three channels exceed a random threshold in 0..254.
+     */
+    public static RasterOp snow(long seed){
+        return new NoiseOp(seed){
+            @Override
+            void filterRow(int[] in, int inPos, int[] out, int outPos, int length, long state){
+                long gamma = Noise.gamma();
+                for(int i = 0; i < length; ++i){
+                    state += gamma;
+                    int threshold = Noise.bounded21(Noise.mix(state), 255);
+                    int pixel = in[inPos + i];
+                    if(((pixel >> 16) & 0xFF) > threshold && ((pixel >> 8) & 0xFF) > threshold
+                            && (pixel & 0xFF) > threshold){
+                        pixel = 0xFFFFFFFF;
+                    }
+                    out[outPos + i] = pixel;
+                }
+            }
+        };
+    }
+
+    /**
+     * ORs an opaque color with random channels in 0..254 into every pixel.
+     */
+    public static RasterOp flea(long seed){
+        return new NoiseOp(seed){
+            @Override
+            void filterRow(int[] in, int inPos, int[] out, int outPos, int length, long state){
+                long gamma = Noise.gamma();
+                for(int i = 0; i < length; ++i){
+                    state += gamma;
+                    long bits = Noise.mix(state);
+                    int r = Noise.bounded21(bits, 255);
+                    int g = Noise.bounded21(bits >>> 21, 255);
+                    int b = Noise.bounded21(bits >>> 42, 255);
+                    out[outPos + i] = in[inPos + i] | 0xFF000000 | (r << 16) | (g << 8) | b;
+                }
+            }
+        };
+    }
+
+    private abstract static class NoiseOp implements PositionalOp {
+        private final Noise noise;
+
+        NoiseOp(long seed){
+            this.noise = new Noise(seed);
+        }
+
+        @Override
+        public int getRadius(){
+            return 0;
+        }
+
+        @Override
+        public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+            filter(src, dst, left, top, right, bottom, 0, 0);
+        }
+
+        @Override
+        public RasterOp at(final int x, final int y){
+            return new RasterOp(){
+                @Override
+                public int getRadius(){
+                    return 0;
+                }
+
+                @Override
+                public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+                    filter(src, dst, left, top, right, bottom, x, y);
+                }
+            };
+        }
+
+        /**
+         * @param x image column of raster column 0
+         * @param y image row of raster row 0
+         */
+        void filter(IntRaster src, IntRaster dst, int left, int top, int right, int bottom, int x, int y){
+            if(left >= right){
+                return;
+            }
+            long skip = (x + (long) left) * Noise.gamma();
+            for(int row = top; row < bottom; ++row){
+                filterRow(src.getPixels(), src.index(left, row), dst.getPixels(), dst.index(left, row),
+                        right - left, noise.rowState(y + row) + skip);
+            }
+        }
+
+        /**
+         * @param state generator state just before the first pixel of the row segment
+         */
+        abstract void filterRow(int[] in, int inPos, int[] out, int outPos, int length, long state);
+    }
+}
@@ -0,0 +1,285 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+
+/**
+ * Keeps released pixel arrays around so the next filter of a similar size can reuse
+ * them instead of allocating. Requests are rounded up to size classes eight per
+ * power of two apart, so at most 1/8 of a buffer is wasted while similar sizes
+ * still share buffers. Once the retained arrays exceed the byte budget the least
+ * recently released ones are dropped.
+ * <p>
+ * Free arrays sit in one bucket per type and size class, so taking and returning
+ * one costs the same however many are pooled, and the lock is held only briefly
+ * when many band workers share the pool.
+ * <p>
+ * Buffers come back with whatever content they were released with. Int, short and
+ * byte arrays share the budget but are only handed out as their own type.
+ */
+public final class PixelBufferPool {
+
+    private static volatile PixelBufferPool defaultPool;
+
+    private static final int INT = 0;
+    private static final int SHORT = 1;
+    private static final int BYTE = 2;
+    // size classes up to 2^31: 8, then eight per power of two from 9
+    private static final int CLASSES = 1 + 28 * 8;
+
+    private final long maxBytes;
+    // free arrays by type and size class index, least recently released first
+    private final Bucket[][] buckets = new Bucket[3][CLASSES];
+    // every free array, least recently released first; arrays hash by identity
+    private final LinkedHashSet<Object> free = new LinkedHashSet<Object>();
+    private long retainedBytes;
+    private long hits;
+    private long misses;
+    private long allocatedBytes;
+
+    public PixelBufferPool(long maxBytes){
+        if(maxBytes < 0){
+            throw new IllegalArgumentException("negative budget " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Shared pool allowed to keep an eighth of the maximum heap, at most 64 MB.
+     */
+    public static PixelBufferPool getDefault(){
+        PixelBufferPool pool = defaultPool;
+        if(pool == null){
+            synchronized(PixelBufferPool.class){
+                pool = defaultPool;
+                if(pool == null){
+                    pool = new PixelBufferPool(Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 8));
+                    defaultPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    static int sizeClass(int length){
+        if(length <= 8){
+            return 8;
+        }
+        int step = Integer.highestOneBit(length - 1) >> 3;
+        long rounded = ((long) length + step - 1) / step * step;
+        return rounded > Integer.MAX_VALUE ? length : (int) rounded;
+    }
+
+    /**
+     * @return the index of a length {@link #sizeClass} returns, -1 for any other length
+     */
+    static int classIndex(int length){
+        if(length <= 8){
+            return length == 8 ? 0 : -1;
+        }
+        int highest = Integer.highestOneBit(length - 1);
+        int step = highest >> 3;
+        if(length % step != 0){
+            return -1;
+        }
+        // length / step is 9..16 within each power of two
+        return 1 + (Integer.numberOfTrailingZeros(highest) - 3) * 8 + length / step - 9;
+    }
+
+    /**
+     * @return an array of at least minLength ints with undefined content
+     */
+    public int[] acquire(int minLength){
+        int length = sizeClass(minLength);
+        int[] buffer = (int[]) take(INT, length);
+        return buffer != null ? buffer : new int[length];
+    }
+
+    /**
+     * @return an array of at least minLength shorts with undefined content
+     */
+    public short[] acquireShorts(int minLength){
+        int length = sizeClass(minLength);
+        short[] buffer = (short[]) take(SHORT, length);
+        return buffer != null ? buffer : new short[length];
+    }
+
+    /**
+     * @return an array of at least minLength bytes with undefined content
+     */
+    public byte[] acquireBytes(int minLength){
+        int length = sizeClass(minLength);
+        byte[] buffer = (byte[]) take(BYTE, length);
+        return buffer != null ? buffer : new byte[length];
+    }
+
+    /**
+     * @return the most recently released array of the type and exact length, or null after counting the miss
+     */
+    private synchronized Object take(int type, int length){
+        int index = classIndex(length);
+        Bucket bucket = index < 0 ? null : buckets[type][index];
+        Object buffer = bucket == null ? null : bucket.buffers.pollLast();
+        if(buffer == null){
+            ++misses;
+            allocatedBytes += (type == INT ? 4L : type == SHORT ? 2L : 1L) * length;
+            return null;
+        }
+        free.remove(buffer);
+        retainedBytes -= bytes(buffer);
+        ++hits;
+        return buffer;
+    }
+
+    private static int type(Object buffer){
+        if(buffer instanceof int[]){
+            return INT;
+        }
+        return buffer instanceof short[] ? SHORT : BYTE;
+    }
+
+    private static int length(Object buffer){
+        if(buffer instanceof int[]){
+            return ((int[]) buffer).length;
+        }
+        if(buffer instanceof short[]){
+            return ((short[]) buffer).length;
+        }
+        return ((byte[]) buffer).length;
+    }
+
+    private static long bytes(Object buffer){
+        if(buffer instanceof int[]){
+            return 4L * ((int[]) buffer).length;
+        }
+        if(buffer instanceof short[]){
+            return 2L * ((short[]) buffer).length;
+        }
+        return ((byte[]) buffer).length;
+    }
+
+    public void release(int[] buffer){
+        if(buffer != null){
+            give(buffer);
+        }
+    }
+
+    public void release(short[] buffer){
+        if(buffer != null){
+            give(buffer);
+        }
+    }
+
+    public void release(byte[] buffer){
+        if(buffer != null){
+            give(buffer);
+        }
+    }
+
+    private void give(Object buffer){
+        long bytes = bytes(buffer);
+        int index = classIndex(length(buffer));
+        if(bytes > maxBytes || index < 0){
+            return;
+        }
+        int type = type(buffer);
+        synchronized(this){
+            // a second release of the same array is ignored
+            if(!free.add(buffer)){
+                return;
+            }
+            Bucket bucket = buckets[type][index];
+            if(bucket == null){
+                bucket = new Bucket();
+                buckets[type][index] = bucket;
+            }
+            bucket.buffers.addLast(buffer);
+            retainedBytes += bytes;
+            while(retainedBytes > maxBytes){
+                Object evicted = free.iterator().next();
+                free.remove(evicted);
+                // buckets keep release order, so the oldest array overall heads its bucket
+                buckets[type(evicted)][classIndex(length(evicted))].buffers.removeFirst();
+                retainedBytes -= bytes(evicted);
+            }
+        }
+    }
+
+    /**
+     * @return a width x height raster over a pooled array, with undefined content
+     */
+    public IntRaster acquireRaster(int width, int height){
+        if(width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("invalid raster size " + width + "x" + height);
+        }
+        return new IntRaster(acquire(width * height), 0, width, width, height);
+    }
+
+    /**
+     * Returns the raster's array to the pool; the raster must not be used afterwards.
+     */
+    public void release(IntRaster raster){
+        release(raster.getPixels());
+    }
+
+    public ByteRaster acquireByteRaster(int width, int height){
+        if(width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("invalid raster size " + width + "x" + height);
+        }
+        return new ByteRaster(acquireBytes(width * height), 0, width, width, height);
+    }
+
+    public void release(ByteRaster raster){
+        release(raster.getPixels());
+    }
+
+    public ShortRaster acquireShortRaster(int width, int height){
+        if(width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("invalid raster size " + width + "x" + height);
+        }
+        return new ShortRaster(acquireShorts(width * height), 0, width, width, height);
+    }
+
+    public void release(ShortRaster raster){
+        release(raster.getPixels());
+    }
+
+    public long getMaxBytes(){
+        return maxBytes;
+    }
+
+    public synchronized long getRetainedBytes(){
+        return retainedBytes;
+    }
+
+    public synchronized long getHitCount(){
+        return hits;
+    }
+
+    public synchronized long getMissCount(){
+        return misses;
+    }
+
+    /**
+     * @return bytes of the arrays allocated because no pooled one fitted, since the pool was created
+     */
+    public synchronized long getAllocatedBytes(){
+        return allocatedBytes;
+    }
+
+    public synchronized void clear(){
+        free.clear();
+        for(Bucket[] type : buckets){
+            for(Bucket bucket : type){
+                if(bucket != null){
+                    bucket.buffers.clear();
+                }
+            }
+        }
+        retainedBytes = 0;
+    }
+
+    private static final class Bucket {
+        final ArrayDeque<Object> buffers = new ArrayDeque<Object>();
+    }
+}
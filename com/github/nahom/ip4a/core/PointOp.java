@@ -0,0 +1,33 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Base class for ops where each output pixel depends only on the source pixel at the
+ * same position. Subclasses only see whole row segments, which keeps the per-pixel
+ * loop inside one concrete method.
+ */
+public abstract class PointOp implements RasterOp {
+
+    @Override
+    public final int getRadius(){
+        return 0;
+    }
+
+    @Override
+    public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+        int length = right - left;
+        if(length <= 0){
+            return;
+        }
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        for(int y = top; y < bottom; ++y){
+            filterRow(in, src.index(left, y), out, dst.index(left, y), length);
+        }
+    }
+
+    /**
+     * Filters length pixels starting at in[inPos] into out[outPos]. The two ranges
+     * are either disjoint or identical.
+     */
+    protected abstract void filterRow(int[] in, int inPos, int[] out, int outPos, int length);
+}
@@ -0,0 +1,196 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Builds a sequence of per-pixel color adjustments that runs as one pass.
+ * <p>
+ * Each adjustment is a function of a single 0..255 channel value, so any run of them
+ * composes into one lookup table per channel. Grayscale and sepia mix the channels,
+ * but their result is a function of one gray level; everything after the first
+ * gray conversion is therefore composed into tables indexed by that gray level.
+ * However many steps are added, {@link #build()} returns an op doing at most one
+ * table lookup per channel, one weighted sum and a second lookup per pixel, with the
+ * same rounding and clamping as running the steps one after another.
+ * <pre>
+ * PointOp op = new PointOpChain()
+ *         .doBrightness(20)
+ *         .createContrast(15)
+ *         .correctGamma(1.2, 1.2, 1.2)
+ *         .build();
+ * </pre>
+ */
+public final class PointOpChain {
+
+    private final int[] alpha = PointOps.identityTable();
+    private final int[] red = PointOps.identityTable();
+    private final int[] green = PointOps.identityTable();
+    private final int[] blue = PointOps.identityTable();
+
+    // set by the first grayscale or sepia step, the tables above then hold the
+    // mapping applied before it and the ones below the mapping of the gray level
+    private double[] redWeight;
+    private double[] greenWeight;
+    private double[] blueWeight;
+    private int[] grayRed;
+    private int[] grayGreen;
+    private int[] grayBlue;
+
+    private int steps;
+
+    public PointOpChain invert(){
+        int[] table = PointOps.invertTable();
+        return map(table, table, table);
+    }
+
+    public PointOpChain grayscale(){
+        int[] identity = PointOps.identityTable();
+        return luminance(PointOps.GRAYSCALE_RED, PointOps.GRAYSCALE_GREEN, PointOps.GRAYSCALE_BLUE,
+                identity, identity, identity);
+    }
+
+    public PointOpChain sepiaToning(int depth, double red, double green, double blue){
+        return luminance(PointOps.SEPIA_RED, PointOps.SEPIA_GREEN, PointOps.SEPIA_BLUE,
+                PointOps.tintTable(depth, red), PointOps.tintTable(depth, green), PointOps.tintTable(depth, blue));
+    }
+
+    public PointOpChain correctGamma(double red, double green, double blue){
+        return map(PointOps.gammaTable(red), PointOps.gammaTable(green), PointOps.gammaTable(blue));
+    }
+
+    public PointOpChain filterColor(double red, double green, double blue){
+        return map(PointOps.scaleTable(red), PointOps.scaleTable(green), PointOps.scaleTable(blue));
+    }
+
+    public PointOpChain decreaseColorDepth(int bitOffset){
+        int[] table = PointOps.colorDepthTable(bitOffset);
+        return map(table, table, table);
+    }
+
+    public PointOpChain createContrast(double value){
+        int[] table = PointOps.contrastTable(value);
+        return map(table, table, table);
+    }
+
+    public PointOpChain doBrightness(int value){
+        int[] table = PointOps.brightnessTable(value);
+        return map(table, table, table);
+    }
+
+    /**
+     * @param type 1 for red, 2 for green, 3 for blue; other values leave the image as is
+     */
+    public PointOpChain boostIntensity(int type, float percent){
+        int[] boosted = PointOps.boostTable(percent);
+        int[] identity = PointOps.identityTable();
+        return map(type == 1 ? boosted : identity,
+                type == 2 ? boosted : identity,
+                type == 3 ? boosted : identity);
+    }
+
+    /**
+     * ANDs every pixel, including alpha, with the given color.
+     */
+    public PointOpChain applyShadingFilter(int shadingColor){
+        composeInto(alpha, PointOps.maskTable(shadingColor >>> 24));
+        return map(PointOps.maskTable((shadingColor >> 16) & 0xFF),
+                PointOps.maskTable((shadingColor >> 8) & 0xFF),
+                PointOps.maskTable(shadingColor & 0xFF));
+    }
+
+    /**
+     * Appends a custom per-channel mapping. Each table must have 256 entries in 0..255.
+     */
+    public PointOpChain map(int[] red, int[] green, int[] blue){
+        checkTable(red);
+        checkTable(green);
+        checkTable(blue);
+        if(redWeight == null){
+            composeInto(this.red, red);
+            composeInto(this.green, green);
+            composeInto(this.blue, blue);
+        }else{
+            composeInto(grayRed, red);
+            composeInto(grayGreen, green);
+            composeInto(grayBlue, blue);
+        }
+        ++steps;
+        return this;
+    }
+
+    /**
+     * @return the number of steps added so far
+     */
+    public int size(){
+        return steps;
+    }
+
+    /**
+     * Compiles the steps added so far. The chain can keep growing afterwards
+     * without affecting ops that were already built.
+     */
+    public PointOp build(){
+        boolean keepAlpha = isIdentity(alpha);
+        if(redWeight == null){
+            if(keepAlpha && isIdentity(red) && isIdentity(green) && isIdentity(blue)){
+                return new PointOp(){
+                    @Override
+                    protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+                        if(in != out || inPos != outPos){
+                            System.arraycopy(in, inPos, out, outPos, length);
+                        }
+                    }
+                };
+            }
+            return new PointOps.Lookup(keepAlpha ? null : alpha.clone(), red.clone(), green.clone(), blue.clone());
+        }
+        return new PointOps.Luminance(alpha.clone(), red.clone(), green.clone(), blue.clone(),
+                redWeight, greenWeight, blueWeight,
+                grayRed.clone(), grayGreen.clone(), grayBlue.clone());
+    }
+
+    private PointOpChain luminance(double wr, double wg, double wb, int[] red, int[] green, int[] blue){
+        if(redWeight == null){
+            redWeight = PointOps.weightTable(wr);
+            greenWeight = PointOps.weightTable(wg);
+            blueWeight = PointOps.weightTable(wb);
+            grayRed = red.clone();
+            grayGreen = green.clone();
+            grayBlue = blue.clone();
+        }else{
+            // the channels are already functions of the first gray level, so is the new one
+            for(int i = 0; i < 256; ++i){
+                int gray = PointOps.clamp((int)(wr * grayRed[i] + wg * grayGreen[i] + wb * grayBlue[i]));
+                grayRed[i] = red[gray];
+                grayGreen[i] = green[gray];
+                grayBlue[i] = blue[gray];
+            }
+        }
+        ++steps;
+        return this;
+    }
+
+    private static void composeInto(int[] table, int[] next){
+        for(int i = 0; i < 256; ++i){
+            table[i] = next[table[i]];
+        }
+    }
+
+    private static boolean isIdentity(int[] table){
+        for(int i = 0; i < 256; ++i){
+            if(table[i] != i){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkTable(int[] table){
+        if(table.length != 256){
+            throw new IllegalArgumentException("lookup table needs 256 entries, got " + table.length);
+        }
+        for(int i = 0; i < 256; ++i){
+            if(table[i] < 0 || table[i] > 255){
+                throw new IllegalArgumentException("lookup table entry " + i + " out of range: " + table[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Per-pixel color filters working on packed ARGB rows.
+ * Alpha is carried through unchanged unless the filter says otherwise and every
+ * channel result is clamped to 0..255 before it is packed again.
+ * Use {@link PointOpChain} to combine several of these into a single pass.
+ */
+public final class PointOps {
+
+    static final double GRAYSCALE_RED = 0.299;
+    static final double GRAYSCALE_GREEN = 0.587;
+    static final double GRAYSCALE_BLUE = 0.114;
+    static final double SEPIA_RED = 0.3;
+    static final double SEPIA_GREEN = 0.59;
+    static final double SEPIA_BLUE = 0.11;
+
+    private static final int FUSE_SEGMENT = 1024;
+    private static final int NOT_ADDITIVE = Integer.MIN_VALUE;
+
+    private PointOps(){
+    }
+
+    static int clamp(int value){
+        if(value < 0){
+            return 0;
+        }
+        if(value > 255){
+            return 255;
+        }
+        return value;
+    }
+
+    public static PointOp invert(){
+        return new PointOp(){
+            @Override
+            protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+                VectorKernels vector = VectorKernels.INSTANCE;
+                if(vector != null){
+                    vector.xor(in, inPos, out, outPos, length, 0x00FFFFFF);
+                    return;
+                }
+                for(int i = 0; i < length; ++i){
+                    out[outPos + i] = in[inPos + i] ^ 0x00FFFFFF;
+                }
+            }
+        };
+    }
+
+    public static PointOp grayscale(){
+        return new PointOpChain().grayscale().build();
+    }
+
+    public static PointOp sepiaToning(int depth, double red, double green, double blue){
+        return new PointOpChain().sepiaToning(depth, red, green, blue).build();
+    }
+
+    public static PointOp correctGamma(double red, double green, double blue){
+        return new PointOpChain().correctGamma(red, green, blue).build();
+    }
+
+    public static PointOp filterColor(double red, double green, double blue){
+        return new PointOpChain().filterColor(red, green, blue).build();
+    }
+
+    public static PointOp decreaseColorDepth(int bitOffset){
+        return new PointOpChain().decreaseColorDepth(bitOffset).build();
+    }
+
+    public static PointOp createContrast(double value){
+        return new PointOpChain().createContrast(value).build();
+    }
+
+    public static PointOp doBrightness(int value){
+        return new PointOpChain().doBrightness(value).build();
+    }
+
+    /**
+     * @param type 1 for red, 2 for green, 3 for blue; other values leave the image as is
+     */
+    public static PointOp boostIntensity(int type, float percent){
+        return new PointOpChain().boostIntensity(type, percent).build();
+    }
+
+    public static PointOp applyShadingFilter(final int shadingColor){
+        return new PointOp(){
+            @Override
+            protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+                VectorKernels vector = VectorKernels.INSTANCE;
+                if(vector != null){
+                    vector.and(in, inPos, out, outPos, length, shadingColor);
+                    return;
+                }
+                for(int i = 0; i < length; ++i){
+                    out[outPos + i] = in[inPos + i] & shadingColor;
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs several point ops one after another over short row segments, so each
+     * segment stays in cache between ops and the image is traversed once.
+     * Use {@link PointOpChain} instead where the steps are all table based.
+     */
+    public static PointOp fuse(final PointOp... ops){
+        final PointOp[] steps = ops.clone();
+        return new PointOp(){
+            @Override
+            protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+                if(steps.length == 0){
+                    if(in != out || inPos != outPos){
+                        System.arraycopy(in, inPos, out, outPos, length);
+                    }
+                    return;
+                }
+                for(int done = 0; done < length; done += FUSE_SEGMENT){
+                    int count = Math.min(FUSE_SEGMENT, length - done);
+                    steps[0].filterRow(in, inPos + done, out, outPos + done, count);
+                    for(int i = 1; i < steps.length; ++i){
+                        steps[i].filterRow(out, outPos + done, out, outPos + done, count);
+                    }
+                }
+            }
+        };
+    }
+
+    static int[] identityTable(){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = i;
+        }
+        return table;
+    }
+
+    static int[] invertTable(){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = 255 - i;
+        }
+        return table;
+    }
+
+    static int[] maskTable(int mask){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = i & mask;
+        }
+        return table;
+    }
+
+    static int[] gammaTable(double gamma){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = Math.min(255, (int)((255.0 * Math.pow(i / 255.0, 1.0 / gamma)) + 0.5));
+        }
+        return table;
+    }
+
+    static int[] scaleTable(double factor){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = clamp((int)(i * factor));
+        }
+        return table;
+    }
+
+    static int[] colorDepthTable(int bitOffset){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            int rounded = i + (bitOffset / 2);
+            table[i] = clamp(rounded - (rounded % bitOffset) - 1);
+        }
+        return table;
+    }
+
+    static int[] contrastTable(double value){
+        double contrast = Math.pow((100 + value) / 100, 2);
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = clamp((int)(((((i / 255.0) - 0.5) * contrast) + 0.5) * 255.0));
+        }
+        return table;
+    }
+
+    static int[] brightnessTable(int value){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = clamp(i + value);
+        }
+        return table;
+    }
+
+    static int[] boostTable(float percent){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = clamp((int)(i * (1 + percent)));
+        }
+        return table;
+    }
+
+    static int[] tintTable(int depth, double factor){
+        int[] table = new int[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = clamp((int)(i + depth * factor));
+        }
+        return table;
+    }
+
+    /**
+     * @return c if table[i] == clamp(i + c) for every i, otherwise NOT_ADDITIVE
+     */
+    static int addend(int[] table){
+        int c = table[255] - 255;
+        for(int i = 0; i < 256; ++i){
+            if(table[i] > 0 && table[i] < 255){
+                c = table[i] - i;
+                break;
+            }
+        }
+        for(int i = 0; i < 256; ++i){
+            if(table[i] != clamp(i + c)){
+                return NOT_ADDITIVE;
+            }
+        }
+        return c;
+    }
+
+    static double[] weightTable(double weight){
+        double[] table = new double[256];
+        for(int i = 0; i < 256; ++i){
+            table[i] = weight * i;
+        }
+        return table;
+    }
+
+    /**
+     * Maps each channel through its own 256 entry table. A null alpha table keeps alpha.
+     */
+    static final class Lookup extends PointOp {
+        private final int[] alpha;
+        private final int[] red;
+        private final int[] green;
+        private final int[] blue;
+        // set when every color table adds a constant, as brightness does, so vector code can do the math
+        private final boolean additive;
+        private final int addRed;
+        private final int addGreen;
+        private final int addBlue;
+
+        Lookup(int[] alpha, int[] red, int[] green, int[] blue){
+            this.alpha = alpha;
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+            this.addRed = addend(red);
+            this.addGreen = addend(green);
+            this.addBlue = addend(blue);
+            this.additive = alpha == null
+                    && addRed != NOT_ADDITIVE && addGreen != NOT_ADDITIVE && addBlue != NOT_ADDITIVE;
+        }
+
+        @Override
+        protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+            VectorKernels vector = VectorKernels.INSTANCE;
+            if(additive && vector != null){
+                vector.addClamped(in, inPos, out, outPos, length, addRed, addGreen, addBlue);
+                return;
+            }
+            int[] r = red;
+            int[] g = green;
+            int[] b = blue;
+            if(alpha == null){
+                for(int i = 0; i < length; ++i){
+                    int pixel = in[inPos + i];
+                    out[outPos + i] = (pixel & 0xFF000000)
+                            | (r[(pixel >> 16) & 0xFF] << 16)
+                            | (g[(pixel >> 8) & 0xFF] << 8)
+                            | b[pixel & 0xFF];
+                }
+                return;
+            }
+            int[] a = alpha;
+            for(int i = 0; i < length; ++i){
+                int pixel = in[inPos + i];
+                out[outPos + i] = (a[pixel >>> 24] << 24)
+                        | (r[(pixel >> 16) & 0xFF] << 16)
+                        | (g[(pixel >> 8) & 0xFF] << 8)
+                        | b[pixel & 0xFF];
+            }
+        }
+    }
+
+    /**
+     * Maps the channels through per-channel tables, reduces the result to a
+     * weighted gray level and then maps that gray level through a second set of
+     * per-channel tables.
+     */
+    static final class Luminance extends PointOp {
+        private final int[] alpha;
+        private final int[] preRed;
+        private final int[] preGreen;
+        private final int[] preBlue;
+        private final double[] redWeight;
+        private final double[] greenWeight;
+        private final double[] blueWeight;
+        private final int[] red;
+        private final int[] green;
+        private final int[] blue;
+
+        Luminance(int[] alpha, int[] preRed, int[] preGreen, int[] preBlue,
+                  double[] redWeight, double[] greenWeight, double[] blueWeight,
+                  int[] red, int[] green, int[] blue){
+            this.alpha = alpha;
+            this.preRed = preRed;
+            this.preGreen = preGreen;
+            this.preBlue = preBlue;
+            this.redWeight = redWeight;
+            this.greenWeight = greenWeight;
+            this.blueWeight = blueWeight;
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+        }
+
+        @Override
+        protected void filterRow(int[] in, int inPos, int[] out, int outPos, int length){
+            int[] a = alpha;
+            int[] pr = preRed;
+            int[] pg = preGreen;
+            int[] pb = preBlue;
+            double[] wr = redWeight;
+            double[] wg = greenWeight;
+            double[] wb = blueWeight;
+            for(int i = 0; i < length; ++i){
+                int pixel = in[inPos + i];
+                int gray = clamp((int)(wr[pr[(pixel >> 16) & 0xFF]]
+                        + wg[pg[(pixel >> 8) & 0xFF]]
+                        + wb[pb[pixel & 0xFF]]));
+                out[outPos + i] = (a[pixel >>> 24] << 24) | (red[gray] << 16) | (green[gray] << 8) | blue[gray];
+            }
+        }
+    }
+}
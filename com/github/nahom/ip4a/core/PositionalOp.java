@@ -0,0 +1,18 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * A {@link RasterOp} whose output depends on where a pixel lies in the image and
+ * not only on the pixels around it, such as seeded noise.
+ * <p>
+ * Applied directly, the raster handed to the op is taken to be the whole image.
+ * Paths that filter a window of a larger image, such as {@link LazyRaster},
+ * {@link IncrementalRenderer} and strip processing, apply {@link #at} the window's
+ * position instead, so every pixel comes out as when the whole image is filtered.
+ */
+public interface PositionalOp extends RasterOp {
+
+    /**
+     * @return this op for rasters whose pixel (0, 0) is pixel (x, y) of the image
+     */
+    RasterOp at(int x, int y);
+}
@@ -0,0 +1,186 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders a filter in rising quality: first on a small proxy of the source, then on
+ * larger proxies and finally at full resolution.
+ * <p>
+ * The proxies are box averaged once when the renderer is created. A call to
+ * {@link #render} filters the smallest proxy on the calling thread, so something can
+ * be shown at once, and queues the finer levels on the background executor. A newer
+ * call supersedes the older one: its remaining levels are skipped and a full
+ * resolution pass in progress stops at the next band of rows.
+ */
+public final class ProgressiveRenderer {
+
+    /** Proxies are made until the longer side fits in this many pixels. */
+    public static final int DEFAULT_PREVIEW_SIZE = 512;
+
+    private static final int LEVEL_STEP = 4;
+    private static final int BAND_ROWS = 64;
+
+    /**
+     * Creates the op for one quality level.
+     */
+    public interface OpFactory {
+        /**
+         * @param scale size of the level over the full image size, 1 at full resolution
+         */
+        RasterOp create(double scale);
+    }
+
+    public interface Listener {
+        /**
+         * Called once per level, coarsest first. The first level is delivered on the
+         * thread calling render, the others on the background executor.
+         *
+         * @param image the filtered level, owned by the listener
+         * @param scale size of the level over the full image size
+         * @param last  true for the full resolution result
+         */
+        void onRendered(IntRaster image, int level, double scale, boolean last);
+    }
+
+    private final Executor background;
+    private final TileExecutor executor;
+    // finest first: levels[0] is the source
+    private final IntRaster[] levels;
+    private final int[] factors;
+    private final AtomicLong generation = new AtomicLong();
+
+    public ProgressiveRenderer(IntRaster source, Executor background){
+        this(source, background, TileExecutor.getDefault(), DEFAULT_PREVIEW_SIZE);
+    }
+
+    /**
+     * @param previewSize the coarsest proxy is shrunk by a power of two until its longer side fits
+     */
+    public ProgressiveRenderer(IntRaster source, Executor background, TileExecutor executor, int previewSize){
+        if(previewSize < 1){
+            throw new IllegalArgumentException("preview size must be positive, got " + previewSize);
+        }
+        this.background = background;
+        this.executor = executor;
+        int longest = Math.max(source.getWidth(), source.getHeight());
+        int coarsest = 1;
+        while(longest / coarsest > previewSize){
+            coarsest <<= 1;
+        }
+        int count = 1;
+        for(int factor = coarsest; factor > 1; factor /= LEVEL_STEP){
+            ++count;
+        }
+        levels = new IntRaster[count];
+        factors = new int[count];
+        levels[0] = source;
+        factors[0] = 1;
+        // levels between full size and the coarsest proxy are LEVEL_STEP apart
+        for(int i = count - 1, factor = coarsest; i > 0; --i, factor /= LEVEL_STEP){
+            factors[i] = factor;
+        }
+        for(int i = 1; i < count; ++i){
+            levels[i] = shrink(levels[i - 1], factors[i] / factors[i - 1]);
+        }
+    }
+
+    public static OpFactory fixed(final RasterOp op){
+        return new OpFactory(){
+            @Override
+            public RasterOp create(double scale){
+                return op;
+            }
+        };
+    }
+
+    /**
+     * Convolves with the kernel at full resolution and with {@link Kernel#scaled} on proxies.
+     */
+    public static OpFactory convolution(Kernel kernel){
+        return convolution(kernel, Border.NONE);
+    }
+
+    public static OpFactory convolution(final Kernel kernel, final Border border){
+        return new OpFactory(){
+            @Override
+            public RasterOp create(double scale){
+                return new ConvolveOp(kernel.scaled(scale), border);
+            }
+        };
+    }
+
+    public int getLevelCount(){
+        return levels.length;
+    }
+
+    /**
+     * Starts rendering filter and supersedes any earlier request still in progress.
+     */
+    public void render(final OpFactory filter, final Listener listener){
+        final long request = generation.incrementAndGet();
+        final int coarsest = levels.length - 1;
+        IntRaster preview = renderLevel(filter, coarsest, request);
+        if(preview == null){
+            return;
+        }
+        listener.onRendered(preview, 0, 1.0 / factors[coarsest], coarsest == 0);
+        if(coarsest == 0){
+            return;
+        }
+        background.execute(new Runnable(){
+            @Override
+            public void run(){
+                for(int i = coarsest - 1; i >= 0; --i){
+                    IntRaster image = renderLevel(filter, i, request);
+                    if(image == null){
+                        return;
+                    }
+                    listener.onRendered(image, coarsest - i, 1.0 / factors[i], i == 0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops the request in progress without starting a new one.
+     */
+    public void cancel(){
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return the filtered level, or null if the request was superseded
+     */
+    private IntRaster renderLevel(OpFactory filter, int level, long request){
+        if(generation.get() != request){
+            return null;
+        }
+        IntRaster src = levels[level];
+        int width = src.getWidth();
+        int height = src.getHeight();
+        RasterOp op = filter.create(1.0 / factors[level]);
+        IntRaster dst = new IntRaster(width, height);
+        for(int top = 0; top < height; top += BAND_ROWS){
+            if(generation.get() != request){
+                return null;
+            }
+            executor.apply(op, src, dst, 0, top, width, Math.min(height, top + BAND_ROWS));
+        }
+        return dst;
+    }
+
+    /**
+     * Shrinks by a power of two factor in 2x2 steps; blocks cut off by the right or
+     * bottom edge average the pixels they have.
+     */
+    private IntRaster shrink(IntRaster src, int factor){
+        IntRaster level = src;
+        for(int step = factor; step > 1; step /= 2){
+            IntRaster next = new IntRaster(Resample.halfSize(level.getWidth()), Resample.halfSize(level.getHeight()));
+            Resample.half(level, next, executor);
+            level = next;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * A filter over packed ARGB rasters.
+ * An op writes the destination pixels inside the requested rectangle and may read
+ * source pixels up to {@link #getRadius()} pixels beyond it. Source and destination
+ * share one coordinate space and must have the same size; the edges of the source
+ * raster are treated as the edges of the image.
+ */
+public interface RasterOp {
+
+    /**
+     * @return how far outside an output pixel the op reads its source, 0 for point ops
+     */
+    int getRadius();
+
+    /**
+     * Filters the rectangle [left, right) x [top, bottom) from src into dst.
+     * Point ops (radius 0) may be applied with src == dst.
+     */
+    void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom);
+}
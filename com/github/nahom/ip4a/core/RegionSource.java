@@ -0,0 +1,17 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * An image that can hand out arbitrary rectangles of its pixels on demand, such as
+ * a Bitmap, a tiled file or a region decoder.
+ */
+public interface RegionSource {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Copies the dst.getWidth() x dst.getHeight() pixels starting at (left, top) into dst.
+     */
+    void read(int left, int top, IntRaster dst);
+}
@@ -0,0 +1,182 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.Arrays;
+
+/**
+ * Shrinks images by averaging the source pixels each output pixel covers, which
+ * keeps fine detail from aliasing the way sampling a few taps per pixel does.
+ * All four channels are averaged, each rounded half up.
+ */
+public final class Resample {
+
+    private static final int WEIGHT_BITS = 14;
+    private static final int ONE = 1 << WEIGHT_BITS;
+    // bits of the vertical sums dropped before the horizontal pass, so it stays in an int
+    private static final int CARRY_SHIFT = 6;
+    private static final int HORIZONTAL_SHIFT = 2 * WEIGHT_BITS - CARRY_SHIFT;
+    private static final int EVEN = 0x00FF00FF;
+
+    private Resample(){
+    }
+
+    public static IntRaster half(IntRaster src){
+        IntRaster dst = new IntRaster(halfSize(src.getWidth()), halfSize(src.getHeight()));
+        half(src, dst, TileExecutor.getDefault());
+        return dst;
+    }
+
+    /**
+     * @return the size of a side after {@link #half}
+     */
+    public static int halfSize(int size){
+        return (size + 1) / 2;
+    }
+
+    /**
+     * Averages each 2x2 block of src into one pixel of dst, which must be
+     * {@link #halfSize} of src in each direction. A block cut off by an odd edge
+     * averages the pixels it has. The four pixels are added two channels at a time
+     * in the 16 bit halves of an int.
+     */
+    public static void half(final IntRaster src, final IntRaster dst, TileExecutor executor){
+        if(dst.getWidth() != halfSize(src.getWidth()) || dst.getHeight() != halfSize(src.getHeight())){
+            throw new IllegalArgumentException("destination is " + dst.getWidth() + "x" + dst.getHeight()
+                    + ", expected " + halfSize(src.getWidth()) + "x" + halfSize(src.getHeight()));
+        }
+        executor.run(new TileExecutor.RowTask(){
+            @Override
+            public void run(int top, int bottom){
+                int[] in = src.getPixels();
+                int[] out = dst.getPixels();
+                int lastColumn = src.getWidth() - 1;
+                for(int y = top; y < bottom; ++y){
+                    int upper = src.index(0, 2 * y);
+                    // an odd last row pairs with itself
+                    int lower = src.index(0, Math.min(2 * y + 1, src.getHeight() - 1));
+                    int outPos = dst.index(0, y);
+                    for(int x = 0; x < dst.getWidth(); ++x){
+                        int left = 2 * x;
+                        int right = Math.min(left + 1, lastColumn);
+                        out[outPos + x] = average(in[upper + left], in[upper + right], in[lower + left], in[lower + right]);
+                    }
+                }
+            }
+        }, src.getWidth(), 0, dst.getHeight());
+    }
+
+    private static int average(int a, int b, int c, int d){
+        int redBlue = ((a & EVEN) + (b & EVEN) + (c & EVEN) + (d & EVEN) + 0x00020002) >>> 2;
+        int alphaGreen = (((a >>> 8) & EVEN) + ((b >>> 8) & EVEN) + ((c >>> 8) & EVEN) + ((d >>> 8) & EVEN)
+                + 0x00020002) >>> 2;
+        return (redBlue & EVEN) | ((alphaGreen & EVEN) << 8);
+    }
+
+    public static IntRaster resize(IntRaster src, int width, int height){
+        IntRaster dst = new IntRaster(width, height);
+        resize(src, dst, TileExecutor.getDefault());
+        return dst;
+    }
+
+    /**
+     * Scales src to the size of dst. Each output pixel is the average of the source
+     * area it covers, with pixels on the area's edges weighted by how much of them
+     * lies inside. Meant for shrinking; when enlarging, source pixels become blocks
+     * that blend only where their edges fall inside an output pixel.
+     */
+    public static void resize(final IntRaster src, final IntRaster dst, TileExecutor executor){
+        if(dst.getWidth() < 1 || dst.getHeight() < 1 || src.getWidth() < 1 || src.getHeight() < 1){
+            throw new IllegalArgumentException("cannot resize " + src.getWidth() + "x" + src.getHeight()
+                    + " to " + dst.getWidth() + "x" + dst.getHeight());
+        }
+        final Weights columns = new Weights(src.getWidth(), dst.getWidth());
+        final Weights rows = new Weights(src.getHeight(), dst.getHeight());
+        executor.run(new TileExecutor.RowTask(){
+            @Override
+            public void run(int top, int bottom){
+                int[] in = src.getPixels();
+                int[] out = dst.getPixels();
+                int width = src.getWidth();
+                int[] sums = new int[4 * width];
+                int half = 1 << (HORIZONTAL_SHIFT - 1);
+                for(int y = top; y < bottom; ++y){
+                    // weighted sum of the source rows under output row y
+                    Arrays.fill(sums, 0);
+                    for(int k = 0; k < rows.count[y]; ++k){
+                        int weight = rows.weights[rows.offset[y] + k];
+                        int pos = src.index(0, rows.first[y] + k);
+                        for(int x = 0; x < width; ++x){
+                            int pixel = in[pos + x];
+                            int i = 4 * x;
+                            sums[i] += (pixel >>> 24) * weight;
+                            sums[i + 1] += ((pixel >> 16) & 0xFF) * weight;
+                            sums[i + 2] += ((pixel >> 8) & 0xFF) * weight;
+                            sums[i + 3] += (pixel & 0xFF) * weight;
+                        }
+                    }
+                    for(int i = 0; i < sums.length; ++i){
+                        sums[i] >>= CARRY_SHIFT;
+                    }
+                    int outPos = dst.index(0, y);
+                    for(int x = 0; x < dst.getWidth(); ++x){
+                        int a = half, r = half, g = half, b = half;
+                        int w = columns.offset[x];
+                        int i = 4 * columns.first[x];
+                        for(int k = 0; k < columns.count[x]; ++k, ++w, i += 4){
+                            int weight = columns.weights[w];
+                            a += sums[i] * weight;
+                            r += sums[i + 1] * weight;
+                            g += sums[i + 2] * weight;
+                            b += sums[i + 3] * weight;
+                        }
+                        out[outPos + x] = (clamp(a >> HORIZONTAL_SHIFT) << 24) | (clamp(r >> HORIZONTAL_SHIFT) << 16)
+                                | (clamp(g >> HORIZONTAL_SHIFT) << 8) | clamp(b >> HORIZONTAL_SHIFT);
+                    }
+                }
+            }
+        }, src.getWidth(), 0, dst.getHeight());
+    }
+
+    private static int clamp(int value){
+        return value > 255 ? 255 : value;
+    }
+
+    /**
+     * For each output position along one axis, the run of source positions it
+     * covers and their weights, in 1 / 2^14 that add up to exactly 2^14.
+     */
+    private static final class Weights {
+        final int[] first;
+        final int[] count;
+        final int[] offset;
+        final int[] weights;
+
+        Weights(int srcSize, int dstSize){
+            first = new int[dstSize];
+            count = new int[dstSize];
+            offset = new int[dstSize];
+            double scale = (double) srcSize / dstSize;
+            int total = 0;
+            for(int i = 0; i < dstSize; ++i){
+                double start = i * scale;
+                double end = Math.min(srcSize, (i + 1) * scale);
+                first[i] = Math.min(srcSize - 1, (int) start);
+                count[i] = Math.max(1, (int) Math.ceil(end) - first[i]);
+                offset[i] = total;
+                total += count[i];
+            }
+            weights = new int[total];
+            for(int i = 0; i < dstSize; ++i){
+                double start = i * scale;
+                double end = Math.min(srcSize, (i + 1) * scale);
+                int assigned = 0;
+                for(int k = 0; k < count[i]; ++k){
+                    int position = first[i] + k;
+                    double covered = Math.min(end, position + 1) - Math.max(start, position);
+                    int weight = k == count[i] - 1 ? ONE - assigned : (int) Math.round(covered / (end - start) * ONE);
+                    weights[offset[i] + k] = weight;
+                    assigned += weight;
+                }
+            }
+        }
+    }
+}
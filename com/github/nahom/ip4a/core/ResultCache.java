@@ -0,0 +1,176 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers filter results by the content of their source and the filter that
+ * produced them, so applying the same filter with the same parameters to the same
+ * pixels again costs one pass of hashing instead of a filter pass.
+ * <p>
+ * Sources are identified by a 64 bit hash of their pixels and their size; filters
+ * by a string naming the filter and every parameter, for example
+ * {@code "sharpen(11.0)"}. Entries are evicted least recently used first once the
+ * stored results exceed the byte budget. Stored rasters are private copies.
+ */
+public final class ResultCache {
+
+    private static final long PRIME_1 = 0x9E3779B97F4A7C15L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, IntRaster> entries = new LinkedHashMap<Key, IntRaster>(16, 0.75f, true);
+    private long retainedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ResultCache(long maxBytes){
+        if(maxBytes < 0){
+            throw new IllegalArgumentException("negative budget " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Hashes the pixels in four independent lanes so the multiplies overlap.
+     */
+    public static long hash(IntRaster raster){
+        int[] pixels = raster.getPixels();
+        int width = raster.getWidth();
+        long h0 = PRIME_1, h1 = PRIME_2, h2 = ~PRIME_1, h3 = ~PRIME_2;
+        for(int y = 0; y < raster.getHeight(); ++y){
+            int pos = raster.index(0, y);
+            int end = pos + width;
+            for(; pos + 4 <= end; pos += 4){
+                h0 = (h0 ^ pixels[pos]) * PRIME_1;
+                h1 = (h1 ^ pixels[pos + 1]) * PRIME_1;
+                h2 = (h2 ^ pixels[pos + 2]) * PRIME_1;
+                h3 = (h3 ^ pixels[pos + 3]) * PRIME_1;
+            }
+            for(; pos < end; ++pos){
+                h0 = (h0 ^ pixels[pos]) * PRIME_2;
+            }
+        }
+        long h = Long.rotateLeft(h0, 1) + Long.rotateLeft(h1, 7) + Long.rotateLeft(h2, 12) + Long.rotateLeft(h3, 18);
+        h ^= h >>> 33;
+        h *= PRIME_2;
+        h ^= h >>> 29;
+        return h;
+    }
+
+    public static Key key(IntRaster source, String filter){
+        return new Key(hash(source), source.getWidth(), source.getHeight(), filter);
+    }
+
+    /**
+     * @return the stored result, which must not be modified, or null
+     */
+    public synchronized IntRaster get(Key key){
+        IntRaster result = entries.get(key);
+        if(result == null){
+            ++misses;
+        }else{
+            ++hits;
+        }
+        return result;
+    }
+
+    /**
+     * Stores a copy of result; results larger than the whole budget are not kept.
+     */
+    public void put(Key key, IntRaster result){
+        long bytes = 4L * result.getWidth() * result.getHeight();
+        if(bytes > maxBytes){
+            return;
+        }
+        IntRaster copy = result.copy();
+        synchronized(this){
+            IntRaster previous = entries.put(key, copy);
+            if(previous != null){
+                retainedBytes -= size(previous);
+            }
+            retainedBytes += bytes;
+            Iterator<Map.Entry<Key, IntRaster>> eldest = entries.entrySet().iterator();
+            while(retainedBytes > maxBytes){
+                retainedBytes -= size(eldest.next().getValue());
+                eldest.remove();
+                ++evictions;
+            }
+        }
+    }
+
+    private static long size(IntRaster raster){
+        return 4L * raster.getWidth() * raster.getHeight();
+    }
+
+    public long getMaxBytes(){
+        return maxBytes;
+    }
+
+    public synchronized long getRetainedBytes(){
+        return retainedBytes;
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public synchronized long getHitCount(){
+        return hits;
+    }
+
+    public synchronized long getMissCount(){
+        return misses;
+    }
+
+    public synchronized long getEvictionCount(){
+        return evictions;
+    }
+
+    public synchronized void clear(){
+        entries.clear();
+        retainedBytes = 0;
+    }
+
+    /**
+     * Identity of a result: source content hash, source size and filter description.
+     */
+    public static final class Key {
+        private final long hash;
+        private final int width;
+        private final int height;
+        private final String filter;
+
+        public Key(long hash, int width, int height, String filter){
+            if(filter == null){
+                throw new NullPointerException("filter");
+            }
+            this.hash = hash;
+            this.width = width;
+            this.height = height;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && width == other.width && height == other.height
+                    && filter.equals(other.filter);
+        }
+
+        @Override
+        public int hashCode(){
+            return (int) (hash ^ (hash >>> 32)) * 31 + filter.hashCode();
+        }
+
+        @Override
+        public String toString(){
+            return filter + "@" + Long.toHexString(hash) + "/" + width + "x" + height;
+        }
+    }
+}
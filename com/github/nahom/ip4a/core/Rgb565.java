@@ -0,0 +1,106 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Conversions for {@link ShortRaster}s and point ops that run on RGB 565 pixels
+ * without expanding them to ARGB.
+ * <p>
+ * Expanding and packing follow the RGB_565 Bitmap: each channel is widened by
+ * repeating its top bits and narrowed by dropping its low bits, alpha is dropped.
+ */
+public final class Rgb565 {
+
+    private static final int COLORS = 1 << 16;
+
+    private Rgb565(){
+    }
+
+    public static int toArgb(int rgb565){
+        int r = (rgb565 >> 11) & 0x1F;
+        int g = (rgb565 >> 5) & 0x3F;
+        int b = rgb565 & 0x1F;
+        return 0xFF000000 | (((r << 3) | (r >> 2)) << 16) | (((g << 2) | (g >> 4)) << 8) | ((b << 3) | (b >> 2));
+    }
+
+    public static int fromArgb(int argb){
+        return ((argb >> 8) & 0xF800) | ((argb >> 5) & 0x07E0) | ((argb >> 3) & 0x001F);
+    }
+
+    public static void toArgb(ShortRaster src, IntRaster dst){
+        checkSize(src.getWidth(), src.getHeight(), dst.getWidth(), dst.getHeight());
+        short[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        for(int y = 0; y < src.getHeight(); ++y){
+            int inPos = src.index(0, y);
+            int outPos = dst.index(0, y);
+            for(int x = 0; x < src.getWidth(); ++x){
+                out[outPos + x] = toArgb(in[inPos + x]);
+            }
+        }
+    }
+
+    public static void fromArgb(IntRaster src, ShortRaster dst){
+        checkSize(src.getWidth(), src.getHeight(), dst.getWidth(), dst.getHeight());
+        int[] in = src.getPixels();
+        short[] out = dst.getPixels();
+        for(int y = 0; y < src.getHeight(); ++y){
+            int inPos = src.index(0, y);
+            int outPos = dst.index(0, y);
+            for(int x = 0; x < src.getWidth(); ++x){
+                out[outPos + x] = (short) fromArgb(in[inPos + x]);
+            }
+        }
+    }
+
+    private static void checkSize(int width, int height, int dstWidth, int dstHeight){
+        if(width != dstWidth || height != dstHeight){
+            throw new IllegalArgumentException("size mismatch " + width + "x" + height
+                    + " vs " + dstWidth + "x" + dstHeight);
+        }
+    }
+
+    /**
+     * Runs the point op once over all 65536 colors and keeps the packed results as
+     * a table, so filtering is one lookup per 2 byte pixel and the output equals
+     * expanding, filtering and packing every pixel. Building the table costs about
+     * as much as filtering a 256x256 image, so it pays off above that size.
+     */
+    public static ShortRasterOp lookup(PointOp op){
+        int[] colors = new int[COLORS];
+        for(int i = 0; i < COLORS; ++i){
+            colors[i] = toArgb(i);
+        }
+        op.filterRow(colors, 0, colors, 0, COLORS);
+        short[] table = new short[COLORS];
+        for(int i = 0; i < COLORS; ++i){
+            table[i] = (short) fromArgb(colors[i]);
+        }
+        return new Lookup(table);
+    }
+
+    private static final class Lookup implements ShortRasterOp {
+        private final short[] colors;
+
+        Lookup(short[] colors){
+            this.colors = colors;
+        }
+
+        @Override
+        public int getRadius(){
+            return 0;
+        }
+
+        @Override
+        public void apply(ShortRaster src, ShortRaster dst, int left, int top, int right, int bottom){
+            short[] table = colors;
+            short[] in = src.getPixels();
+            short[] out = dst.getPixels();
+            for(int y = top; y < bottom; ++y){
+                int inPos = src.index(left, y);
+                int outPos = dst.index(left, y);
+                for(int i = 0; i < right - left; ++i){
+                    out[outPos + i] = table[in[inPos + i] & 0xFFFF];
+                }
+            }
+        }
+    }
+}
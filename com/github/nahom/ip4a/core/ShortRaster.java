@@ -0,0 +1,131 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.Arrays;
+
+/**
+ * A block of RGB 565 pixels, laid out like {@link IntRaster}: the pixel at (x, y)
+ * lives at {@code pixels[offset + y * stride + x]}, red in the top 5 bits, green in
+ * the middle 6 and blue in the low 5, as in RGB_565 Bitmaps. See {@link Rgb565}.
+ */
+public final class ShortRaster {
+
+    private final short[] pixels;
+    private final int offset;
+    private final int stride;
+    private final int width;
+    private final int height;
+
+    public ShortRaster(int width, int height){
+        this(new short[checkedArea(width, height)], 0, width, width, height);
+    }
+
+    public ShortRaster(short[] pixels, int width, int height){
+        this(pixels, 0, width, width, height);
+    }
+
+    public ShortRaster(short[] pixels, int offset, int stride, int width, int height){
+        if(width < 0 || height < 0){
+            throw new IllegalArgumentException("negative size " + width + "x" + height);
+        }
+        if(stride < width){
+            throw new IllegalArgumentException("stride " + stride + " < width " + width);
+        }
+        if(offset < 0 || (height > 0 && (long) offset + (long) (height - 1) * stride + width > pixels.length)){
+            throw new IllegalArgumentException("pixel array too small for " + width + "x" + height
+                    + " at offset " + offset + ", stride " + stride);
+        }
+        this.pixels = pixels;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+    }
+
+    private static int checkedArea(int width, int height){
+        if(width < 0 || height < 0){
+            throw new IllegalArgumentException("negative size " + width + "x" + height);
+        }
+        long area = (long) width * height;
+        if(area > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("raster too large: " + width + "x" + height);
+        }
+        return (int) area;
+    }
+
+    public short[] getPixels(){
+        return pixels;
+    }
+
+    public int getOffset(){
+        return offset;
+    }
+
+    public int getStride(){
+        return stride;
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * @return true if the pixels are stored without gaps between rows
+     */
+    public boolean isContiguous(){
+        return stride == width || height <= 1;
+    }
+
+    public int index(int x, int y){
+        return offset + y * stride + x;
+    }
+
+    public int getPixel(int x, int y){
+        return pixels[index(x, y)] & 0xFFFF;
+    }
+
+    public void setPixel(int x, int y, int rgb565){
+        pixels[index(x, y)] = (short) rgb565;
+    }
+
+    /**
+     * Returns a view of a rectangle of this raster sharing the same pixel array.
+     */
+    public ShortRaster subRaster(int x, int y, int w, int h){
+        if(x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height){
+            throw new IllegalArgumentException("region " + x + "," + y + " " + w + "x" + h
+                    + " outside " + width + "x" + height);
+        }
+        return new ShortRaster(pixels, index(x, y), stride, w, h);
+    }
+
+    public void fill(int rgb565){
+        for(int y = 0; y < height; ++y){
+            int start = index(0, y);
+            Arrays.fill(pixels, start, start + width, (short) rgb565);
+        }
+    }
+
+    public void copyTo(ShortRaster dst){
+        if(dst.width != width || dst.height != height){
+            throw new IllegalArgumentException("size mismatch " + width + "x" + height
+                    + " vs " + dst.width + "x" + dst.height);
+        }
+        if(isContiguous() && dst.isContiguous()){
+            System.arraycopy(pixels, offset, dst.pixels, dst.offset, width * height);
+            return;
+        }
+        for(int y = 0; y < height; ++y){
+            System.arraycopy(pixels, index(0, y), dst.pixels, dst.index(0, y), width);
+        }
+    }
+
+    public ShortRaster copy(){
+        ShortRaster copy = new ShortRaster(width, height);
+        copyTo(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * A filter over RGB 565 rasters, with the same contract as {@link RasterOp}.
+ */
+public interface ShortRasterOp {
+
+    int getRadius();
+
+    /**
+     * Filters the rectangle [left, right) x [top, bottom) from src into dst.
+     * Point ops (radius 0) may be applied with src == dst.
+     */
+    void apply(ShortRaster src, ShortRaster dst, int left, int top, int right, int bottom);
+}
@@ -0,0 +1,248 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs {@link RasterOp}s over horizontal bands of the output on several threads.
+ * <p>
+ * Ops read their source in a coordinate space shared with the destination, so a
+ * band simply reads the halo rows above and below it from the untouched source and
+ * every output pixel is computed exactly as it would be by a single call. Regions
+ * smaller than the threshold are filtered on the calling thread.
+ */
+public final class TileExecutor {
+
+    /** Regions with fewer pixels than this are not worth splitting. */
+    public static final int DEFAULT_THRESHOLD = 256 * 256;
+
+    private static final int MIN_BAND_ROWS = 8;
+
+    private static volatile TileExecutor defaultExecutor;
+
+    private final Executor executor;
+    private final int parallelism;
+    private final int threshold;
+
+    /**
+     * Uses a ForkJoinPool with one worker per available processor.
+     */
+    public TileExecutor(){
+        this(new ForkJoinPool(Runtime.getRuntime().availableProcessors()),
+                Runtime.getRuntime().availableProcessors(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param executor    runs the bands; a ForkJoinPool gets recursive splitting
+     * @param parallelism how many threads the executor can run at once
+     * @param threshold   regions with fewer pixels run on the calling thread
+     */
+    public TileExecutor(Executor executor, int parallelism, int threshold){
+        if(parallelism < 1){
+            throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Executor that never leaves the calling thread.
+     */
+    public static TileExecutor serial(){
+        return new TileExecutor(null, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Shared executor backed by a ForkJoinPool sized to the machine, created on first use.
+     */
+    public static TileExecutor getDefault(){
+        TileExecutor executor = defaultExecutor;
+        if(executor == null){
+            synchronized(TileExecutor.class){
+                executor = defaultExecutor;
+                if(executor == null){
+                    executor = new TileExecutor();
+                    defaultExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    public int getParallelism(){
+        return parallelism;
+    }
+
+    public int getThreshold(){
+        return threshold;
+    }
+
+    public void apply(RasterOp op, IntRaster src, IntRaster dst){
+        apply(op, src, dst, 0, 0, src.getWidth(), src.getHeight());
+    }
+
+    public void apply(final RasterOp op, final IntRaster src, final IntRaster dst,
+                      final int left, int top, final int right, int bottom){
+        run(new RowTask(){
+            @Override
+            public void run(int from, int to){
+                op.apply(src, dst, left, from, right, to);
+            }
+        }, right - left, top, bottom, op.getRadius());
+    }
+
+    public void apply(ByteRasterOp op, ByteRaster src, ByteRaster dst){
+        apply(op, src, dst, 0, 0, src.getWidth(), src.getHeight());
+    }
+
+    public void apply(final ByteRasterOp op, final ByteRaster src, final ByteRaster dst,
+                      final int left, int top, final int right, int bottom){
+        run(new RowTask(){
+            @Override
+            public void run(int from, int to){
+                op.apply(src, dst, left, from, right, to);
+            }
+        }, right - left, top, bottom, op.getRadius());
+    }
+
+    public void apply(ShortRasterOp op, ShortRaster src, ShortRaster dst){
+        apply(op, src, dst, 0, 0, src.getWidth(), src.getHeight());
+    }
+
+    public void apply(final ShortRasterOp op, final ShortRaster src, final ShortRaster dst,
+                      final int left, int top, final int right, int bottom){
+        run(new RowTask(){
+            @Override
+            public void run(int from, int to){
+                op.apply(src, dst, left, from, right, to);
+            }
+        }, right - left, top, bottom, op.getRadius());
+    }
+
+    /**
+     * Splits [top, bottom) into bands over the executor like
+     * {@link #apply(RasterOp, IntRaster, IntRaster)} does.
+     *
+     * @param width pixels per row, for deciding whether the rows are worth splitting
+     */
+    public void run(RowTask task, int width, int top, int bottom){
+        run(task, width, top, bottom, 0);
+    }
+
+    /**
+     * @param radius the op's radius; bands are kept at least that tall so the halo
+     *               rows every band reads besides its own do not dominate
+     */
+    private void run(RowTask op, int width, int top, int bottom, int radius){
+        int rows = bottom - top;
+        long pixels = (long) width * rows;
+        int bands = Math.min(parallelism * 4, rows / Math.max(MIN_BAND_ROWS, radius));
+        if(executor == null || parallelism == 1 || pixels < threshold || bands < 2){
+            op.run(top, bottom);
+            return;
+        }
+        if(executor instanceof ForkJoinPool){
+            int bandRows = (rows + bands - 1) / bands;
+            ((ForkJoinPool) executor).invoke(new Band(op, top, bottom, bandRows));
+            return;
+        }
+        runBands(op, top, bottom, bands);
+    }
+
+    private void runBands(final RowTask op, int top, int bottom, int bands){
+        final CountDownLatch done = new CountDownLatch(bands - 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        int rows = bottom - top;
+        // the calling thread takes the first band instead of idling
+        int firstEnd = top + rows / bands;
+        for(int i = 1; i < bands; ++i){
+            final int bandTop = top + (int)((long) rows * i / bands);
+            final int bandBottom = top + (int)((long) rows * (i + 1) / bands);
+            executor.execute(new Runnable(){
+                @Override
+                public void run(){
+                    try{
+                        op.run(bandTop, bandBottom);
+                    }catch(Throwable t){
+                        failure.compareAndSet(null, t);
+                    }finally{
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        try{
+            op.run(top, firstEnd);
+        }catch(Throwable t){
+            failure.compareAndSet(null, t);
+        }
+        boolean interrupted = false;
+        while(true){
+            try{
+                done.await();
+                break;
+            }catch(InterruptedException e){
+                interrupted = true;
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+        rethrow(failure.get());
+    }
+
+    private static void rethrow(Throwable failure){
+        if(failure == null){
+            return;
+        }
+        if(failure instanceof RuntimeException){
+            throw (RuntimeException) failure;
+        }
+        if(failure instanceof Error){
+            throw (Error) failure;
+        }
+        throw new IllegalStateException(failure);
+    }
+
+    /**
+     * Work over a range of output rows that can be split into bands, for jobs that
+     * are not a {@link RasterOp}, such as resampling into a raster of another size.
+     */
+    public interface RowTask {
+        /**
+         * Produces the rows [top, bottom). Called concurrently for disjoint ranges.
+         */
+        void run(int top, int bottom);
+    }
+
+    private static final class Band extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RowTask op;
+        private final int top;
+        private final int bottom;
+        private final int bandRows;
+
+        Band(RowTask op, int top, int bottom, int bandRows){
+            this.op = op;
+            this.top = top;
+            this.bottom = bottom;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute(){
+            if(bottom - top <= bandRows){
+                op.run(top, bottom);
+                return;
+            }
+            int middle = top + (bottom - top) / 2;
+            invokeAll(new Band(op, top, middle, bandRows),
+                    new Band(op, middle, bottom, bandRows));
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Flips, right angle rotations and free rotation of {@link IntRaster}s.
+ * <p>
+ * Flips and 180 degree turns keep rows contiguous and work in place. Quarter
+ * turns and transposes read rows and write columns, so they walk the image in
+ * square tiles small enough that the source and destination lines of a tile
+ * stay in cache; square images are turned in place. Free rotation samples the
+ * source bilinearly in fixed point and splits its rows over a {@link TileExecutor}.
+ */
+public final class Transforms {
+
+    /** EXIF orientation values, as stored in the Orientation tag. */
+    public static final int ORIENTATION_NORMAL = 1;
+    public static final int ORIENTATION_FLIP_HORIZONTAL = 2;
+    public static final int ORIENTATION_ROTATE_180 = 3;
+    public static final int ORIENTATION_FLIP_VERTICAL = 4;
+    public static final int ORIENTATION_TRANSPOSE = 5;
+    public static final int ORIENTATION_ROTATE_90 = 6;
+    public static final int ORIENTATION_TRANSVERSE = 7;
+    public static final int ORIENTATION_ROTATE_270 = 8;
+
+    private static final int TILE = 32;
+    private static final int FRACTION_BITS = 16;
+    private static final int ONE = 1 << FRACTION_BITS;
+    // coordinates and their steps are 16.16 fixed point
+    private static final int MAX_SIZE = 1 << 14;
+
+    private Transforms(){
+    }
+
+    /**
+     * Mirrors left to right; dst may be src.
+     */
+    public static void flipHorizontal(IntRaster src, IntRaster dst){
+        checkSize(src.getWidth(), src.getHeight(), dst);
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        int width = src.getWidth();
+        for(int y = 0; y < src.getHeight(); ++y){
+            int from = src.index(0, y);
+            int to = dst.index(0, y);
+            // pairs are swapped, so this also works when in and out are the same row
+            for(int left = 0, right = width - 1; left <= right; ++left, --right){
+                int a = in[from + left];
+                int b = in[from + right];
+                out[to + left] = b;
+                out[to + right] = a;
+            }
+        }
+    }
+
+    /**
+     * Mirrors top to bottom; dst may be src.
+     */
+    public static void flipVertical(IntRaster src, IntRaster dst){
+        checkSize(src.getWidth(), src.getHeight(), dst);
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        int[] row = pool.acquire(Math.max(1, width));
+        try{
+            for(int top = 0, bottom = height - 1; top <= bottom; ++top, --bottom){
+                System.arraycopy(in, src.index(0, top), row, 0, width);
+                System.arraycopy(in, src.index(0, bottom), out, dst.index(0, top), width);
+                System.arraycopy(row, 0, out, dst.index(0, bottom), width);
+            }
+        }finally{
+            pool.release(row);
+        }
+    }
+
+    /**
+     * Turns the image upside down; dst may be src.
+     */
+    public static void rotate180(IntRaster src, IntRaster dst){
+        checkSize(src.getWidth(), src.getHeight(), dst);
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        for(int top = 0, bottom = height - 1; top <= bottom; ++top, --bottom){
+            int a = src.index(0, top);
+            int b = src.index(width - 1, bottom);
+            int da = dst.index(0, top);
+            int db = dst.index(width - 1, bottom);
+            int count = top == bottom ? (width + 1) / 2 : width;
+            for(int i = 0; i < count; ++i){
+                int first = in[a + i];
+                int last = in[b - i];
+                out[da + i] = last;
+                out[db - i] = first;
+            }
+        }
+    }
+
+    /**
+     * Turns the image a quarter clockwise into dst, which is height x width. dst
+     * may be src when the image is square.
+     */
+    public static void rotate90(IntRaster src, IntRaster dst){
+        quarter(src, dst, true, false);
+    }
+
+    /**
+     * Turns the image a quarter counter-clockwise into dst, which is height x width.
+     * dst may be src when the image is square.
+     */
+    public static void rotate270(IntRaster src, IntRaster dst){
+        quarter(src, dst, false, true);
+    }
+
+    /**
+     * Mirrors along the main diagonal: dst(y, x) = src(x, y).
+     */
+    public static void transpose(IntRaster src, IntRaster dst){
+        quarter(src, dst, false, false);
+    }
+
+    /**
+     * Mirrors along the anti-diagonal, a transpose turned by 180 degrees.
+     */
+    public static void transverse(IntRaster src, IntRaster dst){
+        quarter(src, dst, true, true);
+    }
+
+    /**
+     * @return the width of the image once the orientation is applied
+     */
+    public static int orientedWidth(int width, int height, int orientation){
+        return swapsAxes(orientation) ? height : width;
+    }
+
+    public static int orientedHeight(int width, int height, int orientation){
+        return swapsAxes(orientation) ? width : height;
+    }
+
+    private static boolean swapsAxes(int orientation){
+        return orientation >= ORIENTATION_TRANSPOSE && orientation <= ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * Undoes an EXIF orientation, so the image shows upright. dst is sized by
+     * {@link #orientedWidth} and {@link #orientedHeight}; it may be src unless the
+     * orientation swaps the axes of a non-square image. Unknown values copy.
+     */
+    public static void orient(IntRaster src, IntRaster dst, int orientation){
+        switch(orientation){
+            case ORIENTATION_FLIP_HORIZONTAL:
+                flipHorizontal(src, dst);
+                break;
+            case ORIENTATION_ROTATE_180:
+                rotate180(src, dst);
+                break;
+            case ORIENTATION_FLIP_VERTICAL:
+                flipVertical(src, dst);
+                break;
+            case ORIENTATION_TRANSPOSE:
+                transpose(src, dst);
+                break;
+            case ORIENTATION_ROTATE_90:
+                rotate90(src, dst);
+                break;
+            case ORIENTATION_TRANSVERSE:
+                transverse(src, dst);
+                break;
+            case ORIENTATION_ROTATE_270:
+                rotate270(src, dst);
+                break;
+            default:
+                checkSize(src.getWidth(), src.getHeight(), dst);
+                if(src != dst){
+                    src.copyTo(dst);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Writes src(x, y) to dst(X, Y) with X = y or height - 1 - y and
+     * Y = x or width - 1 - x.
+     */
+    private static void quarter(IntRaster src, IntRaster dst, boolean mirrorX, boolean mirrorY){
+        int width = src.getWidth();
+        int height = src.getHeight();
+        checkSize(height, width, dst);
+        if(src.getPixels() == dst.getPixels() && overlaps(src, dst)){
+            if(width != height || src != dst){
+                throw new IllegalArgumentException("only square images can be turned in place");
+            }
+            transposeInPlace(src);
+            // the transpose is done, the mirrors are what separate the four quarter transforms
+            if(mirrorX && mirrorY){
+                rotate180(src, src);
+            }else if(mirrorX){
+                flipHorizontal(src, src);
+            }else if(mirrorY){
+                flipVertical(src, src);
+            }
+            return;
+        }
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        int stride = dst.getStride();
+        // dst position of src(0, 0) and how it moves with x and y
+        int origin = dst.index(mirrorX ? height - 1 : 0, mirrorY ? width - 1 : 0);
+        int stepX = mirrorY ? -stride : stride;
+        int stepY = mirrorX ? -1 : 1;
+        for(int tileY = 0; tileY < height; tileY += TILE){
+            int endY = Math.min(height, tileY + TILE);
+            for(int tileX = 0; tileX < width; tileX += TILE){
+                int endX = Math.min(width, tileX + TILE);
+                for(int y = tileY; y < endY; ++y){
+                    int from = src.index(0, y);
+                    int to = origin + y * stepY + tileX * stepX;
+                    for(int x = tileX; x < endX; ++x, to += stepX){
+                        out[to] = in[from + x];
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean overlaps(IntRaster a, IntRaster b){
+        long aEnd = a.index(a.getWidth(), a.getHeight() - 1);
+        long bEnd = b.index(b.getWidth(), b.getHeight() - 1);
+        return a.getOffset() < bEnd && b.getOffset() < aEnd;
+    }
+
+    /**
+     * Swaps the tiles above the diagonal with the ones below it, tile pair by tile pair.
+     */
+    private static void transposeInPlace(IntRaster raster){
+        int size = raster.getWidth();
+        int[] pixels = raster.getPixels();
+        for(int tileY = 0; tileY < size; tileY += TILE){
+            int endY = Math.min(size, tileY + TILE);
+            for(int tileX = tileY; tileX < size; tileX += TILE){
+                int endX = Math.min(size, tileX + TILE);
+                for(int y = tileY; y < endY; ++y){
+                    // on the diagonal tile only the part right of the diagonal is swapped
+                    for(int x = Math.max(tileX, y + 1); x < endX; ++x){
+                        int a = raster.index(x, y);
+                        int b = raster.index(y, x);
+                        int pixel = pixels[a];
+                        pixels[a] = pixels[b];
+                        pixels[b] = pixel;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the size, {width, height}, of the smallest raster holding the image
+     *         turned by the angle, as Bitmap.createBitmap with a rotation matrix has it
+     */
+    public static int[] rotatedSize(int width, int height, double degrees){
+        double radians = Math.toRadians(degrees);
+        double cos = Math.abs(Math.cos(radians));
+        double sin = Math.abs(Math.sin(radians));
+        return new int[]{
+                (int) Math.round(width * cos + height * sin),
+                (int) Math.round(width * sin + height * cos)};
+    }
+
+    /**
+     * Turns src clockwise by any angle about its center, onto the center of dst,
+     * with bilinear filtering. dst pixels that map outside src become transparent
+     * and the image edge is antialiased; filtering works on premultiplied colors
+     * so transparent neighbours do not darken it.
+     */
+    public static void rotate(final IntRaster src, final IntRaster dst, double degrees, TileExecutor executor){
+        if(src.getWidth() > MAX_SIZE || src.getHeight() > MAX_SIZE || dst.getWidth() > MAX_SIZE || dst.getHeight() > MAX_SIZE){
+            throw new IllegalArgumentException("free rotation supports images up to " + MAX_SIZE + " pixels a side");
+        }
+        double radians = Math.toRadians(degrees);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+        // source position of the center of dst pixel (0, 0), in source pixel units
+        // whose integer values are pixel centers, and how it moves per dst pixel
+        double dx = -dst.getWidth() / 2.0 + 0.5;
+        double dy = -dst.getHeight() / 2.0 + 0.5;
+        double u0 = cos * dx + sin * dy + src.getWidth() / 2.0 - 0.5;
+        double v0 = -sin * dx + cos * dy + src.getHeight() / 2.0 - 0.5;
+        final int originU = (int) Math.round(u0 * ONE);
+        final int originV = (int) Math.round(v0 * ONE);
+        final int stepUx = (int) Math.round(cos * ONE);
+        final int stepVx = (int) Math.round(-sin * ONE);
+        final int stepUy = (int) Math.round(sin * ONE);
+        final int stepVy = (int) Math.round(cos * ONE);
+        executor.run(new TileExecutor.RowTask(){
+            @Override
+            public void run(int top, int bottom){
+                for(int y = top; y < bottom; ++y){
+                    sampleRow(src, dst, y, originU + y * stepUy, originV + y * stepVy, stepUx, stepVx);
+                }
+            }
+        }, dst.getWidth(), 0, dst.getHeight());
+    }
+
+    private static void sampleRow(IntRaster src, IntRaster dst, int y, int u, int v, int stepU, int stepV){
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int outPos = dst.index(0, y);
+        for(int x = 0; x < dst.getWidth(); ++x, u += stepU, v += stepV){
+            int left = u >> FRACTION_BITS;
+            int top = v >> FRACTION_BITS;
+            if(left < -1 || top < -1 || left >= width || top >= height){
+                out[outPos + x] = 0;
+                continue;
+            }
+            // 8 bit weights are plenty for 8 bit channels and keep the sums in an int
+            int fx = (u >> (FRACTION_BITS - 8)) & 0xFF;
+            int fy = (v >> (FRACTION_BITS - 8)) & 0xFF;
+            boolean inLeft = left >= 0;
+            boolean inRight = left + 1 < width;
+            boolean inTop = top >= 0;
+            boolean inBottom = top + 1 < height;
+            int p00 = inTop && inLeft ? in[src.index(left, top)] : 0;
+            int p10 = inTop && inRight ? in[src.index(left + 1, top)] : 0;
+            int p01 = inBottom && inLeft ? in[src.index(left, top + 1)] : 0;
+            int p11 = inBottom && inRight ? in[src.index(left + 1, top + 1)] : 0;
+            out[outPos + x] = bilinear(p00, p10, p01, p11, fx, fy);
+        }
+    }
+
+    private static int bilinear(int p00, int p10, int p01, int p11, int fx, int fy){
+        int w00 = (256 - fx) * (256 - fy);
+        int w10 = fx * (256 - fy);
+        int w01 = (256 - fx) * fy;
+        int w11 = fx * fy;
+        if((p00 & p10 & p01 & p11) >>> 24 == 0xFF){
+            // opaque, the common case, needs no premultiplication
+            int r = ((p00 >> 16) & 0xFF) * w00 + ((p10 >> 16) & 0xFF) * w10
+                    + ((p01 >> 16) & 0xFF) * w01 + ((p11 >> 16) & 0xFF) * w11;
+            int g = ((p00 >> 8) & 0xFF) * w00 + ((p10 >> 8) & 0xFF) * w10
+                    + ((p01 >> 8) & 0xFF) * w01 + ((p11 >> 8) & 0xFF) * w11;
+            int b = (p00 & 0xFF) * w00 + (p10 & 0xFF) * w10 + (p01 & 0xFF) * w01 + (p11 & 0xFF) * w11;
+            return 0xFF000000 | (((r + 32768) >> 16) << 16) | (((g + 32768) >> 16) << 8) | ((b + 32768) >> 16);
+        }
+        int a00 = (p00 >>> 24) * w00;
+        int a10 = (p10 >>> 24) * w10;
+        int a01 = (p01 >>> 24) * w01;
+        int a11 = (p11 >>> 24) * w11;
+        int alpha = a00 + a10 + a01 + a11;
+        if(alpha == 0){
+            return 0;
+        }
+        // channel sums weighted by alpha, divided by the alpha sum to unpremultiply
+        long half = alpha / 2;
+        int r = (int) ((((long) ((p00 >> 16) & 0xFF)) * a00 + ((long) ((p10 >> 16) & 0xFF)) * a10
+                + ((long) ((p01 >> 16) & 0xFF)) * a01 + ((long) ((p11 >> 16) & 0xFF)) * a11 + half) / alpha);
+        int g = (int) ((((long) ((p00 >> 8) & 0xFF)) * a00 + ((long) ((p10 >> 8) & 0xFF)) * a10
+                + ((long) ((p01 >> 8) & 0xFF)) * a01 + ((long) ((p11 >> 8) & 0xFF)) * a11 + half) / alpha);
+        int b = (int) ((((long) (p00 & 0xFF)) * a00 + ((long) (p10 & 0xFF)) * a10
+                + ((long) (p01 & 0xFF)) * a01 + ((long) (p11 & 0xFF)) * a11 + half) / alpha);
+        return (((alpha + 32768) >> 16) << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static void checkSize(int width, int height, IntRaster dst){
+        if(dst.getWidth() != width || dst.getHeight() != height){
+            throw new IllegalArgumentException("destination is " + dst.getWidth() + "x" + dst.getHeight()
+                    + ", expected " + width + "x" + height);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.nahom.ip4a.core;
+
+/**
+ * Inner loops of the point ops and convolutions that a SIMD backend can take over.
+ * <p>
+ * The backend in com.github.nahom.ip4a.simd uses the incubating Java Vector API.
+ * Its source lives under vector/, apart from the library, so Android and Java 7
+ * builds do not see it. It is looked up by name when this class loads and is only
+ * used if it links. That needs a JDK 16+ started with
+ * {@code --add-modules jdk.incubator.vector}. Android and plain JVMs keep the
+ * scalar loops, as does {@code -Dip4a.vector=false}.
+ * Every method must give exactly the same pixels as the scalar loop it replaces.
+ */
+public abstract class VectorKernels {
+
+    private static final String BACKEND = "com.github.nahom.ip4a.simd.VectorApiKernels";
+
+    static final VectorKernels INSTANCE = load();
+
+    protected VectorKernels(){
+    }
+
+    private static VectorKernels load(){
+        if(!Boolean.parseBoolean(System.getProperty("ip4a.vector", "true"))){
+            return null;
+        }
+        try{
+            return (VectorKernels) Class.forName(BACKEND).getDeclaredConstructor().newInstance();
+        }catch(Exception e){
+            return null;
+        }catch(LinkageError e){
+            return null;
+        }
+    }
+
+    /**
+     * @return the active backend, or null when the scalar loops are used
+     */
+    public static VectorKernels get(){
+        return INSTANCE;
+    }
+
+    /**
+     * @return a short description such as the vector width, for logs and benchmarks
+     */
+    public abstract String getName();
+
+    /** out = in ^ mask */
+    public abstract void xor(int[] in, int inPos, int[] out, int outPos, int length, int mask);
+
+    /** out = in & mask */
+    public abstract void and(int[] in, int inPos, int[] out, int outPos, int length, int mask);
+
+    /**
+     * Adds a constant to each color channel and clamps to 0..255; alpha is kept.
+     */
+    public abstract void addClamped(int[] in, int inPos, int[] out, int outPos, int length,
+                                    int red, int green, int blue);
+
+    /**
+     * One output row of a fixed-point convolution: for each pixel
+     * channel = clamp((base + sum(weights[t] * in[inPos + x + offsets[t]])) >> shift),
+     * alpha from in[inPos + x].
+     */
+    public abstract void convolve(int[] in, int inPos, int[] offsets, int[] weights, int base, int shift,
+                                  int[] out, int outPos, int length);
+
+    /**
+     * Horizontal pass of a separable convolution: unshifted weighted sums of
+     * in[inPos + x + k] over k, one array per channel.
+     */
+    public abstract void convolveHorizontal(int[] in, int inPos, int[] weights,
+                                            int[] sumR, int[] sumG, int[] sumB, int sumPos, int length);
+
+    /**
+     * Vertical pass of a separable convolution over rows of horizontal sums starting at
+     * slots[k]: channel = clamp((base + sum(weights[k] * sum[slots[k] + x])) >> shift),
+     * alpha from in[centerPos + x].
+     */
+    public abstract void convolveVertical(int[] sumR, int[] sumG, int[] sumB, int[] slots, int[] weights,
+                                          int base, int shift, int[] in, int centerPos,
+                                          int[] out, int outPos, int length);
+}
@@ -0,0 +1,36 @@
+package com.github.nahom.ip4a.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Writes rows as a binary PPM (P6) image, dropping alpha. The header is written
+ * up front; the stream is not closed.
+ */
+public final class PpmRowSink implements RowSink {
+
+    private final OutputStream out;
+    private final byte[] row;
+
+    public PpmRowSink(OutputStream out, int width, int height) throws IOException {
+        this.out = out;
+        this.row = new byte[width * 3];
+        out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(Charset.forName("US-ASCII")));
+    }
+
+    @Override
+    public void writeRows(int[] pixels, int offset, int stride, int count) throws IOException {
+        int width = row.length / 3;
+        for(int y = 0; y < count; ++y){
+            int pos = offset + y * stride;
+            for(int x = 0, i = 0; x < width; ++x, i += 3){
+                int pixel = pixels[pos + x];
+                row[i] = (byte) (pixel >> 16);
+                row[i + 1] = (byte) (pixel >> 8);
+                row[i + 2] = (byte) pixel;
+            }
+            out.write(row);
+        }
+    }
+}
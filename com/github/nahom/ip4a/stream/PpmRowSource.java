@@ -0,0 +1,115 @@
+package com.github.nahom.ip4a.stream;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a binary PPM (P6) image with 8 bit samples row by row. Pixels come out
+ * opaque. Samples of a file whose max value is below 255 are scaled to 0..255.
+ * The stream is not closed.
+ */
+public final class PpmRowSource implements RowSource {
+
+    private final InputStream in;
+    private final int width;
+    private final int height;
+    // sample to channel value, null when the max value is 255
+    private final int[] levels;
+    private byte[] row;
+
+    public PpmRowSource(InputStream in) throws IOException {
+        this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+        if(this.in.read() != 'P' || this.in.read() != '6'){
+            throw new IOException("not a binary PPM (P6) stream");
+        }
+        width = readHeaderInt();
+        height = readHeaderInt();
+        int maxValue = readHeaderInt();
+        if(maxValue < 1 || maxValue > 255){
+            throw new IOException("only 8 bit PPM is supported, max value " + maxValue);
+        }
+        if(width < 0 || height < 0 || (long) width * 3 > Integer.MAX_VALUE){
+            throw new IOException("invalid PPM size " + width + "x" + height);
+        }
+        levels = maxValue == 255 ? null : scale(maxValue);
+    }
+
+    /**
+     * @return 0..255 for each sample value, rounded; values above maxValue clamp to 255
+     */
+    private static int[] scale(int maxValue){
+        int[] table = new int[256];
+        for(int i = 0; i < table.length; ++i){
+            table[i] = Math.min(255, (i * 255 + maxValue / 2) / maxValue);
+        }
+        return table;
+    }
+
+    // skips whitespace and comments, then reads a decimal number and the single whitespace after it
+    private int readHeaderInt() throws IOException {
+        int c = in.read();
+        while(true){
+            if(c == '#'){
+                while(c != '\n' && c != '\r' && c != -1){
+                    c = in.read();
+                }
+            }else if(c == ' ' || c == '\t' || c == '\n' || c == '\r'){
+                c = in.read();
+            }else{
+                break;
+            }
+        }
+        if(c < '0' || c > '9'){
+            throw new IOException("malformed PPM header");
+        }
+        long value = 0;
+        while(c >= '0' && c <= '9'){
+            value = value * 10 + (c - '0');
+            if(value > Integer.MAX_VALUE){
+                throw new IOException("PPM header value too large");
+            }
+            c = in.read();
+        }
+        return (int) value;
+    }
+
+    @Override
+    public int getWidth(){
+        return width;
+    }
+
+    @Override
+    public int getHeight(){
+        return height;
+    }
+
+    @Override
+    public void readRows(int[] pixels, int offset, int stride, int count) throws IOException {
+        if(row == null){
+            row = new byte[width * 3];
+        }
+        for(int y = 0; y < count; ++y){
+            int read = 0;
+            while(read < row.length){
+                int n = in.read(row, read, row.length - read);
+                if(n < 0){
+                    throw new EOFException("PPM data ends early");
+                }
+                read += n;
+            }
+            int pos = offset + y * stride;
+            if(levels == null){
+                for(int x = 0, i = 0; x < width; ++x, i += 3){
+                    pixels[pos + x] = 0xFF000000 | ((row[i] & 0xFF) << 16) | ((row[i + 1] & 0xFF) << 8) | (row[i + 2] & 0xFF);
+                }
+            }else{
+                for(int x = 0, i = 0; x < width; ++x, i += 3){
+                    pixels[pos + x] = 0xFF000000 | (levels[row[i] & 0xFF] << 16) | (levels[row[i + 1] & 0xFF] << 8)
+                            | levels[row[i + 2] & 0xFF];
+                }
+            }
+        }
+    }
+}
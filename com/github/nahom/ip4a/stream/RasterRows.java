@@ -0,0 +1,60 @@
+package com.github.nahom.ip4a.stream;
+
+import com.github.nahom.ip4a.core.IntRaster;
+
+/**
+ * Row sources and sinks over in-memory rasters.
+ */
+public final class RasterRows {
+
+    private RasterRows(){
+    }
+
+    public static RowSource source(final IntRaster raster){
+        return new RowSource(){
+            private int next;
+
+            @Override
+            public int getWidth(){
+                return raster.getWidth();
+            }
+
+            @Override
+            public int getHeight(){
+                return raster.getHeight();
+            }
+
+            @Override
+            public void readRows(int[] pixels, int offset, int stride, int count){
+                checkRows(next, count, raster.getHeight());
+                for(int i = 0; i < count; ++i){
+                    System.arraycopy(raster.getPixels(), raster.index(0, next + i),
+                            pixels, offset + i * stride, raster.getWidth());
+                }
+                next += count;
+            }
+        };
+    }
+
+    public static RowSink sink(final IntRaster raster){
+        return new RowSink(){
+            private int next;
+
+            @Override
+            public void writeRows(int[] pixels, int offset, int stride, int count){
+                checkRows(next, count, raster.getHeight());
+                for(int i = 0; i < count; ++i){
+                    System.arraycopy(pixels, offset + i * stride,
+                            raster.getPixels(), raster.index(0, next + i), raster.getWidth());
+                }
+                next += count;
+            }
+        };
+    }
+
+    static void checkRows(int next, int count, int height){
+        if(count < 0 || next + count > height){
+            throw new IllegalStateException("rows " + next + ".." + (next + count) + " outside height " + height);
+        }
+    }
+}
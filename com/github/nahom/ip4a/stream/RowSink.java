@@ -0,0 +1,16 @@
+package com.github.nahom.ip4a.stream;
+
+import java.io.IOException;
+
+/**
+ * Receives finished rows top to bottom, e.g. an encoder writing them out.
+ */
+public interface RowSink {
+
+    /**
+     * Takes the next count rows of packed ARGB, laid out like
+     * {@link RowSource#readRows(int[], int, int, int)}. The array is reused once the
+     * call returns.
+     */
+    void writeRows(int[] pixels, int offset, int stride, int count) throws IOException;
+}
@@ -0,0 +1,20 @@
+package com.github.nahom.ip4a.stream;
+
+import java.io.IOException;
+
+/**
+ * Delivers an image top to bottom a few rows at a time, e.g. from a progressive or
+ * region decoder, without ever holding the whole image.
+ */
+public interface RowSource {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Reads the next count rows as packed ARGB. Row i goes to
+     * pixels[offset + i * stride], its pixels following each other.
+     */
+    void readRows(int[] pixels, int offset, int stride, int count) throws IOException;
+}
@@ -0,0 +1,171 @@
+package com.github.nahom.ip4a.stream;
+
+import java.io.IOException;
+
+import com.github.nahom.ip4a.core.Border;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.PixelBufferPool;
+import com.github.nahom.ip4a.core.PositionalOp;
+import com.github.nahom.ip4a.core.RasterOp;
+import com.github.nahom.ip4a.core.TileExecutor;
+
+/**
+ * Runs a chain of {@link RasterOp}s over an image that arrives and leaves in
+ * horizontal strips, for images too large to decode in one piece.
+ * <p>
+ * Every op keeps a window of its input rows: one strip plus the rows its radius
+ * reaches above and below. When the window is full the op filters the rows whose
+ * neighbourhood is complete, hands them to the next op and carries the rows still
+ * needed as halo over to its next strip. Each op therefore holds about
+ * 2 * (stripHeight + 2 * radius) rows, whatever the image height. The window only
+ * touches the real top and bottom of the image, so edge handling is the same as
+ * when the whole image is filtered at once and so is the output; a
+ * {@link PositionalOp} is applied at the position of the window. Ops with a
+ * {@link Border#WRAP} border are refused, since the bottom rows would need the top
+ * strip long after it was passed on.
+ */
+public final class StripProcessor {
+
+    public static final int DEFAULT_STRIP_HEIGHT = 64;
+
+    private final RasterOp[] ops;
+    private final int stripHeight;
+    private final TileExecutor executor;
+
+    public StripProcessor(RasterOp... ops){
+        this(DEFAULT_STRIP_HEIGHT, TileExecutor.getDefault(), ops);
+    }
+
+    public StripProcessor(int stripHeight, TileExecutor executor, RasterOp... ops){
+        if(stripHeight < 1){
+            throw new IllegalArgumentException("strip height must be positive, got " + stripHeight);
+        }
+        for(RasterOp op : ops){
+            if(Border.wraps(op)){
+                throw new IllegalArgumentException("ops with a wrap border cannot run in strips: " + op);
+            }
+        }
+        this.ops = ops.clone();
+        this.stripHeight = stripHeight;
+        this.executor = executor;
+    }
+
+    public int getStripHeight(){
+        return stripHeight;
+    }
+
+    /**
+     * @return how many rows of pixels the processor keeps for an image of any height
+     */
+    public int getResidentRows(){
+        int rows = stripHeight;
+        for(RasterOp op : ops){
+            rows += 2 * (stripHeight + 2 * op.getRadius());
+        }
+        return rows;
+    }
+
+    /**
+     * Pulls every row from source, filters it and pushes it to sink.
+     */
+    public void process(RowSource source, RowSink sink) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        PixelBufferPool pool = PixelBufferPool.getDefault();
+        Stage[] stages = new Stage[ops.length];
+        RowSink next = sink;
+        int[] strip = null;
+        try{
+            for(int i = ops.length - 1; i >= 0; --i){
+                stages[i] = new Stage(ops[i], width, height, stripHeight, executor, pool, next);
+                next = stages[i];
+            }
+            strip = pool.acquire(Math.max(1, width * stripHeight));
+            for(int y = 0; y < height; y += stripHeight){
+                int count = Math.min(stripHeight, height - y);
+                source.readRows(strip, 0, width, count);
+                next.writeRows(strip, 0, width, count);
+            }
+        }finally{
+            pool.release(strip);
+            for(Stage stage : stages){
+                if(stage != null){
+                    stage.release();
+                }
+            }
+        }
+    }
+
+    private static final class Stage implements RowSink {
+        private final RasterOp op;
+        private final int radius;
+        private final int width;
+        private final int height;
+        private final int capacity;
+        private final TileExecutor executor;
+        private final PixelBufferPool pool;
+        private final RowSink next;
+        private final int[] window;
+        private final int[] output;
+        // image row held in window row 0, rows held, next image row to produce
+        private int windowTop;
+        private int filled;
+        private int nextRow;
+
+        Stage(RasterOp op, int width, int height, int stripHeight, TileExecutor executor,
+              PixelBufferPool pool, RowSink next){
+            this.op = op;
+            this.radius = op.getRadius();
+            this.width = width;
+            this.height = height;
+            this.capacity = stripHeight + 2 * radius;
+            this.executor = executor;
+            this.pool = pool;
+            this.next = next;
+            this.window = pool.acquire(Math.max(1, width * capacity));
+            this.output = pool.acquire(Math.max(1, width * capacity));
+        }
+
+        @Override
+        public void writeRows(int[] pixels, int offset, int stride, int count) throws IOException {
+            while(count > 0){
+                int rows = Math.min(count, capacity - filled);
+                for(int i = 0; i < rows; ++i){
+                    System.arraycopy(pixels, offset + i * stride, window, (filled + i) * width, width);
+                }
+                filled += rows;
+                offset += rows * stride;
+                count -= rows;
+                if(filled == capacity || windowTop + filled == height){
+                    flush();
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            int available = windowTop + filled;
+            // rows near the end of the window wait for their lower halo, unless the image ends there
+            int end = available == height ? height : available - radius;
+            if(end > nextRow){
+                IntRaster src = new IntRaster(window, 0, width, width, filled);
+                IntRaster dst = new IntRaster(output, 0, width, width, filled);
+                RasterOp windowOp = op instanceof PositionalOp ? ((PositionalOp) op).at(0, windowTop) : op;
+                executor.apply(windowOp, src, dst, 0, nextRow - windowTop, width, end - windowTop);
+                next.writeRows(output, (nextRow - windowTop) * width, width, end - nextRow);
+                nextRow = end;
+            }
+            int keep = Math.max(windowTop, nextRow - radius);
+            if(keep > windowTop){
+                int rows = available - keep;
+                System.arraycopy(window, (keep - windowTop) * width, window, 0, rows * width);
+                windowTop = keep;
+                filled = rows;
+            }
+        }
+
+        void release(){
+            pool.release(window);
+            pool.release(output);
+        }
+    }
+}
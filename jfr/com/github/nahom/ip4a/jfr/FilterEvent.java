@@ -0,0 +1,37 @@
+package com.github.nahom.ip4a.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One filter call, as recorded by {@link JfrFilterListener}. The event spans the
+ * call, so recordings line it up with GC pauses and allocation samples.
+ */
+@Name("com.github.nahom.ip4a.Filter")
+@Label("Image Filter")
+@Category("IP4A")
+@Description("A call to one of the IP4A filters")
+@StackTrace(false)
+public class FilterEvent extends jdk.jfr.Event {
+
+    @Label("Filter")
+    String filter;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Megapixels per Second")
+    double megapixelsPerSecond;
+
+    @Label("Allocated Pixel Buffers")
+    @Description("Bytes the shared pixel buffer pool had to allocate during the call")
+    @DataAmount
+    long allocatedBytes;
+}
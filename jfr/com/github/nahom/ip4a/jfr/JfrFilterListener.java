@@ -0,0 +1,41 @@
+package com.github.nahom.ip4a.jfr;
+
+import com.github.nahom.ip4a.core.FilterListener;
+
+/**
+ * Emits a {@link FilterEvent} for every filter call. JFR is not part of Android,
+ * so this package is only meant for desktop and server JVMs (Java 11 or later):
+ * <pre>
+ * IP4A.setFilterListener(new JfrFilterListener());
+ * </pre>
+ * While no recording has the event enabled, a call costs one isEnabled check.
+ */
+public final class JfrFilterListener implements FilterListener {
+
+    @Override
+    public Object filterStarted(String filter){
+        FilterEvent event = new FilterEvent();
+        if(!event.isEnabled()){
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void filterFinished(Object token, String filter, int width, int height, long nanos, long allocatedBytes){
+        if(token == null){
+            return;
+        }
+        FilterEvent event = (FilterEvent) token;
+        event.end();
+        if(event.shouldCommit()){
+            event.filter = filter;
+            event.width = width;
+            event.height = height;
+            event.megapixelsPerSecond = nanos == 0 ? 0 : (long) width * height * 1e3 / nanos;
+            event.allocatedBytes = allocatedBytes;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static com.github.nahom.ip4a.core.TestImages.assertSamePixels;
+import static com.github.nahom.ip4a.core.TestImages.crop;
+import static com.github.nahom.ip4a.core.TestImages.filterWhole;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Every border mode must give the pixels of filtering the whole image, however the
+ * image is cut into bands, viewports or dirty tiles.
+ */
+public class BorderTest {
+
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 41;
+    private static final Border[] BORDERS = {
+            Border.NONE, Border.CLAMP, Border.REFLECT, Border.WRAP, Border.constant(0xFF336699)};
+
+    static RasterOp[] ops(Border border){
+        Kernel blur = Kernel.separable(new double[]{1, 4, 6, 4, 1}, new double[]{1, 4, 6, 4, 1}, 256, 0);
+        return new RasterOp[]{
+                new ConvolveOp(Kernels.sharpen(11), border),
+                new ConvolveOp(blur, border),
+                new FftConvolveOp(Kernel.of(new double[][]{{1, 2, 1}, {2, 4, 2}, {1, 2, 1}}, 16, 0), border)};
+    }
+
+    @Test
+    public void mapsPositionsOutsideTheAxis(){
+        assertEquals(0, Border.CLAMP.map(-3, 5));
+        assertEquals(4, Border.CLAMP.map(7, 5));
+        assertEquals(2, Border.REFLECT.map(-2, 5));
+        assertEquals(2, Border.REFLECT.map(6, 5));
+        assertEquals(3, Border.WRAP.map(-2, 5));
+        assertEquals(1, Border.WRAP.map(6, 5));
+        assertEquals(-1, Border.constant(0xFF000000).map(-1, 5));
+        assertEquals(3, Border.NONE.map(3, 5));
+    }
+
+    @Test
+    public void onlyWrapReachesTheOppositeEdge(){
+        for(Border border : BORDERS){
+            assertEquals(border.toString(), border == Border.WRAP, Border.wraps(ops(border)[0]));
+            assertEquals(border.toString(), border == Border.WRAP, Border.wraps(ops(border)[2]));
+        }
+        assertFalse(Border.wraps(PointOps.invert()));
+        assertTrue(Border.wraps(LinearLight.convolve(Kernels.gaussianBlur(), Border.WRAP)));
+        assertTrue(Border.wraps(new ShiftOp(3)));
+    }
+
+    @Test
+    public void ownWrappingOpsMatchWholeImage(){
+        IntRaster src = TestImages.random(WIDTH, HEIGHT, 5);
+        RasterOp[] ops = {new ShiftOp(4), new ConvolveOp(Kernels.gaussianBlur(), Border.CLAMP)};
+        IntRaster whole = filterWhole(src, ops);
+        LazyRaster graph = LazyRaster.of(src).apply(ops[0]).apply(ops[1]);
+        assertSamePixels("left edge", crop(whole, 0, 10, 6, 20), graph.render(0, 10, 6, 20));
+        IncrementalRenderer renderer = new IncrementalRenderer(src, TileExecutor.serial(), 16, ops);
+        renderer.update();
+        src.setPixel(1, 1, ~src.getPixel(1, 1));
+        renderer.invalidate(1, 1, 2, 2);
+        renderer.update();
+        assertSamePixels("after edit", filterWhole(src, ops), renderer.getOutput());
+    }
+
+    /**
+     * Copies the pixel radius columns to the right, wrapping around; an op of the
+     * kind a caller might write, that only Border.wraps knows reaches across.
+     */
+    private static final class ShiftOp implements BorderedOp {
+        private final int radius;
+
+        ShiftOp(int radius){
+            this.radius = radius;
+        }
+
+        @Override
+        public Border getBorder(){
+            return Border.WRAP;
+        }
+
+        @Override
+        public int getRadius(){
+            return radius;
+        }
+
+        @Override
+        public void apply(IntRaster src, IntRaster dst, int left, int top, int right, int bottom){
+            for(int y = top; y < bottom; ++y){
+                for(int x = left; x < right; ++x){
+                    dst.setPixel(x, y, src.getPixel(Border.WRAP.map(x + radius, src.getWidth()), y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parallelBandsMatchWholeImage(){
+        IntRaster src = TestImages.random(WIDTH, HEIGHT, 1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        // threshold 0 splits even this small image into bands
+        TileExecutor parallel = new TileExecutor(pool, 4, 0);
+        try{
+            for(Border border : BORDERS){
+                for(RasterOp op : ops(border)){
+                    IntRaster expected = filterWhole(src, op);
+                    IntRaster actual = new IntRaster(WIDTH, HEIGHT);
+                    parallel.apply(op, src, actual);
+                    assertSamePixels(border + " " + op, expected, actual);
+                }
+            }
+        }finally{
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void viewportsMatchWholeImage(){
+        IntRaster src = TestImages.random(WIDTH, HEIGHT, 2);
+        int[][] viewports = {
+                {0, 0, 9, 7}, {WIDTH - 5, HEIGHT - 6, WIDTH, HEIGHT}, {0, HEIGHT - 3, WIDTH, HEIGHT},
+                {20, 15, 31, 24}, {WIDTH - 1, 0, WIDTH, HEIGHT}, {0, 0, WIDTH, HEIGHT}};
+        for(Border border : BORDERS){
+            RasterOp[] ops = ops(border);
+            IntRaster whole = filterWhole(src, ops);
+            LazyRaster graph = LazyRaster.of(src);
+            for(RasterOp op : ops){
+                graph = graph.apply(op);
+            }
+            for(int[] view : viewports){
+                assertSamePixels(border + " viewport " + view[0] + "," + view[1],
+                        crop(whole, view[0], view[1], view[2], view[3]),
+                        graph.render(view[0], view[1], view[2], view[3]));
+            }
+        }
+    }
+
+    @Test
+    public void incrementalUpdatesMatchWholeImage(){
+        for(Border border : BORDERS){
+            IntRaster src = TestImages.random(WIDTH, HEIGHT, 3);
+            RasterOp[] ops = ops(border);
+            IncrementalRenderer renderer = new IncrementalRenderer(src, TileExecutor.serial(), 16, ops);
+            renderer.update();
+            assertSamePixels(border + " first update", filterWhole(src, ops), renderer.getOutput());
+            // edits at a corner and along an edge, where wrapping reaches the other side
+            int[][] edits = {{WIDTH - 3, HEIGHT - 2, WIDTH, HEIGHT}, {0, 18, 2, 22}, {25, 0, 28, 1}};
+            for(int[] edit : edits){
+                for(int y = edit[1]; y < edit[3]; ++y){
+                    for(int x = edit[0]; x < edit[2]; ++x){
+                        src.setPixel(x, y, ~src.getPixel(x, y));
+                    }
+                }
+                renderer.invalidate(edit[0], edit[1], edit[2], edit[3]);
+                renderer.update();
+                assertSamePixels(border + " after edit at " + edit[0] + "," + edit[1],
+                        filterWhole(src, ops), renderer.getOutput());
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static com.github.nahom.ip4a.core.TestImages.assertSamePixels;
+import static com.github.nahom.ip4a.core.TestImages.filterWhole;
+import static com.github.nahom.ip4a.core.TestImages.maxChannelDifference;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The frequency domain path must match the direct loop up to rounding.
+ */
+public class FftConvolveOpTest {
+
+    private static Kernel randomKernel(int width, int height, long seed){
+        Random random = new Random(seed);
+        double[] weights = new double[width * height];
+        double sum = 0;
+        for(int i = 0; i < weights.length; ++i){
+            weights[i] = random.nextInt(9) - 2;
+            sum += weights[i];
+        }
+        return new Kernel(width, height, weights, sum > 0 ? sum : 1, 3);
+    }
+
+    @Test
+    public void transformRoundTrips(){
+        for(int n = 1; n <= 64; n <<= 1){
+            Random random = new Random(n);
+            double[] re = new double[n * n];
+            double[] im = new double[n * n];
+            for(int i = 0; i < re.length; ++i){
+                re[i] = random.nextDouble();
+                im[i] = random.nextDouble();
+            }
+            double[] originalRe = re.clone();
+            double[] originalIm = im.clone();
+            Fft fft = Fft.forSize(n);
+            fft.transform2d(re, im, false);
+            fft.transform2d(re, im, true);
+            for(int i = 0; i < re.length; ++i){
+                assertEquals("re " + n, originalRe[i], re[i] / (n * n), 1e-9);
+                assertEquals("im " + n, originalIm[i], im[i] / (n * n), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void matchesDirectConvolution(){
+        IntRaster src = TestImages.random(97, 61, 5);
+        int[][] sizes = {{3, 3}, {9, 5}, {15, 15}, {31, 7}};
+        Border[] borders = {Border.NONE, Border.CLAMP, Border.REFLECT, Border.WRAP, Border.constant(0xFF808080)};
+        for(int[] size : sizes){
+            Kernel kernel = randomKernel(size[0], size[1], size[0] * 31 + size[1]);
+            for(Border border : borders){
+                IntRaster direct = filterWhole(src, new ConvolveOp(kernel, border));
+                IntRaster fft = filterWhole(src, new FftConvolveOp(kernel, border));
+                assertTrue(size[0] + "x" + size[1] + " " + border, maxChannelDifference(direct, fft) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void bandsOfAnyHeightMatchWholeImage(){
+        // short bands get small blocks, so this goes through several block sizes
+        IntRaster src = TestImages.random(80, 70, 6);
+        FftConvolveOp op = new FftConvolveOp(randomKernel(11, 11, 7), Border.REFLECT);
+        IntRaster expected = filterWhole(src, op);
+        for(int band : new int[]{1, 5, 16, 70}){
+            IntRaster actual = new IntRaster(80, 70);
+            for(int top = 0; top < 70; top += band){
+                op.apply(src, actual, 0, top, 80, Math.min(70, top + band));
+            }
+            assertTrue("bands of " + band, maxChannelDifference(expected, actual) <= 1);
+        }
+    }
+
+    @Test
+    public void equalKernelsShareResults(){
+        IntRaster src = TestImages.random(64, 48, 8);
+        Kernel kernel = randomKernel(13, 13, 9);
+        IntRaster first = filterWhole(src, new FftConvolveOp(kernel, Border.CLAMP));
+        Kernel same = new Kernel(13, 13, kernel.weights(), kernel.getFactor(), kernel.getOffset());
+        assertEquals(kernel, same);
+        assertEquals(kernel.hashCode(), same.hashCode());
+        assertSamePixels("new op, equal kernel", first, filterWhole(src, new FftConvolveOp(same, Border.CLAMP)));
+    }
+
+    @Test
+    public void costModelPicksFftOnlyForLargeKernels(){
+        assertTrue(Convolutions.create(Kernels.sharpen(11)) instanceof ConvolveOp);
+        assertTrue(Convolutions.create(randomKernel(31, 31, 10)) instanceof FftConvolveOp);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.nahom.ip4a.core;
+
+import org.junit.Test;
+
+import static com.github.nahom.ip4a.core.TestImages.assertSamePixels;
+import static com.github.nahom.ip4a.core.TestImages.filterWhole;
+
+/**
+ * The IP4A kernels at parameters that make their factor 0 must filter like the
+ * original division by zero did instead of failing.
+ */
+public class KernelsTest {
+
+    /**
+     * The original 3x3 loop: sum / factor + offset truncated and clamped per color
+     * channel, alpha from the center, and a transparent frame.
+     */
+    private static IntRaster reference(IntRaster src, double[][] rows, double factor, double offset){
+        IntRaster dst = new IntRaster(src.getWidth(), src.getHeight());
+        for(int y = 1; y < src.getHeight() - 1; ++y){
+            for(int x = 1; x < src.getWidth() - 1; ++x){
+                int pixel = src.getPixel(x, y) & 0xFF000000;
+                for(int shift = 0; shift < 24; shift += 8){
+                    int sum = 0;
+                    for(int j = -1; j <= 1; ++j){
+                        for(int i = -1; i <= 1; ++i){
+                            sum += ((src.getPixel(x + i, y + j) >> shift) & 0xFF) * rows[j + 1][i + 1];
+                        }
+                    }
+                    int value = (int) (sum / factor + offset);
+                    pixel |= Math.max(0, Math.min(255, value)) << shift;
+                }
+                dst.setPixel(x, y, pixel);
+            }
+        }
+        return dst;
+    }
+
+    @Test
+    public void sharpenWithZeroFactorSaturates(){
+        IntRaster src = TestImages.random(40, 30, 1);
+        double[][] rows = {{0, -2, 0}, {-2, 8, -2}, {0, -2, 0}};
+        assertSamePixels("sharpen(8)", reference(src, rows, 0, 1),
+                filterWhole(src, Convolutions.create(Kernels.sharpen(8))));
+    }
+
+    @Test
+    public void smoothWithZeroFactorSaturates(){
+        IntRaster src = TestImages.random(40, 30, 2);
+        // flat areas give a zero sum, which the original turned into 0 through NaN
+        for(int x = 0; x < 10; ++x){
+            for(int y = 0; y < 10; ++y){
+                src.setPixel(x, y, 0xFF808080);
+            }
+        }
+        double[][] rows = {{1, 1, 1}, {1, -8, 1}, {1, 1, 1}};
+        assertSamePixels("smooth(-8)", reference(src, rows, 0, 1),
+                filterWhole(src, Convolutions.create(Kernels.smooth(-8))));
+    }
+}
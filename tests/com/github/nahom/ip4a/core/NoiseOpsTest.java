@@ -0,0 +1,81 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static com.github.nahom.ip4a.core.TestImages.assertSamePixels;
+import static com.github.nahom.ip4a.core.TestImages.crop;
+import static com.github.nahom.ip4a.core.TestImages.filterWhole;
+
+/**
+ * Seeded noise must depend on the image position only, not on how the image is
+ * cut into bands, viewports or dirty tiles.
+ */
+public class NoiseOpsTest {
+
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 110;
+
+    private static RasterOp[][] chains(){
+        return new RasterOp[][]{
+                {NoiseOps.flea(42)},
+                {NoiseOps.snow(7)},
+                // noise between kernels, so it runs on pooled windows with halos
+                {new ConvolveOp(Kernels.smooth(1)), NoiseOps.flea(3), new ConvolveOp(Kernels.sharpen(11))}};
+    }
+
+    @Test
+    public void sameSeedSameNoise(){
+        IntRaster src = TestImages.random(WIDTH, HEIGHT, 1);
+        assertSamePixels("flea", filterWhole(src, NoiseOps.flea(5)), filterWhole(src, NoiseOps.flea(5)));
+    }
+
+    @Test
+    public void parallelBandsMatchWholeImage(){
+        IntRaster src = TestImages.random(WIDTH, HEIGHT, 2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try{
+            TileExecutor parallel = new TileExecutor(pool, 4, 0);
+            for(RasterOp[] ops : chains()){
+                IntRaster actual = new IntRaster(WIDTH, HEIGHT);
+                parallel.apply(ops[0], src, actual);
+                assertSamePixels(ops[0].toString(), filterWhole(src, ops[0]), actual);
+            }
+        }finally{
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void viewportsMatchWholeImage(){
+        IntRaster src = TestImages.random(WIDTH, HEIGHT, 3);
+        int[][] viewports = {{0, 0, 9, 7}, {37, 21, 101, 60}, {WIDTH - 5, HEIGHT - 6, WIDTH, HEIGHT}};
+        for(RasterOp[] ops : chains()){
+            IntRaster whole = filterWhole(src, ops);
+            LazyRaster graph = LazyRaster.of(src);
+            for(RasterOp op : ops){
+                graph = graph.apply(op);
+            }
+            for(int[] view : viewports){
+                assertSamePixels(ops.length + " ops, viewport " + view[0] + "," + view[1],
+                        crop(whole, view[0], view[1], view[2], view[3]),
+                        graph.render(view[0], view[1], view[2], view[3]));
+            }
+        }
+    }
+
+    @Test
+    public void invalidatingUnchangedSourceKeepsOutput(){
+        IntRaster src = TestImages.random(WIDTH, HEIGHT, 4);
+        for(RasterOp[] ops : chains()){
+            IncrementalRenderer renderer = new IncrementalRenderer(src, TileExecutor.serial(), 32, ops);
+            renderer.update();
+            IntRaster whole = filterWhole(src, ops);
+            assertSamePixels(ops.length + " ops, first update", whole, renderer.getOutput());
+            renderer.invalidate(100, 70, 110, 80);
+            renderer.update();
+            assertSamePixels(ops.length + " ops, after invalidate", whole, renderer.getOutput());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.nahom.ip4a.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Size classes, reuse by type and size, and eviction of the least recently released arrays.
+ */
+public class PixelBufferPoolTest {
+
+    @Test
+    public void classIndicesAreDenseAndOnlyForSizeClasses(){
+        assertEquals(0, PixelBufferPool.classIndex(8));
+        assertEquals(-1, PixelBufferPool.classIndex(7));
+        int expected = 0;
+        int length = 8;
+        while(length < Integer.MAX_VALUE / 2){
+            assertEquals("length " + length, expected, PixelBufferPool.classIndex(length));
+            if(length + 1 != PixelBufferPool.sizeClass(length + 1)){
+                assertEquals("length " + (length + 1), -1, PixelBufferPool.classIndex(length + 1));
+            }
+            length = PixelBufferPool.sizeClass(length + 1);
+            ++expected;
+        }
+    }
+
+    @Test
+    public void reusesArraysOfTheSameTypeAndClass(){
+        PixelBufferPool pool = new PixelBufferPool(1 << 20);
+        int[] ints = pool.acquire(1000);
+        assertEquals(PixelBufferPool.sizeClass(1000), ints.length);
+        pool.release(ints);
+        // the same class reuses it, another type or class does not
+        assertSame(ints, pool.acquire(990));
+        pool.release(ints);
+        pool.acquireBytes(1000);
+        assertTrue(pool.acquire(2000) != ints);
+        assertSame(ints, pool.acquire(1000));
+        assertEquals(2, pool.getHitCount());
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void secondReleaseIsIgnored(){
+        PixelBufferPool pool = new PixelBufferPool(1 << 20);
+        int[] buffer = pool.acquire(64);
+        pool.release(buffer);
+        pool.release(buffer);
+        assertEquals(4 * 64, pool.getRetainedBytes());
+        assertSame(buffer, pool.acquire(64));
+        assertTrue(pool.acquire(64) != buffer);
+    }
+
+    @Test
+    public void evictsLeastRecentlyReleased(){
+        PixelBufferPool pool = new PixelBufferPool(3 * 4 * 64);
+        int[] first = pool.acquire(64);
+        int[] second = pool.acquire(64);
+        byte[] third = pool.acquireBytes(256);
+        int[] fourth = pool.acquire(64);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        pool.release(fourth);
+        assertEquals(3 * 4 * 64, pool.getRetainedBytes());
+        // first went, newest of the class comes back first
+        assertSame(fourth, pool.acquire(64));
+        assertSame(second, pool.acquire(64));
+        assertSame(third, pool.acquireBytes(256));
+        assertTrue(pool.acquire(64) != first);
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void clearDropsEverything(){
+        PixelBufferPool pool = new PixelBufferPool(1 << 20);
+        short[] buffer = pool.acquireShorts(100);
+        pool.release(buffer);
+        pool.clear();
+        assertEquals(0, pool.getRetainedBytes());
+        assertTrue(pool.acquireShorts(100) != buffer);
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static com.github.nahom.ip4a.core.TestImages.assertSamePixels;
+import static com.github.nahom.ip4a.core.TestImages.maxChannelDifference;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The packed 2x2 average and the fixed point area resize against averages computed
+ * one channel at a time, and the pyramid against repeated halving.
+ */
+public class ResampleTest {
+
+    /**
+     * Each channel of the 2x2 block rounded half up, an odd edge pairing with itself.
+     */
+    private static IntRaster halfReference(IntRaster src){
+        int w = src.getWidth();
+        int h = src.getHeight();
+        IntRaster dst = new IntRaster(Resample.halfSize(w), Resample.halfSize(h));
+        for(int y = 0; y < dst.getHeight(); ++y){
+            for(int x = 0; x < dst.getWidth(); ++x){
+                int[] block = {
+                        src.getPixel(2 * x, 2 * y), src.getPixel(Math.min(2 * x + 1, w - 1), 2 * y),
+                        src.getPixel(2 * x, Math.min(2 * y + 1, h - 1)),
+                        src.getPixel(Math.min(2 * x + 1, w - 1), Math.min(2 * y + 1, h - 1))};
+                int pixel = 0;
+                for(int shift = 0; shift < 32; shift += 8){
+                    int sum = 0;
+                    for(int p : block){
+                        sum += (p >>> shift) & 0xFF;
+                    }
+                    pixel |= ((sum + 2) >> 2) << shift;
+                }
+                dst.setPixel(x, y, pixel);
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Each channel averaged over the exact source area of an output pixel, in doubles.
+     */
+    private static IntRaster resizeReference(IntRaster src, int width, int height){
+        IntRaster dst = new IntRaster(width, height);
+        double scaleX = (double) src.getWidth() / width;
+        double scaleY = (double) src.getHeight() / height;
+        for(int y = 0; y < height; ++y){
+            for(int x = 0; x < width; ++x){
+                double[] sums = new double[4];
+                for(int sy = (int) (y * scaleY); sy < Math.min(src.getHeight(), Math.ceil((y + 1) * scaleY)); ++sy){
+                    double coverY = Math.min((y + 1) * scaleY, sy + 1) - Math.max(y * scaleY, sy);
+                    for(int sx = (int) (x * scaleX); sx < Math.min(src.getWidth(), Math.ceil((x + 1) * scaleX)); ++sx){
+                        double cover = coverY * (Math.min((x + 1) * scaleX, sx + 1) - Math.max(x * scaleX, sx));
+                        int p = src.getPixel(sx, sy);
+                        for(int c = 0; c < 4; ++c){
+                            sums[c] += cover * ((p >>> (8 * c)) & 0xFF);
+                        }
+                    }
+                }
+                int pixel = 0;
+                for(int c = 0; c < 4; ++c){
+                    pixel |= (int) Math.round(sums[c] / (scaleX * scaleY)) << (8 * c);
+                }
+                dst.setPixel(x, y, pixel);
+            }
+        }
+        return dst;
+    }
+
+    @Test
+    public void halfAveragesEachBlock(){
+        int[][] sizes = {{1, 1}, {2, 2}, {7, 1}, {1, 6}, {53, 41}, {64, 48}};
+        for(int[] size : sizes){
+            IntRaster src = TestImages.random(size[0], size[1], size[0] * 100 + size[1]);
+            IntRaster dst = new IntRaster(Resample.halfSize(size[0]), Resample.halfSize(size[1]));
+            Resample.half(src, dst, TileExecutor.serial());
+            assertSamePixels(size[0] + "x" + size[1], halfReference(src), dst);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void halfRejectsWrongDestination(){
+        Resample.half(new IntRaster(10, 10), new IntRaster(4, 5), TileExecutor.serial());
+    }
+
+    @Test
+    public void resizeIsAreaAverage(){
+        IntRaster src = TestImages.random(100, 70, 2);
+        int[][] sizes = {{50, 35}, {33, 23}, {41, 29}, {7, 5}, {1, 1}, {100, 1}};
+        for(int[] size : sizes){
+            IntRaster dst = new IntRaster(size[0], size[1]);
+            Resample.resize(src, dst, TileExecutor.serial());
+            assertTrue(size[0] + "x" + size[1], maxChannelDifference(resizeReference(src, size[0], size[1]), dst) <= 1);
+        }
+        IntRaster same = new IntRaster(100, 70);
+        Resample.resize(src, same, TileExecutor.serial());
+        assertSamePixels("same size", src, same);
+    }
+
+    @Test
+    public void parallelRowsMatchSerial(){
+        IntRaster src = TestImages.random(203, 157, 3);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try{
+            TileExecutor parallel = new TileExecutor(pool, 4, 0);
+            IntRaster serialHalf = new IntRaster(102, 79);
+            IntRaster parallelHalf = new IntRaster(102, 79);
+            Resample.half(src, serialHalf, TileExecutor.serial());
+            Resample.half(src, parallelHalf, parallel);
+            assertSamePixels("half", serialHalf, parallelHalf);
+            IntRaster serialResize = new IntRaster(61, 47);
+            IntRaster parallelResize = new IntRaster(61, 47);
+            Resample.resize(src, serialResize, TileExecutor.serial());
+            Resample.resize(src, parallelResize, parallel);
+            assertSamePixels("resize", serialResize, parallelResize);
+        }finally{
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void pyramidLevelsAreRepeatedHalves(){
+        IntRaster src = TestImages.random(150, 90, 4);
+        ImagePyramid pyramid = new ImagePyramid(src, 16, TileExecutor.serial());
+        // 150x90, 75x45, 38x23, 19x12, 10x6
+        assertEquals(5, pyramid.getLevelCount());
+        assertSame(src, pyramid.getLevel(0));
+        IntRaster expected = src;
+        for(int level = 1; level < pyramid.getLevelCount(); ++level){
+            expected = halfReference(expected);
+            assertSamePixels("level " + level, expected, pyramid.getLevel(level));
+        }
+        assertEquals(0, pyramid.levelFor(150, 90));
+        assertEquals(1, pyramid.levelFor(75, 45));
+        assertEquals(1, pyramid.levelFor(60, 40));
+        assertEquals(4, pyramid.levelFor(3, 2));
+    }
+
+    @Test
+    public void thumbnailsKeepAspectAndComeFromOneLevel(){
+        IntRaster src = TestImages.random(160, 100, 5);
+        ImagePyramid pyramid = new ImagePyramid(src, 16, TileExecutor.serial());
+        IntRaster[] thumbnails = pyramid.thumbnails(null, 40, 80, 16);
+        assertEquals(40, thumbnails[0].getWidth());
+        assertEquals(25, thumbnails[0].getHeight());
+        assertEquals(80, thumbnails[1].getWidth());
+        assertEquals(50, thumbnails[1].getHeight());
+        assertEquals(16, thumbnails[2].getWidth());
+        assertEquals(10, thumbnails[2].getHeight());
+        // the largest is a level as is, the others are averaged down from it
+        assertSamePixels("largest", pyramid.getLevel(1), thumbnails[1]);
+        IntRaster smaller = new IntRaster(40, 25);
+        Resample.resize(pyramid.getLevel(1), smaller, TileExecutor.serial());
+        assertSamePixels("smaller", smaller, thumbnails[0]);
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.nahom.ip4a.core;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Images and comparisons shared by the tests.
+ */
+public final class TestImages {
+
+    private TestImages(){
+    }
+
+    /**
+     * @return pixels of random color and alpha, the same for the same seed
+     */
+    public static IntRaster random(int width, int height, long seed){
+        IntRaster raster = new IntRaster(width, height);
+        Random random = new Random(seed);
+        int[] pixels = raster.getPixels();
+        for(int i = 0; i < pixels.length; ++i){
+            pixels[i] = random.nextInt();
+        }
+        return raster;
+    }
+
+    /**
+     * @return src run through the ops one after another, each over the whole image on one thread
+     */
+    public static IntRaster filterWhole(IntRaster src, RasterOp... ops){
+        IntRaster image = src.copy();
+        for(RasterOp op : ops){
+            IntRaster output = new IntRaster(image.getWidth(), image.getHeight());
+            TileExecutor.serial().apply(op, image, output);
+            image = output;
+        }
+        return image;
+    }
+
+    /**
+     * @return the rectangle [left, right) x [top, bottom) of raster, as a raster of its own
+     */
+    public static IntRaster crop(IntRaster raster, int left, int top, int right, int bottom){
+        return raster.subRaster(left, top, right - left, bottom - top).copy();
+    }
+
+    public static void assertSamePixels(String message, IntRaster expected, IntRaster actual){
+        assertArrayEquals(message + " size", new int[]{expected.getWidth(), expected.getHeight()},
+                new int[]{actual.getWidth(), actual.getHeight()});
+        assertArrayEquals(message, expected.copy().getPixels(), actual.copy().getPixels());
+    }
+
+    /**
+     * @return the largest difference of one channel between the two images
+     */
+    public static int maxChannelDifference(IntRaster a, IntRaster b){
+        int max = 0;
+        for(int y = 0; y < a.getHeight(); ++y){
+            for(int x = 0; x < a.getWidth(); ++x){
+                int p = a.getPixel(x, y);
+                int q = b.getPixel(x, y);
+                for(int shift = 0; shift < 32; shift += 8){
+                    max = Math.max(max, Math.abs(((p >>> shift) & 0xFF) - ((q >>> shift) & 0xFF)));
+                }
+            }
+        }
+        return max;
+    }
+}
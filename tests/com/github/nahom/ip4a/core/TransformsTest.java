@@ -0,0 +1,111 @@
+package com.github.nahom.ip4a.core;
+
+import org.junit.Test;
+
+import static com.github.nahom.ip4a.core.TestImages.assertSamePixels;
+import static com.github.nahom.ip4a.core.TestImages.maxChannelDifference;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The tiled and in-place transforms against the per-pixel definition, and the
+ * round trips that must give the image back.
+ */
+public class TransformsTest {
+
+    private static final int FIRST = Transforms.ORIENTATION_NORMAL;
+    private static final int LAST = Transforms.ORIENTATION_ROTATE_270;
+
+    /**
+     * Where an orientation moves source pixel (x, y), written out pixel by pixel.
+     */
+    private static IntRaster reference(IntRaster src, int orientation){
+        int w = src.getWidth();
+        int h = src.getHeight();
+        IntRaster dst = new IntRaster(Transforms.orientedWidth(w, h, orientation),
+                Transforms.orientedHeight(w, h, orientation));
+        for(int y = 0; y < h; ++y){
+            for(int x = 0; x < w; ++x){
+                int[][] targets = {
+                        {x, y}, {x, y}, {w - 1 - x, y}, {w - 1 - x, h - 1 - y}, {x, h - 1 - y},
+                        {y, x}, {h - 1 - y, x}, {h - 1 - y, w - 1 - x}, {y, w - 1 - x}};
+                int[] to = targets[orientation];
+                dst.setPixel(to[0], to[1], src.getPixel(x, y));
+            }
+        }
+        return dst;
+    }
+
+    private static IntRaster orient(IntRaster src, int orientation){
+        int w = src.getWidth();
+        int h = src.getHeight();
+        IntRaster dst = new IntRaster(Transforms.orientedWidth(w, h, orientation),
+                Transforms.orientedHeight(w, h, orientation));
+        Transforms.orient(src, dst, orientation);
+        return dst;
+    }
+
+    @Test
+    public void orientationsMatchPerPixelDefinition(){
+        // sizes around the tile size, and one that is not a whole number of tiles
+        int[][] sizes = {{1, 1}, {1, 9}, {32, 32}, {33, 31}, {70, 45}, {64, 64}};
+        for(int[] size : sizes){
+            IntRaster src = TestImages.random(size[0], size[1], size[0] * 100 + size[1]);
+            for(int orientation = FIRST; orientation <= LAST; ++orientation){
+                assertSamePixels(size[0] + "x" + size[1] + " orientation " + orientation,
+                        reference(src, orientation), orient(src, orientation));
+            }
+        }
+    }
+
+    @Test
+    public void inPlaceMatchesCopy(){
+        for(int side : new int[]{1, 31, 32, 77}){
+            IntRaster src = TestImages.random(side, side, side);
+            for(int orientation = FIRST; orientation <= LAST; ++orientation){
+                IntRaster inPlace = src.copy();
+                Transforms.orient(inPlace, inPlace, orientation);
+                assertSamePixels(side + " in place, orientation " + orientation, reference(src, orientation), inPlace);
+            }
+        }
+        // flips keep the size of any image, so they work in place on all of them
+        IntRaster wide = TestImages.random(45, 20, 11);
+        for(int orientation = Transforms.ORIENTATION_FLIP_HORIZONTAL; orientation <= Transforms.ORIENTATION_FLIP_VERTICAL; ++orientation){
+            IntRaster inPlace = wide.copy();
+            Transforms.orient(inPlace, inPlace, orientation);
+            assertSamePixels("45x20 in place, orientation " + orientation, reference(wide, orientation), inPlace);
+        }
+    }
+
+    @Test
+    public void roundTripsGiveTheImageBack(){
+        IntRaster src = TestImages.random(50, 37, 12);
+        assertSamePixels("90 then 270", src, orient(orient(src, Transforms.ORIENTATION_ROTATE_90),
+                Transforms.ORIENTATION_ROTATE_270));
+        IntRaster turned = src;
+        for(int i = 0; i < 4; ++i){
+            turned = orient(turned, Transforms.ORIENTATION_ROTATE_90);
+        }
+        assertSamePixels("four quarter turns", src, turned);
+        // the mirrors, 180 and the two diagonal transposes undo themselves
+        int[] involutions = {
+                Transforms.ORIENTATION_FLIP_HORIZONTAL, Transforms.ORIENTATION_ROTATE_180,
+                Transforms.ORIENTATION_FLIP_VERTICAL, Transforms.ORIENTATION_TRANSPOSE,
+                Transforms.ORIENTATION_TRANSVERSE};
+        for(int orientation : involutions){
+            assertSamePixels("twice " + orientation, src, orient(orient(src, orientation), orientation));
+        }
+    }
+
+    @Test
+    public void fullTurnKeepsOpaqueImage(){
+        IntRaster src = TestImages.random(40, 30, 13);
+        int[] pixels = src.getPixels();
+        for(int i = 0; i < pixels.length; ++i){
+            pixels[i] |= 0xFF000000;
+        }
+        int[] size = Transforms.rotatedSize(40, 30, 360);
+        IntRaster dst = new IntRaster(size[0], size[1]);
+        Transforms.rotate(src, dst, 360, TileExecutor.serial());
+        assertTrue("360 degree turn", maxChannelDifference(src, dst) <= 1);
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.nahom.ip4a.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * PPM headers, and samples scaled from the file's max value to 0..255.
+ */
+public class PpmRowSourceTest {
+
+    private static PpmRowSource open(String header, int... samples) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(header.getBytes(Charset.forName("US-ASCII")));
+        for(int sample : samples){
+            bytes.write(sample);
+        }
+        return new PpmRowSource(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    public void fullRangeSamplesPassThrough() throws IOException {
+        PpmRowSource source = open("P6\n# comment\n2 1\n255\n", 0, 128, 255, 10, 20, 30);
+        assertEquals(2, source.getWidth());
+        assertEquals(1, source.getHeight());
+        int[] pixels = new int[2];
+        source.readRows(pixels, 0, 2, 1);
+        assertArrayEquals(new int[]{0xFF0080FF, 0xFF0A141E}, pixels);
+    }
+
+    @Test
+    public void smallerMaxValueIsScaled() throws IOException {
+        PpmRowSource source = open("P6 3 1 15\n", 0, 15, 7, 8, 1, 14, 255, 15, 15);
+        int[] pixels = new int[3];
+        source.readRows(pixels, 0, 3, 1);
+        // 7 / 15 and 8 / 15 of 255 round to 119 and 136; samples above the max clamp
+        assertArrayEquals(new int[]{0xFF00FF77, 0xFF8811EE, 0xFFFFFFFF}, pixels);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsSixteenBitSamples() throws IOException {
+        open("P6 1 1 65535\n");
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.nahom.ip4a.stream;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.github.nahom.ip4a.core.Border;
+import com.github.nahom.ip4a.core.ConvolveOp;
+import com.github.nahom.ip4a.core.IntRaster;
+import com.github.nahom.ip4a.core.Kernels;
+import com.github.nahom.ip4a.core.NoiseOps;
+import com.github.nahom.ip4a.core.PointOps;
+import com.github.nahom.ip4a.core.RasterOp;
+import com.github.nahom.ip4a.core.TestImages;
+import com.github.nahom.ip4a.core.TileExecutor;
+
+import static com.github.nahom.ip4a.core.TestImages.assertSamePixels;
+
+/**
+ * Streaming in strips must give the pixels of filtering the whole image.
+ */
+public class StripProcessorTest {
+
+    private static final Border[] BORDERS = {
+            Border.NONE, Border.CLAMP, Border.REFLECT, Border.constant(0x80FF0000)};
+
+    @Test
+    public void stripsMatchWholeImage() throws IOException {
+        IntRaster src = TestImages.random(37, 45, 4);
+        for(Border border : BORDERS){
+            RasterOp[] ops = {
+                    new ConvolveOp(Kernels.sharpen(11), border), PointOps.grayscale(), NoiseOps.snow(9),
+                    new ConvolveOp(Kernels.smooth(1), border)};
+            IntRaster expected = TestImages.filterWhole(src, ops);
+            for(int stripHeight : new int[]{1, 2, 7, 64}){
+                IntRaster actual = new IntRaster(src.getWidth(), src.getHeight());
+                new StripProcessor(stripHeight, TileExecutor.serial(), ops)
+                        .process(RasterRows.source(src), RasterRows.sink(actual));
+                assertSamePixels(border + " in strips of " + stripHeight, expected, actual);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesWrapBorders(){
+        new StripProcessor(new ConvolveOp(Kernels.gaussianBlur(), Border.WRAP));
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.nahom.ip4a.simd;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import com.github.nahom.ip4a.core.VectorKernels;
+
+/**
+ * {@link VectorKernels} on the incubating Java Vector API.
+ * <p>
+ * Pixels are loaded a vector at a time and split into one vector per channel with
+ * shifts and masks. The integer arithmetic is the same as in the scalar loops,
+ * clamping uses lane-wise min and max, and the channels are repacked with shifts and
+ * ors, so the output is identical without a branch per pixel. Pixels left over at
+ * the end of a row go through the scalar formula.
+ * <p>
+ * Compile and run with {@code --add-modules jdk.incubator.vector}.
+ */
+public final class VectorApiKernels extends VectorKernels {
+
+    private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+
+    public VectorApiKernels(){
+        if(INT.length() < 4){
+            throw new UnsupportedOperationException("no SIMD support, vector length " + INT.length());
+        }
+    }
+
+    @Override
+    public String getName(){
+        return "Vector API, " + INT.vectorBitSize() + " bit";
+    }
+
+    private static int clamp(int value){
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static IntVector clamp(IntVector value){
+        return value.max(0).min(255);
+    }
+
+    private static IntVector channel(IntVector pixels, int shift){
+        return pixels.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+    }
+
+    private static IntVector pack(IntVector alpha, IntVector r, IntVector g, IntVector b){
+        return alpha.and(0xFF000000)
+                .or(r.lanewise(VectorOperators.LSHL, 16))
+                .or(g.lanewise(VectorOperators.LSHL, 8))
+                .or(b);
+    }
+
+    @Override
+    public void xor(int[] in, int inPos, int[] out, int outPos, int length, int mask){
+        int upper = INT.loopBound(length);
+        int i = 0;
+        for(; i < upper; i += INT.length()){
+            IntVector.fromArray(INT, in, inPos + i).lanewise(VectorOperators.XOR, mask).intoArray(out, outPos + i);
+        }
+        for(; i < length; ++i){
+            out[outPos + i] = in[inPos + i] ^ mask;
+        }
+    }
+
+    @Override
+    public void and(int[] in, int inPos, int[] out, int outPos, int length, int mask){
+        int upper = INT.loopBound(length);
+        int i = 0;
+        for(; i < upper; i += INT.length()){
+            IntVector.fromArray(INT, in, inPos + i).and(mask).intoArray(out, outPos + i);
+        }
+        for(; i < length; ++i){
+            out[outPos + i] = in[inPos + i] & mask;
+        }
+    }
+
+    @Override
+    public void addClamped(int[] in, int inPos, int[] out, int outPos, int length, int red, int green, int blue){
+        int upper = INT.loopBound(length);
+        int i = 0;
+        for(; i < upper; i += INT.length()){
+            IntVector pixels = IntVector.fromArray(INT, in, inPos + i);
+            pack(pixels,
+                    clamp(channel(pixels, 16).add(red)),
+                    clamp(channel(pixels, 8).add(green)),
+                    clamp(channel(pixels, 0).add(blue)))
+                    .intoArray(out, outPos + i);
+        }
+        for(; i < length; ++i){
+            int pixel = in[inPos + i];
+            out[outPos + i] = (pixel & 0xFF000000)
+                    | (clamp(((pixel >> 16) & 0xFF) + red) << 16)
+                    | (clamp(((pixel >> 8) & 0xFF) + green) << 8)
+                    | clamp((pixel & 0xFF) + blue);
+        }
+    }
+
+    @Override
+    public void convolve(int[] in, int inPos, int[] offsets, int[] weights, int base, int shift,
+                         int[] out, int outPos, int length){
+        int taps = weights.length;
+        int upper = INT.loopBound(length);
+        int x = 0;
+        for(; x < upper; x += INT.length()){
+            IntVector sumR = IntVector.broadcast(INT, base);
+            IntVector sumG = sumR;
+            IntVector sumB = sumR;
+            for(int t = 0; t < taps; ++t){
+                IntVector pixels = IntVector.fromArray(INT, in, inPos + x + offsets[t]);
+                int weight = weights[t];
+                sumR = sumR.add(channel(pixels, 16).mul(weight));
+                sumG = sumG.add(channel(pixels, 8).mul(weight));
+                sumB = sumB.add(channel(pixels, 0).mul(weight));
+            }
+            pack(IntVector.fromArray(INT, in, inPos + x),
+                    clamp(sumR.lanewise(VectorOperators.ASHR, shift)),
+                    clamp(sumG.lanewise(VectorOperators.ASHR, shift)),
+                    clamp(sumB.lanewise(VectorOperators.ASHR, shift)))
+                    .intoArray(out, outPos + x);
+        }
+        for(; x < length; ++x){
+            int sumR = base, sumG = base, sumB = base;
+            for(int t = 0; t < taps; ++t){
+                int pixel = in[inPos + x + offsets[t]];
+                int weight = weights[t];
+                sumR += ((pixel >> 16) & 0xFF) * weight;
+                sumG += ((pixel >> 8) & 0xFF) * weight;
+                sumB += (pixel & 0xFF) * weight;
+            }
+            out[outPos + x] = (in[inPos + x] & 0xFF000000)
+                    | (clamp(sumR >> shift) << 16) | (clamp(sumG >> shift) << 8) | clamp(sumB >> shift);
+        }
+    }
+
+    @Override
+    public void convolveHorizontal(int[] in, int inPos, int[] weights,
+                                   int[] sumR, int[] sumG, int[] sumB, int sumPos, int length){
+        int taps = weights.length;
+        int upper = INT.loopBound(length);
+        int x = 0;
+        for(; x < upper; x += INT.length()){
+            IntVector r = IntVector.zero(INT);
+            IntVector g = r;
+            IntVector b = r;
+            for(int k = 0; k < taps; ++k){
+                IntVector pixels = IntVector.fromArray(INT, in, inPos + x + k);
+                int weight = weights[k];
+                r = r.add(channel(pixels, 16).mul(weight));
+                g = g.add(channel(pixels, 8).mul(weight));
+                b = b.add(channel(pixels, 0).mul(weight));
+            }
+            r.intoArray(sumR, sumPos + x);
+            g.intoArray(sumG, sumPos + x);
+            b.intoArray(sumB, sumPos + x);
+        }
+        for(; x < length; ++x){
+            int r = 0, g = 0, b = 0;
+            for(int k = 0; k < taps; ++k){
+                int pixel = in[inPos + x + k];
+                int weight = weights[k];
+                r += ((pixel >> 16) & 0xFF) * weight;
+                g += ((pixel >> 8) & 0xFF) * weight;
+                b += (pixel & 0xFF) * weight;
+            }
+            sumR[sumPos + x] = r;
+            sumG[sumPos + x] = g;
+            sumB[sumPos + x] = b;
+        }
+    }
+
+    @Override
+    public void convolveVertical(int[] sumR, int[] sumG, int[] sumB, int[] slots, int[] weights,
+                                 int base, int shift, int[] in, int centerPos,
+                                 int[] out, int outPos, int length){
+        int rows = weights.length;
+        int upper = INT.loopBound(length);
+        int x = 0;
+        for(; x < upper; x += INT.length()){
+            IntVector r = IntVector.broadcast(INT, base);
+            IntVector g = r;
+            IntVector b = r;
+            for(int k = 0; k < rows; ++k){
+                int index = slots[k] + x;
+                int weight = weights[k];
+                r = r.add(IntVector.fromArray(INT, sumR, index).mul(weight));
+                g = g.add(IntVector.fromArray(INT, sumG, index).mul(weight));
+                b = b.add(IntVector.fromArray(INT, sumB, index).mul(weight));
+            }
+            pack(IntVector.fromArray(INT, in, centerPos + x),
+                    clamp(r.lanewise(VectorOperators.ASHR, shift)),
+                    clamp(g.lanewise(VectorOperators.ASHR, shift)),
+                    clamp(b.lanewise(VectorOperators.ASHR, shift)))
+                    .intoArray(out, outPos + x);
+        }
+        for(; x < length; ++x){
+            int r = base, g = base, b = base;
+            for(int k = 0; k < rows; ++k){
+                int index = slots[k] + x;
+                int weight = weights[k];
+                r += sumR[index] * weight;
+                g += sumG[index] * weight;
+                b += sumB[index] * weight;
+            }
+            out[outPos + x] = (in[centerPos + x] & 0xFF000000)
+                    | (clamp(r >> shift) << 16) | (clamp(g >> shift) << 8) | clamp(b >> shift);
+        }
+    }
+}